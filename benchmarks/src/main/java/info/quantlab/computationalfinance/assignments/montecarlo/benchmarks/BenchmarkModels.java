@@ -0,0 +1,42 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.benchmarks;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.LognormalSimpleCrossCurrencyProcessModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * The model and the Brownian motion used by the benchmarks, with the
+ * parameters of the tests of the project.
+ */
+final class BenchmarkModels {
+
+	static final double PERIOD_START = 1.0;
+	static final double PERIOD_END = 2.0;
+
+	private BenchmarkModels() {
+	}
+
+	/*
+	 * The time discretization is uniform on [0, T_2]: the number of time steps has
+	 * to be even, so that T_1 is a time of the discretization.
+	 */
+	static BrownianMotion getBrownianMotion(int numberOfPaths, int numberOfTimeSteps, int seed) {
+		return new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, PERIOD_END / numberOfTimeSteps), 3,
+				numberOfPaths, seed);
+	}
+
+	static SimpleCrossCurrencyModelWithSingleMaturity getModel(BrownianMotion brownianMotion,
+			SimulationScheme simulationScheme) {
+		return new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3,
+				PERIOD_START, PERIOD_END, 0.95, 0.97, brownianMotion, simulationScheme);
+	}
+
+	static LognormalSimpleCrossCurrencyProcessModel getLognormalProcessModel() {
+		return new LognormalSimpleCrossCurrencyProcessModel(PERIOD_START, PERIOD_END, 0.95, 0.03, 0.02,
+				1.2 * 0.97 / 0.95, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3);
+	}
+}
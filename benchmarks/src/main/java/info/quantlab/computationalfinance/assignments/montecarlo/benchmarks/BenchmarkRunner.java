@@ -0,0 +1,23 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * It runs the benchmarks whose names match the regular expression given as
+ * argument (all of them if no argument is given), with the GC profiler, which
+ * reports the allocation rate and the bytes allocated per operation.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*";
+
+		Options options = new OptionsBuilder().include(include).addProfiler(GCProfiler.class).build();
+
+		new Runner(options).run();
+	}
+}
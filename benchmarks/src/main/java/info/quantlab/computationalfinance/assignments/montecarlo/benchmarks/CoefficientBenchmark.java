@@ -0,0 +1,67 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ProcessModelFromLognormalProcessModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ProcessModelFromPrimitiveLognormalProcessModel;
+import net.finmath.montecarlo.model.ProcessModel;
+
+/**
+ * Benchmark of the requests of drift and factor loadings done by the Euler
+ * scheme at every time step, for the boxing ProcessModelFromLognormalProcessModel
+ * and for the caching ProcessModelFromPrimitiveLognormalProcessModel. The
+ * process is not used by the adapters, so null is passed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoefficientBenchmark {
+
+	@Param({ "2", "20", "200" })
+	public int numberOfTimeSteps;
+
+	private ProcessModel boxedProcessModel;
+	private ProcessModel primitiveProcessModel;
+
+	@Setup
+	public void setUp() {
+		boxedProcessModel = new ProcessModelFromLognormalProcessModel(BenchmarkModels.getLognormalProcessModel());
+		primitiveProcessModel = new ProcessModelFromPrimitiveLognormalProcessModel(
+				BenchmarkModels.getLognormalProcessModel());
+	}
+
+	@Benchmark
+	public void boxedCoefficients(Blackhole blackhole) {
+		requestCoefficients(boxedProcessModel, blackhole);
+	}
+
+	@Benchmark
+	public void primitiveCoefficients(Blackhole blackhole) {
+		requestCoefficients(primitiveProcessModel, blackhole);
+	}
+
+	private void requestCoefficients(ProcessModel processModel, Blackhole blackhole) {
+		for (int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+			blackhole.consume(processModel.getDrift(null, timeIndex, null, null));
+			for (int componentIndex = 0; componentIndex < processModel.getNumberOfComponents(); componentIndex++) {
+				blackhole.consume(processModel.getFactorLoading(null, timeIndex, componentIndex, null));
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Benchmark of the valuation of the variants of the generalized caplet on an
+ * already simulated model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneralizedCapletBenchmark {
+
+	/**
+	 * The variants of the caplet: currency of the rate, quanto or not, payment
+	 * in T_1 (in advance) or T_2.
+	 */
+	public enum Variant {
+		DOMESTIC(0, false, false), DOMESTIC_IN_ADVANCE(0, false, true), FOREIGN(1, false, false),
+		FOREIGN_IN_ADVANCE(1, false, true), QUANTO(1, true, false), QUANTO_IN_ADVANCE(1, true, true);
+
+		private final int currency;
+		private final boolean isQuanto;
+		private final boolean isPaymentInAdvance;
+
+		Variant(int currency, boolean isQuanto, boolean isPaymentInAdvance) {
+			this.currency = currency;
+			this.isQuanto = isQuanto;
+			this.isPaymentInAdvance = isPaymentInAdvance;
+		}
+	}
+
+	@Param({ "10000", "100000" })
+	public int numberOfPaths;
+
+	@Param({ "2", "20", "200" })
+	public int numberOfTimeSteps;
+
+	@Param
+	public Variant variant;
+
+	private SimpleCrossCurrencyModelWithSingleMaturity model;
+	private GeneralizedCaplet caplet;
+
+	@Setup
+	public void setUp() {
+		model = BenchmarkModels.getModel(BenchmarkModels.getBrownianMotion(numberOfPaths, numberOfTimeSteps, 3141),
+				SimulationScheme.EULER);
+		// the simulation is not part of the measurement
+		model.getForwardRate(0, BenchmarkModels.PERIOD_END, BenchmarkModels.PERIOD_START, BenchmarkModels.PERIOD_END);
+
+		double paymentTime = variant.isPaymentInAdvance ? BenchmarkModels.PERIOD_START : BenchmarkModels.PERIOD_END;
+		caplet = new GeneralizedCaplet(variant.currency, variant.isQuanto, BenchmarkModels.PERIOD_START,
+				BenchmarkModels.PERIOD_START, BenchmarkModels.PERIOD_END, paymentTime, 0.025);
+	}
+
+	@Benchmark
+	public RandomVariable valuation() {
+		return caplet.getValue(0.0, model);
+	}
+}
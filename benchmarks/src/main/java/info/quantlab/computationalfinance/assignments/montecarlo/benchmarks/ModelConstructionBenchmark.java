@@ -0,0 +1,53 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.montecarlo.BrownianMotion;
+
+/**
+ * Benchmark of the construction of the model. The simulation is lazy, so this
+ * only measures the set up of the process model and of the scheme.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelConstructionBenchmark {
+
+	@Param({ "10000", "100000" })
+	public int numberOfPaths;
+
+	@Param({ "2", "20", "200" })
+	public int numberOfTimeSteps;
+
+	@Param({ "EULER", "EXACT" })
+	public SimulationScheme simulationScheme;
+
+	private BrownianMotion brownianMotion;
+
+	@Setup
+	public void setUp() {
+		brownianMotion = BenchmarkModels.getBrownianMotion(numberOfPaths, numberOfTimeSteps, 3141);
+	}
+
+	@Benchmark
+	public SimpleCrossCurrencyModelWithSingleMaturity construction() {
+		return BenchmarkModels.getModel(brownianMotion, simulationScheme);
+	}
+}
@@ -0,0 +1,74 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Benchmark of the first request of a value of the model, which triggers the
+ * simulation of all the paths. The Brownian increments are generated before
+ * the measurement, so that only the scheme (EulerSchemeFromProcessModel or the
+ * exact one) is measured; the benchmark brownianMotionGeneration measures the
+ * generation of the increments alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SimulationBenchmark {
+
+	@Param({ "10000", "100000" })
+	public int numberOfPaths;
+
+	@Param({ "2", "20", "200" })
+	public int numberOfTimeSteps;
+
+	@Param({ "EULER", "EXACT" })
+	public SimulationScheme simulationScheme;
+
+	private BrownianMotion brownianMotion;
+	private SimpleCrossCurrencyModelWithSingleMaturity model;
+
+	@Setup(Level.Trial)
+	public void setUpBrownianMotion() {
+		brownianMotion = BenchmarkModels.getBrownianMotion(numberOfPaths, numberOfTimeSteps, 3141);
+		// the increments are generated at the first request
+		brownianMotion.getBrownianIncrement(0, 0);
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpModel() {
+		model = BenchmarkModels.getModel(brownianMotion, simulationScheme);
+		// the exact scheme uses a coarser Brownian motion: its increments are generated here
+		model.getBrownianMotion().getBrownianIncrement(0, 0);
+	}
+
+	@Benchmark
+	public RandomVariable firstTouchSimulation() {
+		return model.getForwardRate(0, BenchmarkModels.PERIOD_END, BenchmarkModels.PERIOD_START,
+				BenchmarkModels.PERIOD_END);
+	}
+
+	@Benchmark
+	public RandomVariable brownianMotionGeneration() {
+		return BenchmarkModels.getBrownianMotion(numberOfPaths, numberOfTimeSteps, 3141).getBrownianIncrement(0, 0);
+	}
+}
@@ -0,0 +1,112 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion;
+
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class provides a Brownian motion with antithetic paths: the first half
+ * of the paths is generated by pseudo random numbers (Mersenne Twister), the
+ * second half is given by the same increments with opposite sign. This
+ * reduces the variance of the valuation of products which are monotone in the
+ * Brownian increments.
+ */
+public class AntitheticBrownianMotion implements BrownianMotion {
+
+	private final TimeDiscretization timeDiscretization;
+	private final int numberOfFactors;
+	private final int numberOfPaths;
+	private final int seed;
+
+	private transient RandomVariable[][] brownianIncrements;
+
+	/**
+	 * It constructs a Brownian motion with antithetic paths.
+	 *
+	 * @param timeDiscretization, the time discretization
+	 * @param numberOfFactors,    the number of independent factors
+	 * @param numberOfPaths,      the number of paths: it must be even
+	 * @param seed,               the seed of the random number generator
+	 */
+	public AntitheticBrownianMotion(TimeDiscretization timeDiscretization, int numberOfFactors, int numberOfPaths,
+			int seed) {
+		super();
+		if (numberOfPaths % 2 != 0) {
+			throw new IllegalArgumentException("The number of paths must be even: " + numberOfPaths);
+		}
+		this.timeDiscretization = timeDiscretization;
+		this.numberOfFactors = numberOfFactors;
+		this.numberOfPaths = numberOfPaths;
+		this.seed = seed;
+	}
+
+	@Override
+	public RandomVariable getBrownianIncrement(int timeIndex, int factor) {
+		doGenerateBrownianMotion();
+		return brownianIncrements[timeIndex][factor];
+	}
+
+	@Override
+	public RandomVariable getIncrement(int timeIndex, int factor) {
+		return getBrownianIncrement(timeIndex, factor);
+	}
+
+	private synchronized void doGenerateBrownianMotion() {
+		if (brownianIncrements != null) {
+			return;
+		}
+
+		int halfNumberOfPaths = numberOfPaths / 2;
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(timeDiscretization,
+				numberOfFactors, halfNumberOfPaths, seed);
+
+		RandomVariable[][] increments = new RandomVariable[timeDiscretization.getNumberOfTimeSteps()][numberOfFactors];
+		for (int timeIndex = 0; timeIndex < increments.length; timeIndex++) {
+			double time = timeDiscretization.getTime(timeIndex + 1);
+			for (int factor = 0; factor < numberOfFactors; factor++) {
+				RandomVariable increment = brownianMotion.getBrownianIncrement(timeIndex, factor);
+
+				double[] realizations = new double[numberOfPaths];
+				for (int pathIndex = 0; pathIndex < halfNumberOfPaths; pathIndex++) {
+					double value = increment.get(pathIndex);
+					realizations[pathIndex] = value;
+					realizations[pathIndex + halfNumberOfPaths] = -value;
+				}
+				increments[timeIndex][factor] = new RandomVariableFromDoubleArray(time, realizations);
+			}
+		}
+		brownianIncrements = increments;
+	}
+
+	@Override
+	public TimeDiscretization getTimeDiscretization() {
+		return timeDiscretization;
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return numberOfFactors;
+	}
+
+	@Override
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	@Override
+	public RandomVariable getRandomVariableForConstant(double value) {
+		return new RandomVariableFromDoubleArray(value);
+	}
+
+	@Override
+	public AntitheticBrownianMotion getCloneWithModifiedSeed(int seed) {
+		return new AntitheticBrownianMotion(timeDiscretization, numberOfFactors, numberOfPaths, seed);
+	}
+
+	@Override
+	public AntitheticBrownianMotion getCloneWithModifiedTimeDiscretization(TimeDiscretization newTimeDiscretization) {
+		return new AntitheticBrownianMotion(newTimeDiscretization, numberOfFactors, numberOfPaths, seed);
+	}
+}
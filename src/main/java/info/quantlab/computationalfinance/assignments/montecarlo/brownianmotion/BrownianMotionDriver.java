@@ -0,0 +1,56 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion;
+
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * The stochastic drivers available to build a Brownian motion.
+ */
+public enum BrownianMotionDriver {
+
+	/**
+	 * Pseudo random numbers (Mersenne Twister).
+	 */
+	PSEUDO_RANDOM {
+		@Override
+		public BrownianMotion getBrownianMotion(TimeDiscretization timeDiscretization, int numberOfFactors,
+				int numberOfPaths, int seed) {
+			return new BrownianMotionFromMersenneRandomNumbers(timeDiscretization, numberOfFactors, numberOfPaths,
+					seed);
+		}
+	},
+
+	/**
+	 * Pseudo random numbers with antithetic paths.
+	 */
+	ANTITHETIC {
+		@Override
+		public BrownianMotion getBrownianMotion(TimeDiscretization timeDiscretization, int numberOfFactors,
+				int numberOfPaths, int seed) {
+			return new AntitheticBrownianMotion(timeDiscretization, numberOfFactors, numberOfPaths, seed);
+		}
+	},
+
+	/**
+	 * Sobol sequence randomized by a random digital shift, with Brownian bridge
+	 * construction.
+	 */
+	SOBOL_BROWNIAN_BRIDGE {
+		@Override
+		public BrownianMotion getBrownianMotion(TimeDiscretization timeDiscretization, int numberOfFactors,
+				int numberOfPaths, int seed) {
+			return new QuasiRandomBrownianMotion(timeDiscretization, numberOfFactors, numberOfPaths, seed);
+		}
+	};
+
+	/**
+	 * @param timeDiscretization, the time discretization
+	 * @param numberOfFactors,    the number of independent factors
+	 * @param numberOfPaths,      the number of paths
+	 * @param seed,               the seed
+	 * @return the Brownian motion
+	 */
+	public abstract BrownianMotion getBrownianMotion(TimeDiscretization timeDiscretization, int numberOfFactors,
+			int numberOfPaths, int seed);
+}
@@ -0,0 +1,159 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion;
+
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class provides the increments of a Brownian motion W with an additional
+ * constant drift theta up to a time T: the increments are those of W(t) +
+ * theta min(t, T). It is used for importance sampling: a model driven by these
+ * increments as if they were Brownian gives the paths of the model under a
+ * measure where the factors have the drift theta, so that the expectation
+ * under the original measure is the one of the payoff multiplied by the
+ * likelihood ratio {@link #getLikelihoodRatio(double)}.
+ */
+public class DriftShiftedBrownianMotion implements BrownianMotion {
+
+	private final BrownianMotion brownianMotion;
+	private final double[] drift;
+	private final double shiftEndTime;
+
+	private transient RandomVariable[][] brownianIncrements;
+
+	/**
+	 * It constructs the Brownian motion with shifted drift.
+	 *
+	 * @param brownianMotion, the Brownian motion W
+	 * @param drift,          the drift theta, one value per factor
+	 * @param shiftEndTime,   the time T after which there is no drift. It must
+	 *                        be a time of the time discretization of W
+	 */
+	public DriftShiftedBrownianMotion(BrownianMotion brownianMotion, double[] drift, double shiftEndTime) {
+		super();
+		if (drift.length != brownianMotion.getNumberOfFactors()) {
+			throw new IllegalArgumentException("The drift must have one value per factor.");
+		}
+		if (brownianMotion.getTimeDiscretization().getTimeIndex(shiftEndTime) < 0) {
+			throw new IllegalArgumentException("Time not supported: " + shiftEndTime);
+		}
+		this.brownianMotion = brownianMotion;
+		this.drift = drift.clone();
+		this.shiftEndTime = shiftEndTime;
+	}
+
+	@Override
+	public RandomVariable getBrownianIncrement(int timeIndex, int factor) {
+		doGenerateBrownianMotion();
+		return brownianIncrements[timeIndex][factor];
+	}
+
+	@Override
+	public RandomVariable getIncrement(int timeIndex, int factor) {
+		return getBrownianIncrement(timeIndex, factor);
+	}
+
+	private synchronized void doGenerateBrownianMotion() {
+		if (brownianIncrements != null) {
+			return;
+		}
+		TimeDiscretization timeDiscretization = getTimeDiscretization();
+		RandomVariable[][] increments = new RandomVariable[timeDiscretization.getNumberOfTimeSteps()][drift.length];
+		for (int timeIndex = 0; timeIndex < increments.length; timeIndex++) {
+			// the part of the time step before the end of the shift
+			double shiftedTimeStep = Math.max(Math.min(timeDiscretization.getTime(timeIndex + 1), shiftEndTime)
+					- timeDiscretization.getTime(timeIndex), 0.0);
+			for (int factor = 0; factor < drift.length; factor++) {
+				RandomVariable increment = brownianMotion.getBrownianIncrement(timeIndex, factor);
+				increments[timeIndex][factor] = drift[factor] == 0.0 || shiftedTimeStep == 0.0 ? increment
+						: increment.add(drift[factor] * shiftedTimeStep);
+			}
+		}
+		brownianIncrements = increments;
+	}
+
+	/**
+	 * It returns the density of the original measure (under which these
+	 * increments are Brownian) with respect to the one of the simulation (under
+	 * which W is Brownian), conditional on the time t, i.e., exp(-theta W(s) - 1/2
+	 * |theta|^2 s) with s = min(t, T).
+	 *
+	 * @param time, t, a time of the time discretization or a time after T
+	 * @return the likelihood ratio
+	 */
+	public RandomVariable getLikelihoodRatio(double time) {
+		double stoppedTime = Math.min(time, shiftEndTime);
+		TimeDiscretization timeDiscretization = getTimeDiscretization();
+		int stoppedTimeIndex = timeDiscretization.getTimeIndex(stoppedTime);
+		if (stoppedTimeIndex < 0) {
+			throw new IllegalArgumentException("Time not supported: " + time);
+		}
+
+		double squaredNorm = 0.0;
+		for (double driftOfFactor : drift) {
+			squaredNorm += driftOfFactor * driftOfFactor;
+		}
+		if (squaredNorm == 0.0 || stoppedTime == 0.0) {
+			return new RandomVariableFromDoubleArray(1.0);
+		}
+
+		RandomVariable exponent = new RandomVariableFromDoubleArray(-0.5 * squaredNorm * stoppedTime);
+		for (int timeIndex = 0; timeIndex < stoppedTimeIndex; timeIndex++) {
+			for (int factor = 0; factor < drift.length; factor++) {
+				if (drift[factor] != 0.0) {
+					exponent = exponent.addProduct(brownianMotion.getBrownianIncrement(timeIndex, factor),
+							-drift[factor]);
+				}
+			}
+		}
+		return exponent.exp();
+	}
+
+	@Override
+	public TimeDiscretization getTimeDiscretization() {
+		return brownianMotion.getTimeDiscretization();
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return brownianMotion.getNumberOfFactors();
+	}
+
+	@Override
+	public int getNumberOfPaths() {
+		return brownianMotion.getNumberOfPaths();
+	}
+
+	@Override
+	public RandomVariable getRandomVariableForConstant(double value) {
+		return brownianMotion.getRandomVariableForConstant(value);
+	}
+
+	@Override
+	public DriftShiftedBrownianMotion getCloneWithModifiedSeed(int seed) {
+		return new DriftShiftedBrownianMotion(brownianMotion.getCloneWithModifiedSeed(seed), drift, shiftEndTime);
+	}
+
+	@Override
+	public DriftShiftedBrownianMotion getCloneWithModifiedTimeDiscretization(
+			TimeDiscretization newTimeDiscretization) {
+		return new DriftShiftedBrownianMotion(
+				brownianMotion.getCloneWithModifiedTimeDiscretization(newTimeDiscretization), drift, shiftEndTime);
+	}
+
+	/**
+	 * @return the Brownian motion W without drift
+	 */
+	public BrownianMotion getBrownianMotion() {
+		return brownianMotion;
+	}
+
+	public double[] getDrift() {
+		return drift.clone();
+	}
+
+	public double getShiftEndTime() {
+		return shiftEndTime;
+	}
+}
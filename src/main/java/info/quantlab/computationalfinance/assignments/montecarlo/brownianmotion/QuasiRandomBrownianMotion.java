@@ -0,0 +1,201 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.commons.math3.random.SobolSequenceGenerator;
+
+import net.finmath.functions.NormalDistribution;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.randomnumbers.MersenneTwister;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class provides a Brownian motion generated by a Sobol sequence and the
+ * Brownian bridge construction. The first dimensions of the Sobol sequence,
+ * which are the best distributed ones, are used for the value of the Brownian
+ * motion at the final time, then for the value at the midpoint and so on, so
+ * that the coarse structure of the paths carries most of the variance.
+ *
+ * The sequence is randomized by a random digital shift determined by the seed:
+ * the binary digits of every coordinate are flipped by the exclusive or with
+ * the ones of a random number. Unlike a random shift modulo 1, this keeps the
+ * net property of the Sobol points, that is, every elementary dyadic interval
+ * contains the same number of points as before. It is the simplest form of
+ * scrambling: the permutation of the digits does not depend on the preceding
+ * ones as in the nested scrambling of Owen. Clones with different seeds give
+ * independent randomized quasi Monte-Carlo estimates, whose spread can be used
+ * as error estimate.
+ */
+public class QuasiRandomBrownianMotion implements BrownianMotion {
+
+	// the number of binary digits of the points of the SobolSequenceGenerator of commons-math
+	private static final int NUMBER_OF_BITS = 52;
+	private static final double SCALE = 1L << NUMBER_OF_BITS;
+
+	private final TimeDiscretization timeDiscretization;
+	private final int numberOfFactors;
+	private final int numberOfPaths;
+	private final int seed;
+
+	private transient RandomVariable[][] brownianIncrements;
+
+	/**
+	 * It constructs a quasi random Brownian motion.
+	 *
+	 * @param timeDiscretization, the time discretization
+	 * @param numberOfFactors,    the number of independent factors
+	 * @param numberOfPaths,      the number of paths (preferably a power of two)
+	 * @param seed,               the seed of the random digital shift of the sequence
+	 */
+	public QuasiRandomBrownianMotion(TimeDiscretization timeDiscretization, int numberOfFactors, int numberOfPaths,
+			int seed) {
+		super();
+		this.timeDiscretization = timeDiscretization;
+		this.numberOfFactors = numberOfFactors;
+		this.numberOfPaths = numberOfPaths;
+		this.seed = seed;
+	}
+
+	@Override
+	public RandomVariable getBrownianIncrement(int timeIndex, int factor) {
+		doGenerateBrownianMotion();
+		return brownianIncrements[timeIndex][factor];
+	}
+
+	@Override
+	public RandomVariable getIncrement(int timeIndex, int factor) {
+		return getBrownianIncrement(timeIndex, factor);
+	}
+
+	private synchronized void doGenerateBrownianMotion() {
+		if (brownianIncrements != null) {
+			return;
+		}
+
+		int numberOfTimeSteps = timeDiscretization.getNumberOfTimeSteps();
+		int dimension = numberOfTimeSteps * numberOfFactors;
+
+		/*
+		 * The order of the Brownian bridge: first the final time, then recursively the
+		 * midpoints of the intervals where the values are known, from the coarse to
+		 * the fine ones.
+		 */
+		int[] bridgeIndex = new int[numberOfTimeSteps];
+		int[] leftIndex = new int[numberOfTimeSteps];
+		int[] rightIndex = new int[numberOfTimeSteps];
+		double[] leftWeight = new double[numberOfTimeSteps];
+		double[] rightWeight = new double[numberOfTimeSteps];
+		double[] standardDeviation = new double[numberOfTimeSteps];
+
+		bridgeIndex[0] = numberOfTimeSteps;
+		standardDeviation[0] = Math.sqrt(timeDiscretization.getTime(numberOfTimeSteps) - timeDiscretization.getTime(0));
+
+		Deque<int[]> intervals = new ArrayDeque<>();
+		intervals.add(new int[] { 0, numberOfTimeSteps });
+		int step = 1;
+		while (!intervals.isEmpty()) {
+			int[] interval = intervals.poll();
+			int left = interval[0];
+			int right = interval[1];
+			if (right - left < 2) {
+				continue;
+			}
+			int middle = (left + right) >>> 1;
+
+			double timeLeft = timeDiscretization.getTime(left);
+			double timeMiddle = timeDiscretization.getTime(middle);
+			double timeRight = timeDiscretization.getTime(right);
+
+			bridgeIndex[step] = middle;
+			leftIndex[step] = left;
+			rightIndex[step] = right;
+			leftWeight[step] = (timeRight - timeMiddle) / (timeRight - timeLeft);
+			rightWeight[step] = (timeMiddle - timeLeft) / (timeRight - timeLeft);
+			standardDeviation[step] = Math.sqrt((timeMiddle - timeLeft) * (timeRight - timeMiddle) / (timeRight - timeLeft));
+			step++;
+
+			intervals.add(new int[] { left, middle });
+			intervals.add(new int[] { middle, right });
+		}
+
+		/*
+		 * The random digital shift. The generator gives the coordinates with
+		 * NUMBER_OF_BITS binary digits, so they are exactly the integers below
+		 * 2^NUMBER_OF_BITS divided by 2^NUMBER_OF_BITS.
+		 */
+		MersenneTwister mersenneTwister = new MersenneTwister(seed);
+		long[] shift = new long[dimension];
+		for (int i = 0; i < dimension; i++) {
+			shift[i] = (long) (mersenneTwister.nextDouble() * SCALE);
+		}
+
+		SobolSequenceGenerator sobolSequence = new SobolSequenceGenerator(dimension);
+
+		double[][][] increments = new double[numberOfTimeSteps][numberOfFactors][numberOfPaths];
+		double[] brownianMotion = new double[numberOfTimeSteps + 1];
+		for (int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			double[] point = sobolSequence.nextVector();
+			for (int factor = 0; factor < numberOfFactors; factor++) {
+				for (int k = 0; k < numberOfTimeSteps; k++) {
+					long digits = (long) (point[k * numberOfFactors + factor] * SCALE) ^ shift[k * numberOfFactors + factor];
+					// the midpoint of the dyadic interval, so that the uniform is never 0
+					double uniform = (digits + 0.5) / SCALE;
+					double normal = NormalDistribution.inverseCumulativeDistribution(uniform);
+
+					int index = bridgeIndex[k];
+					if (k == 0) {
+						brownianMotion[index] = standardDeviation[0] * normal;
+					} else {
+						brownianMotion[index] = leftWeight[k] * brownianMotion[leftIndex[k]]
+								+ rightWeight[k] * brownianMotion[rightIndex[k]] + standardDeviation[k] * normal;
+					}
+				}
+				for (int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+					increments[timeIndex][factor][pathIndex] = brownianMotion[timeIndex + 1] - brownianMotion[timeIndex];
+				}
+			}
+		}
+
+		RandomVariable[][] randomVariables = new RandomVariable[numberOfTimeSteps][numberOfFactors];
+		for (int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+			double time = timeDiscretization.getTime(timeIndex + 1);
+			for (int factor = 0; factor < numberOfFactors; factor++) {
+				randomVariables[timeIndex][factor] = new RandomVariableFromDoubleArray(time, increments[timeIndex][factor]);
+			}
+		}
+		brownianIncrements = randomVariables;
+	}
+
+	@Override
+	public TimeDiscretization getTimeDiscretization() {
+		return timeDiscretization;
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return numberOfFactors;
+	}
+
+	@Override
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	@Override
+	public RandomVariable getRandomVariableForConstant(double value) {
+		return new RandomVariableFromDoubleArray(value);
+	}
+
+	@Override
+	public QuasiRandomBrownianMotion getCloneWithModifiedSeed(int seed) {
+		return new QuasiRandomBrownianMotion(timeDiscretization, numberOfFactors, numberOfPaths, seed);
+	}
+
+	@Override
+	public QuasiRandomBrownianMotion getCloneWithModifiedTimeDiscretization(TimeDiscretization newTimeDiscretization) {
+		return new QuasiRandomBrownianMotion(newTimeDiscretization, numberOfFactors, numberOfPaths, seed);
+	}
+}
@@ -1,10 +1,16 @@
 package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid;
 
+import info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion.BrownianMotionDriver;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyAnalyticModel;
 import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
 import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
 import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyProduct;
 import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCapletStrikeLadder;
 import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.RandomVariableFactory;
+import net.finmath.time.TimeDiscretization;
 
 public class SimpleLognormalCrossCurrencyModelSolution implements SimpleLognormalCrossCurrencyModelAssignment {
 
@@ -53,6 +59,103 @@ public class SimpleLognormalCrossCurrencyModelSolution implements SimpleLognorma
 				maturity, domesticZeroBond, foreignZeroBond, brownianMotion);
 	}
 
+	/**
+	 * Create the model as in
+	 * {@link #getSimpleCrossCurrencyModel(double, double, double, double, double, double, double, double, double, double, double, double, double, BrownianMotion)},
+	 * with a given simulation scheme. With SimulationScheme.EXACT the processes are
+	 * only sampled in 0, T<sub>1</sub> and T<sub>2</sub>, whatever the time
+	 * discretization of the Brownian motion.
+	 *
+	 * @param simulationScheme The simulation scheme (EULER or EXACT).
+	 * @return The model.
+	 */
+	public SimpleCrossCurrencyModel getSimpleCrossCurrencyModel(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double volatilityDomestic,
+			double volatilityForeign, double volatiltiyFXForward, double correlationDomFor,
+			double correlationFXDomenstic, double correlationFXForeign, double periodStart, double maturity,
+			double domesticZeroBond, double foreignZeroBond, BrownianMotion brownianMotion,
+			SimulationScheme simulationScheme) {
+
+		return new SimpleCrossCurrencyModelWithSingleMaturity(initialValueDomesticForwardRate,
+				initialValueForeignForwardRate, initialValueFX, volatilityDomestic, volatilityForeign,
+				volatiltiyFXForward, correlationDomFor, correlationFXDomenstic, correlationFXForeign, periodStart,
+				maturity, domesticZeroBond, foreignZeroBond, brownianMotion, simulationScheme);
+	}
+
+	/**
+	 * Create the model as in
+	 * {@link #getSimpleCrossCurrencyModel(double, double, double, double, double, double, double, double, double, double, double, double, double, BrownianMotion, SimulationScheme)},
+	 * storing the simulated values in random variables created by the given
+	 * factory. With new RandomVariableFromArrayFactory(false) the values are
+	 * stored in single precision, taking half of the memory.
+	 *
+	 * @param simulationScheme      The simulation scheme (EULER or EXACT).
+	 * @param randomVariableFactory The factory of the random variables.
+	 * @return The model.
+	 */
+	public SimpleCrossCurrencyModel getSimpleCrossCurrencyModel(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double volatilityDomestic,
+			double volatilityForeign, double volatiltiyFXForward, double correlationDomFor,
+			double correlationFXDomenstic, double correlationFXForeign, double periodStart, double maturity,
+			double domesticZeroBond, double foreignZeroBond, BrownianMotion brownianMotion,
+			SimulationScheme simulationScheme, RandomVariableFactory randomVariableFactory) {
+
+		return new SimpleCrossCurrencyModelWithSingleMaturity(initialValueDomesticForwardRate,
+				initialValueForeignForwardRate, initialValueFX, volatilityDomestic, volatilityForeign,
+				volatiltiyFXForward, correlationDomFor, correlationFXDomenstic, correlationFXForeign, periodStart,
+				maturity, domesticZeroBond, foreignZeroBond, brownianMotion, simulationScheme, randomVariableFactory);
+	}
+
+	/**
+	 * Create the model as in
+	 * {@link #getSimpleCrossCurrencyModel(double, double, double, double, double, double, double, double, double, double, double, double, double, BrownianMotion, SimulationScheme)},
+	 * with a three factor Brownian motion built by one of the drivers provided.
+	 * With SimulationScheme.EXACT, the driver only has to provide the increments
+	 * for 2 dates: this is the best setting for the quasi random driver.
+	 *
+	 * @param timeDiscretization The time discretization of the Brownian motion.
+	 * @param numberOfPaths      The number of paths.
+	 * @param seed               The seed of the driver.
+	 * @param driver             The driver (pseudo random, antithetic, Sobol).
+	 * @param simulationScheme   The simulation scheme (EULER or EXACT).
+	 * @return The model.
+	 */
+	public SimpleCrossCurrencyModel getSimpleCrossCurrencyModel(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double volatilityDomestic,
+			double volatilityForeign, double volatiltiyFXForward, double correlationDomFor,
+			double correlationFXDomenstic, double correlationFXForeign, double periodStart, double maturity,
+			double domesticZeroBond, double foreignZeroBond, TimeDiscretization timeDiscretization, int numberOfPaths,
+			int seed, BrownianMotionDriver driver, SimulationScheme simulationScheme) {
+
+		BrownianMotion brownianMotion = driver.getBrownianMotion(timeDiscretization, 3 /* numberOfFactors */,
+				numberOfPaths, seed);
+
+		return getSimpleCrossCurrencyModel(initialValueDomesticForwardRate, initialValueForeignForwardRate,
+				initialValueFX, volatilityDomestic, volatilityForeign, volatiltiyFXForward, correlationDomFor,
+				correlationFXDomenstic, correlationFXForeign, periodStart, maturity, domesticZeroBond, foreignZeroBond,
+				brownianMotion, simulationScheme);
+	}
+
+	/**
+	 * Create the analytic counterpart of the model given by
+	 * {@link #getSimpleCrossCurrencyModel(double, double, double, double, double, double, double, double, double, double, double, double, double, BrownianMotion)},
+	 * i.e., the model providing the closed form values of the caplets, the zero
+	 * bonds and the FX options with maturity T<sub>2</sub>.
+	 *
+	 * @return The analytic model.
+	 */
+	public SimpleCrossCurrencyAnalyticModel getSimpleCrossCurrencyAnalyticModel(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double volatilityDomestic,
+			double volatilityForeign, double volatiltiyFXForward, double correlationDomFor,
+			double correlationFXDomenstic, double correlationFXForeign, double periodStart, double maturity,
+			double domesticZeroBond, double foreignZeroBond) {
+
+		return new SimpleCrossCurrencyAnalyticModel(initialValueDomesticForwardRate, initialValueForeignForwardRate,
+				initialValueFX, volatilityDomestic, volatilityForeign, volatiltiyFXForward, correlationDomFor,
+				correlationFXDomenstic, correlationFXForeign, periodStart, maturity, domesticZeroBond,
+				foreignZeroBond);
+	}
+
 	/**
 	 * Create the Monte-Carlo valuation of a generalized caplet paying max(L - K, 0)
 	 * * (isQuanto ? 1 : FX) in T where L may be a domestic or foreign interest rate
@@ -76,4 +179,27 @@ public class SimpleLognormalCrossCurrencyModelSolution implements SimpleLognorma
 		return new GeneralizedCaplet(currency, isQuanto, fixingTime, periodStart, periodEnd, paymentTime, strike);
 
 	}
+
+	/**
+	 * Create the Monte-Carlo valuation of generalized caplets (see
+	 * {@link #getGeneralizedCaplet(int, boolean, double, double, double, double, double)})
+	 * for a set of strikes, sorting the forward rate samples only once.
+	 *
+	 * @param currency    The currency of the forward rate to be paid (0=domestic,
+	 *                    1=foreign)
+	 * @param isQuanto    If true, it will be a quanto (only applied for currency ==
+	 *                    1).
+	 * @param fixingTime  The fixing time of the forward rate. Should be T1
+	 * @param periodStart The period start time of the forward rate. Should be T1
+	 * @param periodEnd   The period end time of the forward rate. Should be T2
+	 * @param paymentTime The payment time of the cash flow. May be T1 or T2.
+	 * @param strikes     The strike rates.
+	 * @return The strike ladder.
+	 */
+	public GeneralizedCapletStrikeLadder getGeneralizedCapletStrikeLadder(int currency, boolean isQuanto,
+			double fixingTime, double periodStart, double periodEnd, double paymentTime, double[] strikes) {
+
+		return new GeneralizedCapletStrikeLadder(currency, isQuanto, fixingTime, periodStart, periodEnd, paymentTime,
+				strikes);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * This class provides the factorizations of a correlation matrix R = B B^T
+ * giving the (normalized) factor loadings B of correlated Brownian motions
+ * B W in terms of independent ones W.
+ *
+ * The Cholesky factorization is exact and B is lower triangular, so the
+ * component i only depends on the first i+1 factors. The principal component
+ * factorization keeps the m largest eigenvalues: the rows of B are then
+ * rescaled to length 1, so that every component keeps its variance and only the
+ * correlations are approximated.
+ */
+public final class CorrelationFactorization {
+
+	private static final int MAXIMUM_NUMBER_OF_SWEEPS = 100;
+
+	private CorrelationFactorization() {
+	}
+
+	/**
+	 * It returns the lower triangular matrix B with B B^T = R. Eigenvalues of R
+	 * which are zero up to rounding are allowed (the diagonal of B is then set to
+	 * 0).
+	 *
+	 * @param correlation, the correlation matrix R
+	 * @return the matrix B, one row per component
+	 */
+	public static double[][] getCholeskyFactorLoadings(double[][] correlation) {
+		int dimension = correlation.length;
+		double[][] factorLoadings = new double[dimension][dimension];
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j <= i; j++) {
+				double sum = correlation[i][j];
+				for (int k = 0; k < j; k++) {
+					sum -= factorLoadings[i][k] * factorLoadings[j][k];
+				}
+				if (i == j) {
+					if (sum < -1E-10) {
+						throw new IllegalArgumentException("Correlation matrix not positive semi-definite.");
+					}
+					factorLoadings[i][i] = Math.sqrt(Math.max(sum, 0.0));
+				} else {
+					factorLoadings[i][j] = factorLoadings[j][j] > 0.0 ? sum / factorLoadings[j][j] : 0.0;
+				}
+			}
+		}
+		return factorLoadings;
+	}
+
+	/**
+	 * It returns the matrix B with m columns given by the m principal components
+	 * of R, each one multiplied by the square root of its eigenvalue, with the rows
+	 * rescaled to length 1.
+	 *
+	 * @param correlation,     the correlation matrix R
+	 * @param numberOfFactors, the number m of factors
+	 * @return the matrix B, one row per component
+	 */
+	public static double[][] getPrincipalComponentFactorLoadings(double[][] correlation, int numberOfFactors) {
+		int dimension = correlation.length;
+		if (numberOfFactors < 1 || numberOfFactors > dimension) {
+			throw new IllegalArgumentException("Number of factors not supported: " + numberOfFactors);
+		}
+
+		double[][] eigenvectors = new double[dimension][dimension];
+		double[] eigenvalues = getEigenvalues(correlation, eigenvectors);
+
+		Integer[] order = IntStream.range(0, dimension).boxed().toArray(Integer[]::new);
+		Arrays.sort(order, Comparator.comparingDouble(index -> -eigenvalues[index]));
+
+		double[][] factorLoadings = new double[dimension][numberOfFactors];
+		for (int i = 0; i < dimension; i++) {
+			double squaredLength = 0.0;
+			for (int factor = 0; factor < numberOfFactors; factor++) {
+				int index = order[factor];
+				factorLoadings[i][factor] = eigenvectors[i][index] * Math.sqrt(Math.max(eigenvalues[index], 0.0));
+				squaredLength += factorLoadings[i][factor] * factorLoadings[i][factor];
+			}
+			if (squaredLength > 0.0) {
+				double length = Math.sqrt(squaredLength);
+				for (int factor = 0; factor < numberOfFactors; factor++) {
+					factorLoadings[i][factor] /= length;
+				}
+			}
+		}
+		return factorLoadings;
+	}
+
+	/*
+	 * The cyclic Jacobi method: rotations annihilate the off-diagonal elements one
+	 * after the other until they are zero up to rounding. The columns of the
+	 * eigenvectors matrix are the eigenvectors.
+	 */
+	private static double[] getEigenvalues(double[][] matrix, double[][] eigenvectors) {
+		int dimension = matrix.length;
+		double[][] a = new double[dimension][];
+		for (int i = 0; i < dimension; i++) {
+			a[i] = matrix[i].clone();
+			Arrays.fill(eigenvectors[i], 0.0);
+			eigenvectors[i][i] = 1.0;
+		}
+
+		for (int sweep = 0; sweep < MAXIMUM_NUMBER_OF_SWEEPS; sweep++) {
+			double offDiagonalNorm = 0.0;
+			for (int p = 0; p < dimension; p++) {
+				for (int q = p + 1; q < dimension; q++) {
+					offDiagonalNorm += a[p][q] * a[p][q];
+				}
+			}
+			if (offDiagonalNorm < 1E-30) {
+				break;
+			}
+
+			for (int p = 0; p < dimension; p++) {
+				for (int q = p + 1; q < dimension; q++) {
+					if (a[p][q] == 0.0) {
+						continue;
+					}
+					double theta = (a[q][q] - a[p][p]) / (2.0 * a[p][q]);
+					double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1.0));
+					if (theta == 0.0) {
+						t = 1.0;
+					}
+					double c = 1.0 / Math.sqrt(t * t + 1.0);
+					double s = t * c;
+
+					for (int k = 0; k < dimension; k++) {
+						double akp = a[k][p];
+						double akq = a[k][q];
+						a[k][p] = c * akp - s * akq;
+						a[k][q] = s * akp + c * akq;
+					}
+					for (int k = 0; k < dimension; k++) {
+						double apk = a[p][k];
+						double aqk = a[q][k];
+						a[p][k] = c * apk - s * aqk;
+						a[q][k] = s * apk + c * aqk;
+					}
+					for (int k = 0; k < dimension; k++) {
+						double vkp = eigenvectors[k][p];
+						double vkq = eigenvectors[k][q];
+						eigenvectors[k][p] = c * vkp - s * vkq;
+						eigenvectors[k][q] = s * vkp + c * vkq;
+					}
+				}
+			}
+		}
+
+		double[] eigenvalues = new double[dimension];
+		for (int i = 0; i < dimension; i++) {
+			eigenvalues[i] = a[i][i];
+		}
+		return eigenvalues;
+	}
+}
@@ -0,0 +1,122 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class caches the random variables derived from the simulated processes
+ * of a model, like the numeraire or the FX rate, so that they are computed only
+ * once even if many products use them. The values are identified by the
+ * quantity, the time and the currency.
+ *
+ * The number of values kept is bounded: when the maximum size is reached, the
+ * least recently used value is removed. The numbers of hits, misses and
+ * evictions are counted.
+ */
+public class DerivedQuantityCache {
+
+	/**
+	 * The quantities which can be cached.
+	 */
+	public enum Quantity {
+		NUMERAIRE, FX_RATE, FORWARD_FX_RATE
+	}
+
+	private final int maximumSize;
+	private final Map<List<Object>, RandomVariable> values;
+
+	private long numberOfHits;
+	private long numberOfMisses;
+	private long numberOfEvictions;
+
+	/**
+	 * It constructs an empty cache.
+	 *
+	 * @param maximumSize, the maximum number of values kept
+	 */
+	public DerivedQuantityCache(int maximumSize) {
+		super();
+		this.maximumSize = maximumSize;
+		// access order: the first entry is the least recently used one
+		this.values = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, RandomVariable> eldest) {
+				if (size() > DerivedQuantityCache.this.maximumSize) {
+					numberOfEvictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * It returns the cached value of the quantity, computing it if it is not in
+	 * the cache. The value is computed outside of the lock, so that the
+	 * calculation can use the cache as well: if two threads ask for the same
+	 * missing value, it may be computed twice.
+	 *
+	 * @param quantity,    the quantity
+	 * @param time,        the time
+	 * @param currency,    the currency (0 if the quantity does not depend on it)
+	 * @param calculation, the calculation of the value
+	 * @return the value
+	 */
+	public RandomVariable get(Quantity quantity, double time, int currency, Supplier<RandomVariable> calculation) {
+		List<Object> key = List.of(quantity, time, currency);
+		synchronized (this) {
+			RandomVariable value = values.get(key);
+			if (value != null) {
+				numberOfHits++;
+				return value;
+			}
+			numberOfMisses++;
+		}
+
+		RandomVariable value = calculation.get();
+		synchronized (this) {
+			values.put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * It removes all the values, without resetting the counters.
+	 */
+	public synchronized void clear() {
+		values.clear();
+	}
+
+	public synchronized int size() {
+		return values.size();
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public synchronized long getNumberOfHits() {
+		return numberOfHits;
+	}
+
+	public synchronized long getNumberOfMisses() {
+		return numberOfMisses;
+	}
+
+	public synchronized long getNumberOfEvictions() {
+		return numberOfEvictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "DerivedQuantityCache [size=" + values.size() + ", maximumSize=" + maximumSize + ", numberOfHits="
+				+ numberOfHits + ", numberOfMisses=" + numberOfMisses + ", numberOfEvictions=" + numberOfEvictions
+				+ "]";
+	}
+}
@@ -0,0 +1,219 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.PrimitiveLognormalProcessModel;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.process.MonteCarloProcess;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.stochastic.Scalar;
+
+/**
+ * This class provides the model for the simulation of the domestic Libor and,
+ * for N foreign currencies, of the foreign Libors and of the forward FX rates,
+ * all log-normal, as in {@link LognormalSimpleCrossCurrencyProcessModel} for N
+ * = 1. The components are ordered as L^d, L^{f_1}, ..., L^{f_N}, FFX_1, ...,
+ * FFX_N.
+ *
+ * Under the domestic T_2-forward measure L^d and the FFX_k are martingales,
+ * while every foreign Libor L^{f_k} gets the quanto drift -sigma^{f_k}
+ * sigma^{FFX_k} rho^{f_k,FFX_k} with respect to the forward FX rate of its own
+ * currency.
+ *
+ * The factor loadings are the volatilities times the rows of a factorization B
+ * of the correlation matrix (see {@link CorrelationFactorization}), which may
+ * have fewer columns (factors) than components. The correlation in the quanto
+ * drift is then the one of the simulated factors, i.e., the scalar product of
+ * the rows of B, which differs from the one of the matrix if factors are
+ * dropped: only this keeps the foreign Libors martingales under their own
+ * forward measures.
+ */
+public class LognormalMultiCurrencyProcessModel implements PrimitiveLognormalProcessModel {
+
+	private final double periodStart;
+	private final double periodEnd;
+	private final double domesticZeroBond;
+
+	private final double[] initialValuesForeignForwardRate;
+	private final double[] initialValuesFXForward;
+	private final double volatilityDomestic;
+	private final double[] volatilitiesForeign;
+	private final double[] volatilitiesFXForward;
+	private final double[][] normalizedFactorLoadings;
+
+	private final double[] initialValues;
+	private final double[] drift;
+	private final double[][] factorLoadings;
+
+	/**
+	 * It constructs the model.
+	 *
+	 * @param periodStart,                     T_1
+	 * @param periodEnd,                       T_2
+	 * @param domesticZeroBond,                P^d(T_2;0)
+	 * @param initialValueDomesticForwardRate, L^d(T_1, T_2;0)
+	 * @param initialValuesForeignForwardRate, L^{f_k}(T_1, T_2;0), k = 1,...,N
+	 * @param initialValuesFXForward,          FFX_k(T_2;0), k = 1,...,N
+	 * @param volatilityDomestic,              the log-volatility of L^d
+	 * @param volatilitiesForeign,             the log-volatilities of the
+	 *                                         L^{f_k}
+	 * @param volatilitiesFXForward,           the log-volatilities of the FFX_k
+	 * @param normalizedFactorLoadings,        the factorization B of the
+	 *                                         correlation matrix of the
+	 *                                         components, one row per
+	 *                                         component, in their order
+	 */
+	public LognormalMultiCurrencyProcessModel(double periodStart, double periodEnd, double domesticZeroBond,
+			double initialValueDomesticForwardRate, double[] initialValuesForeignForwardRate,
+			double[] initialValuesFXForward, double volatilityDomestic, double[] volatilitiesForeign,
+			double[] volatilitiesFXForward, double[][] normalizedFactorLoadings) {
+		super();
+		int numberOfForeignCurrencies = initialValuesForeignForwardRate.length;
+		int numberOfComponents = 2 * numberOfForeignCurrencies + 1;
+		if (initialValuesFXForward.length != numberOfForeignCurrencies
+				|| volatilitiesForeign.length != numberOfForeignCurrencies
+				|| volatilitiesFXForward.length != numberOfForeignCurrencies
+				|| normalizedFactorLoadings.length != numberOfComponents) {
+			throw new IllegalArgumentException("Dimensions of the parameters do not match.");
+		}
+		this.periodStart = periodStart;
+		this.periodEnd = periodEnd;
+		this.domesticZeroBond = domesticZeroBond;
+		this.initialValuesForeignForwardRate = initialValuesForeignForwardRate.clone();
+		this.initialValuesFXForward = initialValuesFXForward.clone();
+		this.volatilityDomestic = volatilityDomestic;
+		this.volatilitiesForeign = volatilitiesForeign.clone();
+		this.volatilitiesFXForward = volatilitiesFXForward.clone();
+		this.normalizedFactorLoadings = normalizedFactorLoadings;
+
+		double[] volatilities = new double[numberOfComponents];
+		initialValues = new double[numberOfComponents];
+		volatilities[0] = volatilityDomestic;
+		initialValues[0] = initialValueDomesticForwardRate;
+		for (int currency = 1; currency <= numberOfForeignCurrencies; currency++) {
+			volatilities[currency] = volatilitiesForeign[currency - 1];
+			volatilities[numberOfForeignCurrencies + currency] = volatilitiesFXForward[currency - 1];
+			initialValues[currency] = initialValuesForeignForwardRate[currency - 1];
+			initialValues[numberOfForeignCurrencies + currency] = initialValuesFXForward[currency - 1];
+		}
+
+		/*
+		 * The drift of the logarithm (Itô), with the quanto adjustment for the foreign
+		 * Libors. The rows of B have length one, so the variance is the one of the
+		 * volatility also with fewer factors, while the correlation is the one of the
+		 * factors.
+		 */
+		drift = new double[numberOfComponents];
+		for (int componentIndex = 0; componentIndex < numberOfComponents; componentIndex++) {
+			drift[componentIndex] = -0.5 * volatilities[componentIndex] * volatilities[componentIndex];
+		}
+		for (int currency = 1; currency <= numberOfForeignCurrencies; currency++) {
+			int fxIndex = numberOfForeignCurrencies + currency;
+			double simulatedCorrelation = 0.0;
+			for (int factor = 0; factor < normalizedFactorLoadings[currency].length; factor++) {
+				simulatedCorrelation += normalizedFactorLoadings[currency][factor]
+						* normalizedFactorLoadings[fxIndex][factor];
+			}
+			drift[currency] -= volatilities[currency] * volatilities[fxIndex] * simulatedCorrelation;
+		}
+
+		factorLoadings = new double[numberOfComponents][];
+		for (int componentIndex = 0; componentIndex < numberOfComponents; componentIndex++) {
+			factorLoadings[componentIndex] = normalizedFactorLoadings[componentIndex].clone();
+			for (int factor = 0; factor < factorLoadings[componentIndex].length; factor++) {
+				factorLoadings[componentIndex][factor] *= volatilities[componentIndex];
+			}
+		}
+	}
+
+	@Override
+	public int getNumberOfComponents() {
+		return initialValues.length;
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return factorLoadings[0].length;
+	}
+
+	/**
+	 * @return the number N of foreign currencies
+	 */
+	public int getNumberOfForeignCurrencies() {
+		return (initialValues.length - 1) / 2;
+	}
+
+	@Override
+	public double[] getInitialValuePrimitive() {
+		return initialValues.clone();
+	}
+
+	@Override
+	public double[] getDriftPrimitive(int timeIndex) {
+		return drift.clone();
+	}
+
+	@Override
+	public double[] getFactorLoadingPrimitive(int timeIndex, int componentIndex) {
+		return factorLoadings[componentIndex].clone();
+	}
+
+	/*
+	 * The keys are the names of the parameters of the constructor. The values of
+	 * the arrays are double[] (double[][] for the factorization).
+	 */
+	@Override
+	public LognormalMultiCurrencyProcessModel getCloneWithModifiedData(Map<String, Object> dataModified) {
+		Map<String, Object> data = new HashMap<>();
+		data.put("periodStart", periodStart);
+		data.put("periodEnd", periodEnd);
+		data.put("domesticZeroBond", domesticZeroBond);
+		data.put("initialValueDomesticForwardRate", initialValues[0]);
+		data.put("initialValuesForeignForwardRate", initialValuesForeignForwardRate);
+		data.put("initialValuesFXForward", initialValuesFXForward);
+		data.put("volatilityDomestic", volatilityDomestic);
+		data.put("volatilitiesForeign", volatilitiesForeign);
+		data.put("volatilitiesFXForward", volatilitiesFXForward);
+		data.put("normalizedFactorLoadings", normalizedFactorLoadings);
+
+		for (Map.Entry<String, Object> entry : dataModified.entrySet()) {
+			Object oldValue = data.get(entry.getKey());
+			if (oldValue == null) {
+				throw new IllegalArgumentException("Parameter not supported: " + entry.getKey());
+			}
+			Object newValue = entry.getValue();
+			if (oldValue instanceof Double) {
+				newValue = ((Number) newValue).doubleValue();
+			} else if (!oldValue.getClass().isInstance(newValue)) {
+				throw new IllegalArgumentException("Type not supported for " + entry.getKey() + ": " + newValue);
+			}
+			data.put(entry.getKey(), newValue);
+		}
+
+		return new LognormalMultiCurrencyProcessModel((Double) data.get("periodStart"), (Double) data.get("periodEnd"),
+				(Double) data.get("domesticZeroBond"), (Double) data.get("initialValueDomesticForwardRate"),
+				(double[]) data.get("initialValuesForeignForwardRate"), (double[]) data.get("initialValuesFXForward"),
+				(Double) data.get("volatilityDomestic"), (double[]) data.get("volatilitiesForeign"),
+				(double[]) data.get("volatilitiesFXForward"), (double[][]) data.get("normalizedFactorLoadings"));
+	}
+
+	@Override
+	public RandomVariable getNumeraire(MonteCarloProcess process, double time) {
+		// the T_2-domestic zero coupon bond, as in the model with one foreign currency
+		if (time == 0) {
+			return new Scalar(domesticZeroBond);
+		} else if (time == periodStart) {
+			try {
+				RandomVariable domesticForwardRate = process.getProcessValue(process.getTimeIndex(time), 0);
+				return domesticForwardRate.mult(periodEnd - periodStart).add(1.0).invert();
+			} catch (CalculationException e) {
+				throw new RuntimeException(e);
+			}
+		} else if (time == periodEnd) {
+			return new Scalar(1.0);
+		} else {
+			throw new IllegalArgumentException("Time not supported; " + time);
+		}
+	}
+}
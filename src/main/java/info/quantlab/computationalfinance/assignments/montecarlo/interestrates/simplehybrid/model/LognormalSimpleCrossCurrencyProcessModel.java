@@ -1,6 +1,9 @@
 package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
 
-import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.LognormalProcessModel;
+import java.util.HashMap;
+import java.util.Map;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.PrimitiveLognormalProcessModel;
 import net.finmath.exception.CalculationException;
 import net.finmath.montecarlo.process.MonteCarloProcess;
 import net.finmath.stochastic.RandomVariable;
@@ -18,7 +21,7 @@ import net.finmath.stochastic.Scalar;
  * @author Andrea Mazzon
  *
  */
-public class LognormalSimpleCrossCurrencyProcessModel implements LognormalProcessModel {
+public class LognormalSimpleCrossCurrencyProcessModel implements PrimitiveLognormalProcessModel {
 
 	private double periodStart;
 	private double periodEnd;
@@ -82,8 +85,8 @@ public class LognormalSimpleCrossCurrencyProcessModel implements LognormalProces
 	}
 
 	@Override
-	public Double[] getInitialValue() {
-		return new Double[] { initialValueDomesticForwardRate, initialValueForeignForwardRate, initialValueFXForward };
+	public double[] getInitialValuePrimitive() {
+		return new double[] { initialValueDomesticForwardRate, initialValueForeignForwardRate, initialValueFXForward };
 	}
 
 	@Override
@@ -112,7 +115,7 @@ public class LognormalSimpleCrossCurrencyProcessModel implements LognormalProces
 	}
 
 	@Override
-	public Double[] getDrift(int timeIndex) {
+	public double[] getDriftPrimitive(int timeIndex) {
 		/*
 		 * Pay attention here: the drift of the processes L^d and FFX is 0, BUT here we
 		 * simulate the logarithm! If we apply Itô's formula to the process with
@@ -121,7 +124,7 @@ public class LognormalSimpleCrossCurrencyProcessModel implements LognormalProces
 		 * not zero! Same thing for FFX and almost same thing (apart from the fact that
 		 * in the drift you already had the quanto adjustment) for L^f.
 		 */
-		return new Double[] { -0.5 * volatilityDomestic * volatilityDomestic,
+		return new double[] { -0.5 * volatilityDomestic * volatilityDomestic,
 				-0.5 * volatilityForeign * volatilityForeign // this comes from Itô
 						// the next term is the quanto adjustment
 						- volatilityForeign * volatilityFXForward * correlationFXForeign,
@@ -134,7 +137,7 @@ public class LognormalSimpleCrossCurrencyProcessModel implements LognormalProces
 	}
 
 	@Override
-	public Double[] getFactorLoading(int timeIndex, int componentIndex) {
+	public double[] getFactorLoadingPrimitive(int timeIndex, int componentIndex) {
 		/*
 		 * First thing: note that the fact that you don't have to multiply by the
 		 * current value of the process is also due to the application of Itô's formula
@@ -166,19 +169,54 @@ public class LognormalSimpleCrossCurrencyProcessModel implements LognormalProces
 		 * \lambda_{13}^2+\lambda _{23}^2+\lambda _{33}^2=1
 		 */
 		case 0:
-			return new Double[] { volatilityDomestic, 0.0, 0.0 };
+			return new double[] { volatilityDomestic, 0.0, 0.0 };
 		case 1:
-			return new Double[] { volatilityForeign * correlationDomFor,
+			return new double[] { volatilityForeign * correlationDomFor,
 					volatilityForeign * Math.sqrt(1 - correlationDomFor * correlationDomFor), 0.0 };
 		case 2:
 			double factorLoadingForeign = (correlationFXForeign - correlationDomFor * correlationFXDomestic)
 					/ Math.sqrt(1 - correlationDomFor * correlationDomFor);
-			return new Double[] { volatilityFXForward * correlationFXDomestic,
+			return new double[] { volatilityFXForward * correlationFXDomestic,
 					volatilityFXForward * factorLoadingForeign,
-					volatilityFXForward * Math.sqrt(1 - correlationFXDomestic * correlationFXDomestic
-							- factorLoadingForeign * factorLoadingForeign) };
+					// for a positive semi-definite correlation matrix this is >= 0 up to rounding
+					volatilityFXForward * Math.sqrt(Math.max(0.0, 1 - correlationFXDomestic * correlationFXDomestic
+							- factorLoadingForeign * factorLoadingForeign)) };
 		default:
 			throw new IllegalArgumentException();
 		}
 	}
-}
\ No newline at end of file
+
+	/*
+	 * The keys are the names of the fields, with initialValueFX for the forward FX
+	 * rate as in the constructor.
+	 */
+	@Override
+	public LognormalSimpleCrossCurrencyProcessModel getCloneWithModifiedData(Map<String, Object> dataModified) {
+		Map<String, Double> data = new HashMap<>();
+		data.put("periodStart", periodStart);
+		data.put("periodEnd", periodEnd);
+		data.put("domesticZeroBond", domesticZeroBond);
+		data.put("initialValueDomesticForwardRate", initialValueDomesticForwardRate);
+		data.put("initialValueForeignForwardRate", initialValueForeignForwardRate);
+		data.put("initialValueFX", initialValueFXForward);
+		data.put("volatilityDomestic", volatilityDomestic);
+		data.put("volatilityForeign", volatilityForeign);
+		data.put("volatilityFXForward", volatilityFXForward);
+		data.put("correlationDomFor", correlationDomFor);
+		data.put("correlationFXDomestic", correlationFXDomestic);
+		data.put("correlationFXForeign", correlationFXForeign);
+
+		for (Map.Entry<String, Object> entry : dataModified.entrySet()) {
+			if (!data.containsKey(entry.getKey())) {
+				throw new IllegalArgumentException("Parameter not supported: " + entry.getKey());
+			}
+			data.put(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+		}
+
+		return new LognormalSimpleCrossCurrencyProcessModel(data.get("periodStart"), data.get("periodEnd"),
+				data.get("domesticZeroBond"), data.get("initialValueDomesticForwardRate"),
+				data.get("initialValueForeignForwardRate"), data.get("initialValueFX"), data.get("volatilityDomestic"),
+				data.get("volatilityForeign"), data.get("volatilityFXForward"), data.get("correlationDomFor"),
+				data.get("correlationFXDomestic"), data.get("correlationFXForeign"));
+	}
+}
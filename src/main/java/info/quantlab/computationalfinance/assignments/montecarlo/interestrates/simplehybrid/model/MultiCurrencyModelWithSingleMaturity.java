@@ -0,0 +1,356 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.DerivedQuantityCache.Quantity;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ExactSchemeFromProcessModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ProcessModelFromPrimitiveLognormalProcessModel;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.RandomVariableFromArrayFactory;
+import net.finmath.montecarlo.model.ProcessModel;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.stochastic.Scalar;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class provides the simulation of the domestic Libor and of the foreign
+ * Libors and forward FX rates of N foreign currencies, all log-normal: it is
+ * the generalization of {@link SimpleCrossCurrencyModelWithSingleMaturity} (to
+ * which it is equal, path by path, for N = 1 and a Cholesky factorization). The
+ * currencies are indexed by 0 (domestic), 1, ..., N.
+ *
+ * The correlation matrix of the 2N+1 components L^d, L^{f_1}, ..., L^{f_N},
+ * FFX_1, ..., FFX_N is factorized once, either exactly by Cholesky or, if fewer
+ * factors are asked for, by its principal components. The simulation uses the
+ * exact scheme on the times 0, T_1, T_2, where every component only adds the
+ * factors on which it has a non-zero loading: the cost grows linearly in the
+ * number of factors kept.
+ */
+public class MultiCurrencyModelWithSingleMaturity implements SimpleCrossCurrencyModel {
+
+	private final double initialValueDomesticForwardRate;
+	private final double[] initialValuesForeignForwardRate;
+	private final double[] initialValuesFX;
+	private final double volatilityDomestic;
+	private final double[] volatilitiesForeign;
+	private final double[] volatilitiesFXForward;
+	private final double[][] correlation;
+	private final double[] foreignZeroBonds;
+	private final double domesticZeroBond;
+	private final double periodStart;
+	private final double periodEnd;
+
+	private final LognormalMultiCurrencyProcessModel lognormalProcessModel;
+	private final BrownianMotion brownianMotion;
+	private final transient ExactSchemeFromProcessModel process;
+
+	private static final int DERIVED_QUANTITY_CACHE_SIZE = 64;
+	private final transient DerivedQuantityCache derivedQuantityCache = new DerivedQuantityCache(
+			DERIVED_QUANTITY_CACHE_SIZE);
+
+	/**
+	 * It constructs the model.
+	 *
+	 * @param initialValueDomesticForwardRate, L^d(T_1, T_2;0)
+	 * @param initialValuesForeignForwardRate, L^{f_k}(T_1, T_2;0), k = 1,...,N
+	 * @param initialValuesFX,                 FX_k(0), k = 1,...,N
+	 * @param volatilityDomestic,              the log-volatility of L^d
+	 * @param volatilitiesForeign,             the log-volatilities of the
+	 *                                         L^{f_k}
+	 * @param volatilitiesFXForward,           the log-volatilities of the FFX_k
+	 * @param correlation,                     the correlation matrix of L^d,
+	 *                                         L^{f_1}, ..., L^{f_N}, FFX_1, ...,
+	 *                                         FFX_N
+	 * @param periodStart,                     T_1
+	 * @param periodEnd,                       T_2
+	 * @param domesticZeroBond,                P^d(T_2;0)
+	 * @param foreignZeroBonds,                P^{f_k}(T_2;0), k = 1,...,N
+	 * @param brownianMotion,                  the Brownian motion: its number of
+	 *                                         factors is the number of factors
+	 *                                         kept. If it is smaller than 2N+1,
+	 *                                         the principal components are used
+	 */
+	public MultiCurrencyModelWithSingleMaturity(double initialValueDomesticForwardRate,
+			double[] initialValuesForeignForwardRate, double[] initialValuesFX, double volatilityDomestic,
+			double[] volatilitiesForeign, double[] volatilitiesFXForward, double[][] correlation, double periodStart,
+			double periodEnd, double domesticZeroBond, double[] foreignZeroBonds, BrownianMotion brownianMotion) {
+		this(initialValueDomesticForwardRate, initialValuesForeignForwardRate, initialValuesFX, volatilityDomestic,
+				volatilitiesForeign, volatilitiesFXForward, correlation, periodStart, periodEnd, domesticZeroBond,
+				foreignZeroBonds,
+				brownianMotion.getCloneWithModifiedTimeDiscretization(
+						new TimeDiscretizationFromArray(0.0, periodStart, periodEnd)),
+				null);
+	}
+
+	/*
+	 * Here the Brownian motion is already on the times 0, T_1, T_2. If a parent
+	 * process is given, the process is its clone, sharing the components whose
+	 * coefficients are not modified.
+	 */
+	private MultiCurrencyModelWithSingleMaturity(double initialValueDomesticForwardRate,
+			double[] initialValuesForeignForwardRate, double[] initialValuesFX, double volatilityDomestic,
+			double[] volatilitiesForeign, double[] volatilitiesFXForward, double[][] correlation, double periodStart,
+			double periodEnd, double domesticZeroBond, double[] foreignZeroBonds, BrownianMotion brownianMotion,
+			ExactSchemeFromProcessModel parentProcess) {
+		super();
+		int numberOfForeignCurrencies = initialValuesForeignForwardRate.length;
+		if (initialValuesFX.length != numberOfForeignCurrencies
+				|| foreignZeroBonds.length != numberOfForeignCurrencies) {
+			throw new IllegalArgumentException("Dimensions of the parameters do not match.");
+		}
+		this.initialValueDomesticForwardRate = initialValueDomesticForwardRate;
+		this.initialValuesForeignForwardRate = initialValuesForeignForwardRate.clone();
+		this.initialValuesFX = initialValuesFX.clone();
+		this.volatilityDomestic = volatilityDomestic;
+		this.volatilitiesForeign = volatilitiesForeign.clone();
+		this.volatilitiesFXForward = volatilitiesFXForward.clone();
+		this.correlation = correlation;
+		this.foreignZeroBonds = foreignZeroBonds.clone();
+		this.domesticZeroBond = domesticZeroBond;
+		this.periodStart = periodStart;
+		this.periodEnd = periodEnd;
+		this.brownianMotion = brownianMotion;
+
+		int numberOfComponents = 2 * numberOfForeignCurrencies + 1;
+		int numberOfFactors = brownianMotion.getNumberOfFactors();
+		double[][] normalizedFactorLoadings = numberOfFactors >= numberOfComponents
+				? padded(CorrelationFactorization.getCholeskyFactorLoadings(correlation), numberOfFactors)
+				: CorrelationFactorization.getPrincipalComponentFactorLoadings(correlation, numberOfFactors);
+
+		double[] initialValuesFXForward = new double[numberOfForeignCurrencies];
+		for (int currency = 1; currency <= numberOfForeignCurrencies; currency++) {
+			initialValuesFXForward[currency - 1] = initialValuesFX[currency - 1] * foreignZeroBonds[currency - 1]
+					/ domesticZeroBond;
+		}
+
+		lognormalProcessModel = new LognormalMultiCurrencyProcessModel(periodStart, periodEnd, domesticZeroBond,
+				initialValueDomesticForwardRate, initialValuesForeignForwardRate, initialValuesFXForward,
+				volatilityDomestic, volatilitiesForeign, volatilitiesFXForward, normalizedFactorLoadings);
+
+		ProcessModel processModel = new ProcessModelFromPrimitiveLognormalProcessModel(null,
+				new RandomVariableFromArrayFactory(), lognormalProcessModel);
+		process = parentProcess != null ? parentProcess.getCloneWithModifiedModel(processModel)
+				: new ExactSchemeFromProcessModel(processModel, brownianMotion);
+	}
+
+	// more factors than components: the additional ones have zero loadings
+	private static double[][] padded(double[][] factorLoadings, int numberOfFactors) {
+		double[][] paddedFactorLoadings = new double[factorLoadings.length][];
+		for (int componentIndex = 0; componentIndex < factorLoadings.length; componentIndex++) {
+			paddedFactorLoadings[componentIndex] = Arrays.copyOf(factorLoadings[componentIndex],
+					numberOfFactors);
+		}
+		return paddedFactorLoadings;
+	}
+
+	private RandomVariable getProcessValue(double time, int componentIndex) {
+		int timeIndex = process.getTimeIndex(time);
+		if (timeIndex < 0) {
+			throw new IllegalArgumentException("Time not supported: " + time);
+		}
+		try {
+			return process.getProcessValue(timeIndex, componentIndex);
+		} catch (CalculationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public RandomVariable getForwardRate(int currency, double time, double periodStart, double periodEnd) {
+		checkCurrency(currency);
+		return getProcessValue(time, currency /* componentIndex */);
+	}
+
+	@Override
+	public RandomVariable getFXRate(int currency, double time) {
+		checkCurrency(currency);
+		if (currency == 0) {
+			return new Scalar(1.0);
+		}
+		return derivedQuantityCache.get(Quantity.FX_RATE, time, currency, () -> calculateFXRate(currency, time));
+	}
+
+	/*
+	 * FX_k(T_2;t) = FFX_k(T_2;t) P^d(T_2;t) / P^{f_k}(T_2;t), as in the model with
+	 * one foreign currency.
+	 */
+	private RandomVariable calculateFXRate(int currency, double time) {
+		RandomVariable forwardFXRate = getForwardFXRate(currency, time);
+		if (time == 0) {
+			return forwardFXRate.div(foreignZeroBonds[currency - 1]).mult(domesticZeroBond);
+		} else if (time == periodEnd) {
+			return forwardFXRate;
+		} else if (time == periodStart) {
+			RandomVariable domesticForwardRate = getProcessValue(time, 0);
+			RandomVariable foreignForwardRate = getProcessValue(time, currency);
+			return forwardFXRate.mult(foreignForwardRate.mult(periodEnd - periodStart).add(1.0))
+					.div(domesticForwardRate.mult(periodEnd - periodStart).add(1.0));
+		} else {
+			throw new IllegalArgumentException("Time not supported: " + time);
+		}
+	}
+
+	/**
+	 * It returns the forward FX rate FFX_k(T_2;t) of the foreign currency k.
+	 *
+	 * @param currency, k = 1,...,N
+	 * @param time,     t
+	 * @return FFX_k(T_2;t)
+	 */
+	public RandomVariable getForwardFXRate(int currency, double time) {
+		if (currency < 1 || currency > getNumberOfForeignCurrencies()) {
+			throw new IllegalArgumentException("Currency not supported: " + currency);
+		}
+		return getProcessValue(time, getNumberOfForeignCurrencies() + currency);
+	}
+
+	@Override
+	public RandomVariable getNumeraire(double time) {
+		return derivedQuantityCache.get(Quantity.NUMERAIRE, time, 0,
+				() -> lognormalProcessModel.getNumeraire(process, time));
+	}
+
+	private void checkCurrency(int currency) {
+		if (currency < 0 || currency > getNumberOfForeignCurrencies()) {
+			throw new IllegalArgumentException("Currency not supported: " + currency);
+		}
+	}
+
+	/**
+	 * @return the number N of foreign currencies
+	 */
+	public int getNumberOfForeignCurrencies() {
+		return initialValuesFX.length;
+	}
+
+	@Override
+	public int getNumberOfPaths() {
+		return brownianMotion.getNumberOfPaths();
+	}
+
+	@Override
+	public TimeDiscretization getTimeDiscretization() {
+		return brownianMotion.getTimeDiscretization();
+	}
+
+	@Override
+	public double getTime(int timeIndex) {
+		return getTimeDiscretization().getTime(timeIndex);
+	}
+
+	@Override
+	public int getTimeIndex(double time) {
+		return getTimeDiscretization().getTimeIndex(time);
+	}
+
+	@Override
+	public RandomVariable getRandomVariableForConstant(double value) {
+		return brownianMotion.getRandomVariableForConstant(value);
+	}
+
+	@Override
+	public RandomVariable getMonteCarloWeights(int timeIndex) throws CalculationException {
+		return new Scalar(1.0);
+	}
+
+	@Override
+	public RandomVariable getMonteCarloWeights(double time) throws CalculationException {
+		return new Scalar(1.0);
+	}
+
+	/**
+	 * It returns a clone of this model with modified parameters. The keys are the
+	 * names of the parameters of the constructor: initialValueDomesticForwardRate,
+	 * volatilityDomestic, domesticZeroBond (with values of type Number),
+	 * initialValuesForeignForwardRate, initialValuesFX, volatilitiesForeign,
+	 * volatilitiesFXForward, foreignZeroBonds (with values of type double[]),
+	 * correlation (double[][]) and brownianMotion.
+	 *
+	 * If no Brownian motion is given, the clone uses the same Brownian increments
+	 * of this model, and shares the simulated components whose initial value,
+	 * drift and factor loadings are not changed.
+	 *
+	 * @param dataModified, the map of the modified parameters
+	 * @return the clone
+	 */
+	@Override
+	public MultiCurrencyModelWithSingleMaturity getCloneWithModifiedData(Map<String, Object> dataModified)
+			throws CalculationException {
+		Map<String, Object> data = new HashMap<>();
+		data.put("initialValueDomesticForwardRate", initialValueDomesticForwardRate);
+		data.put("initialValuesForeignForwardRate", initialValuesForeignForwardRate);
+		data.put("initialValuesFX", initialValuesFX);
+		data.put("volatilityDomestic", volatilityDomestic);
+		data.put("volatilitiesForeign", volatilitiesForeign);
+		data.put("volatilitiesFXForward", volatilitiesFXForward);
+		data.put("correlation", correlation);
+		data.put("domesticZeroBond", domesticZeroBond);
+		data.put("foreignZeroBonds", foreignZeroBonds);
+
+		BrownianMotion newBrownianMotion = null;
+		for (Map.Entry<String, Object> entry : dataModified.entrySet()) {
+			Object oldValue = data.get(entry.getKey());
+			if (entry.getKey().equals("brownianMotion")) {
+				newBrownianMotion = (BrownianMotion) entry.getValue();
+			} else if (oldValue == null) {
+				throw new IllegalArgumentException("Parameter not supported: " + entry.getKey());
+			} else if (oldValue instanceof Double) {
+				data.put(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+			} else if (oldValue.getClass().isInstance(entry.getValue())) {
+				data.put(entry.getKey(), entry.getValue());
+			} else {
+				throw new IllegalArgumentException(
+						"Type not supported for " + entry.getKey() + ": " + entry.getValue());
+			}
+		}
+
+		// new random numbers: nothing can be shared
+		BrownianMotion cloneBrownianMotion = newBrownianMotion == null ? brownianMotion
+				: newBrownianMotion.getCloneWithModifiedTimeDiscretization(
+						new TimeDiscretizationFromArray(0.0, periodStart, periodEnd));
+		ExactSchemeFromProcessModel parentProcess = newBrownianMotion == null ? process : null;
+
+		return new MultiCurrencyModelWithSingleMaturity((Double) data.get("initialValueDomesticForwardRate"),
+				(double[]) data.get("initialValuesForeignForwardRate"), (double[]) data.get("initialValuesFX"),
+				(Double) data.get("volatilityDomestic"), (double[]) data.get("volatilitiesForeign"),
+				(double[]) data.get("volatilitiesFXForward"), (double[][]) data.get("correlation"), periodStart,
+				periodEnd, (Double) data.get("domesticZeroBond"), (double[]) data.get("foreignZeroBonds"),
+				cloneBrownianMotion, parentProcess);
+	}
+
+	/**
+	 * @return the Brownian motion driving the simulation, on the time
+	 *         discretization {0, T_1, T_2}
+	 */
+	public BrownianMotion getBrownianMotion() {
+		return brownianMotion;
+	}
+
+	public LognormalMultiCurrencyProcessModel getLognormalProcessModel() {
+		return lognormalProcessModel;
+	}
+
+	public double getPeriodStart() {
+		return periodStart;
+	}
+
+	public double getPeriodEnd() {
+		return periodEnd;
+	}
+
+	public double getDomesticZeroBond() {
+		return domesticZeroBond;
+	}
+
+	public double[] getForeignZeroBonds() {
+		return foreignZeroBonds.clone();
+	}
+
+	public double[] getInitialValuesFX() {
+		return initialValuesFX.clone();
+	}
+}
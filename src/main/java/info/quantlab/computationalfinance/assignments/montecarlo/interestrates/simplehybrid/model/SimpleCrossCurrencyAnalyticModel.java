@@ -0,0 +1,327 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import net.finmath.functions.NormalDistribution;
+
+/**
+ * This class provides the analytic valuation of the products of the simple
+ * cross currency model, under the same dynamics simulated by
+ * {@link SimpleCrossCurrencyModelWithSingleMaturity}: L^d, FFX are log-normal
+ * martingales under the domestic T_2-forward measure, L^f is log-normal with
+ * the quanto drift -sigma^f sigma^FFX rho^{f,FFX}.
+ *
+ * All the values are given at time 0 and in domestic currency. Note that the
+ * payoffs of the caplets are not multiplied by the period length, as in
+ * GeneralizedCaplet.
+ *
+ * The formulas are all of the form N(t) E_t[X / N(T)], and the deflated
+ * conditional values E_t[X / N(T)] are also provided as static methods of the
+ * state at time t, so that they can be used for the valuation at later times.
+ */
+public class SimpleCrossCurrencyAnalyticModel {
+
+	private double initialValueDomesticForwardRate;
+	private double initialValueForeignForwardRate;
+	private double initialValueFX;
+
+	private double volatilityDomestic;
+	private double volatilityForeign;
+	private double volatilityFXForward;
+
+	private double correlationDomFor;
+	private double correlationFXDomestic;
+	private double correlationFXForeign;
+
+	private double periodStart;
+	private double periodEnd;
+
+	private double domesticZeroBond;
+	private double foreignZeroBond;
+
+	/**
+	 * It constructs an object for the analytic valuation, with the same
+	 * parameters of SimpleCrossCurrencyModelWithSingleMaturity.
+	 *
+	 * @param initialValueDomesticForwardRate, L^d(T_1, T_2;0)
+	 * @param initialValueForeignForwardRate,  L^f(T_1, T_2;0)
+	 * @param initialValueFX,                  FX(0)
+	 * @param volatilityDomestic,              the log-volatility of L^d
+	 * @param volatilityForeign,               the log-volatility of L^f
+	 * @param volatilityFXForward,             the log-volatility of FFX
+	 * @param correlationDomFor,               the correlation between L^d and L^f
+	 * @param correlationFXDomestic,           the correlation between L^d and FFX
+	 * @param correlationFXForeign,            the correlation between L^f and FFX
+	 * @param periodStart,                     T_1
+	 * @param periodEnd,                       T_2
+	 * @param domesticZeroBond,                P^d(T_2;0)
+	 * @param foreignZeroBond,                 P^f(T_2;0)
+	 */
+	public SimpleCrossCurrencyAnalyticModel(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double volatilityDomestic,
+			double volatilityForeign, double volatilityFXForward, double correlationDomFor,
+			double correlationFXDomestic, double correlationFXForeign, double periodStart, double periodEnd,
+			double domesticZeroBond, double foreignZeroBond) {
+		super();
+		this.initialValueDomesticForwardRate = initialValueDomesticForwardRate;
+		this.initialValueForeignForwardRate = initialValueForeignForwardRate;
+		this.initialValueFX = initialValueFX;
+		this.volatilityDomestic = volatilityDomestic;
+		this.volatilityForeign = volatilityForeign;
+		this.volatilityFXForward = volatilityFXForward;
+		this.correlationDomFor = correlationDomFor;
+		this.correlationFXDomestic = correlationFXDomestic;
+		this.correlationFXForeign = correlationFXForeign;
+		this.periodStart = periodStart;
+		this.periodEnd = periodEnd;
+		this.domesticZeroBond = domesticZeroBond;
+		this.foreignZeroBond = foreignZeroBond;
+	}
+
+	/**
+	 * It returns the value of the generalized caplet paying max(L - K, 0) * (isQuanto
+	 * ? 1 : FX) in T, where L is fixed in T_1 for the period [T_1, T_2].
+	 *
+	 * @param currency,    0 if domestic, 1 if foreign
+	 * @param isQuanto,    true if it is a quanto, false if foreign caplet
+	 * @param paymentTime, T_1 or T_2
+	 * @param strike,      K
+	 * @return the value at time 0
+	 */
+	public double getCapletValue(int currency, boolean isQuanto, double paymentTime, double strike) {
+		return domesticZeroBond * getDeflatedCapletValue(currency, isQuanto, isPaymentInAdvance(paymentTime), strike,
+				initialValueDomesticForwardRate, initialValueForeignForwardRate, getInitialValueFXForward(),
+				periodStart, periodEnd - periodStart, volatilityDomestic, volatilityForeign, volatilityFXForward,
+				correlationDomFor, correlationFXForeign);
+	}
+
+	/**
+	 * It returns the value of the zero coupon bond paying one unit of the given
+	 * currency at maturity.
+	 *
+	 * @param currency, 0 if domestic, 1 if foreign
+	 * @param maturity, T_1 or T_2
+	 * @return the value at time 0, in domestic currency
+	 */
+	public double getZeroBondValue(int currency, double maturity) {
+		return domesticZeroBond * getDeflatedZeroBondValue(currency, isPaymentInAdvance(maturity),
+				initialValueDomesticForwardRate, initialValueForeignForwardRate, getInitialValueFXForward(),
+				periodEnd - periodStart);
+	}
+
+	/**
+	 * It returns the value of the FX option paying max(FX(T_2) - K, 0) in T_2. FX
+	 * options with maturity T_1 do not have a closed form in this model.
+	 *
+	 * @param maturity, T_2
+	 * @param strike,   K
+	 * @return the value at time 0
+	 */
+	public double getFXOptionValue(double maturity, double strike) {
+		if (maturity != periodEnd) {
+			throw new IllegalArgumentException("Maturity not supported: " + maturity);
+		}
+		return domesticZeroBond
+				* getBlackValue(getInitialValueFXForward(), strike, volatilityFXForward, periodEnd);
+	}
+
+	/**
+	 * It returns E_t[X / N(T)] for the generalized caplet, where N is the
+	 * numeraire (the domestic zero bond with maturity T_2), given the state of
+	 * the model at time t <= T_1.
+	 *
+	 * @param currency,                0 if domestic, 1 if foreign
+	 * @param isQuanto,                true if it is a quanto
+	 * @param isPaymentInAdvance,      true if paid in T_1, false if paid in T_2
+	 * @param strike,                  K
+	 * @param domesticForwardRate,     L^d(T_1,T_2;t)
+	 * @param foreignForwardRate,      L^f(T_1,T_2;t)
+	 * @param fxForward,               FFX(T_2;t)
+	 * @param timeToFixing,            T_1 - t
+	 * @param periodLength,            T_2 - T_1
+	 * @param volatilityDomestic,      the log-volatility of L^d
+	 * @param volatilityForeign,       the log-volatility of L^f
+	 * @param volatilityFXForward,     the log-volatility of FFX
+	 * @param correlationDomFor,       the correlation between L^d and L^f
+	 * @param correlationFXForeign,    the correlation between L^f and FFX
+	 * @return E_t[X / N(T)]
+	 */
+	public static double getDeflatedCapletValue(int currency, boolean isQuanto, boolean isPaymentInAdvance,
+			double strike, double domesticForwardRate, double foreignForwardRate, double fxForward,
+			double timeToFixing, double periodLength, double volatilityDomestic, double volatilityForeign,
+			double volatilityFXForward, double correlationDomFor, double correlationFXForeign) {
+
+		if (currency == 0) {
+			/*
+			 * L^d is a martingale under the measure of the numeraire. If paid in T_1, the
+			 * payoff has to be multiplied by 1/N(T_1) = 1 + L^d(T_1) (T_2 - T_1).
+			 */
+			double value = getBlackValue(domesticForwardRate, strike, volatilityDomestic, timeToFixing);
+			if (isPaymentInAdvance) {
+				value += periodLength
+						* getSecondMomentCallValue(domesticForwardRate, strike, volatilityDomestic, timeToFixing);
+			}
+			return value;
+		} else if (currency == 1 && !isQuanto) {
+			/*
+			 * Changing the measure with the density FFX(T_1)/FFX(t), L^f becomes a
+			 * martingale (this is exactly the reason for the quanto drift). If paid in T_1
+			 * we have FX(T_1)/N(T_1) = FFX(T_1)(1 + L^f(T_1) (T_2 - T_1)).
+			 */
+			double value = getBlackValue(foreignForwardRate, strike, volatilityForeign, timeToFixing);
+			if (isPaymentInAdvance) {
+				value += periodLength
+						* getSecondMomentCallValue(foreignForwardRate, strike, volatilityForeign, timeToFixing);
+			}
+			return fxForward * value;
+		} else if (currency == 1) {
+			// Under the measure of the numeraire, L^f has the quanto drift
+			double quantoAdjustedForward = foreignForwardRate
+					* Math.exp(-volatilityForeign * volatilityFXForward * correlationFXForeign * timeToFixing);
+
+			double value = getBlackValue(quantoAdjustedForward, strike, volatilityForeign, timeToFixing);
+			if (isPaymentInAdvance) {
+				/*
+				 * E[max(L^f - K, 0) L^d(T_1)]: changing the measure with the density
+				 * L^d(T_1)/L^d(t), L^f gets the additional drift rho^{d,f} sigma^d sigma^f.
+				 */
+				double adjustedForward = quantoAdjustedForward
+						* Math.exp(correlationDomFor * volatilityDomestic * volatilityForeign * timeToFixing);
+				value += periodLength * domesticForwardRate
+						* getBlackValue(adjustedForward, strike, volatilityForeign, timeToFixing);
+			}
+			return value;
+		} else {
+			throw new IllegalArgumentException("Currency not supported: " + currency);
+		}
+	}
+
+	/**
+	 * It returns E_t[X / N(T)] for the zero coupon bond paying one unit of the
+	 * given currency in T, where N is the numeraire, given the state of the model
+	 * at time t <= T.
+	 *
+	 * @param currency,            0 if domestic, 1 if foreign
+	 * @param isPaymentInAdvance,  true if paid in T_1, false if paid in T_2
+	 * @param domesticForwardRate, L^d(T_1,T_2;t)
+	 * @param foreignForwardRate,  L^f(T_1,T_2;t)
+	 * @param fxForward,           FFX(T_2;t)
+	 * @param periodLength,        T_2 - T_1
+	 * @return E_t[X / N(T)]
+	 */
+	public static double getDeflatedZeroBondValue(int currency, boolean isPaymentInAdvance,
+			double domesticForwardRate, double foreignForwardRate, double fxForward, double periodLength) {
+		if (currency == 0) {
+			return isPaymentInAdvance ? 1.0 + domesticForwardRate * periodLength : 1.0;
+		} else if (currency == 1) {
+			return isPaymentInAdvance ? fxForward * (1.0 + foreignForwardRate * periodLength) : fxForward;
+		} else {
+			throw new IllegalArgumentException("Currency not supported: " + currency);
+		}
+	}
+
+	/**
+	 * @return E[max(L - K, 0)] for L log-normal with mean forward and
+	 *         log-variance volatility^2 * time
+	 */
+	public static double getBlackValue(double forward, double strike, double volatility, double time) {
+		if (strike <= 0.0) {
+			return forward - strike;
+		}
+		double standardDeviation = volatility * Math.sqrt(time);
+		if (standardDeviation <= 0.0) {
+			return Math.max(forward - strike, 0.0);
+		}
+		double d1 = (Math.log(forward / strike) + 0.5 * standardDeviation * standardDeviation) / standardDeviation;
+		double d2 = d1 - standardDeviation;
+		return forward * NormalDistribution.cumulativeDistribution(d1)
+				- strike * NormalDistribution.cumulativeDistribution(d2);
+	}
+
+	/**
+	 * @return E[L max(L - K, 0)] for L log-normal with mean forward and
+	 *         log-variance volatility^2 * time
+	 */
+	public static double getSecondMomentCallValue(double forward, double strike, double volatility, double time) {
+		double standardDeviation = volatility * Math.sqrt(time);
+		double variance = standardDeviation * standardDeviation;
+		if (strike <= 0.0) {
+			return forward * forward * Math.exp(variance) - strike * forward;
+		}
+		if (standardDeviation <= 0.0) {
+			return forward * Math.max(forward - strike, 0.0);
+		}
+		double d1 = (Math.log(forward / strike) + 0.5 * variance) / standardDeviation;
+		// E[L^2 1{L > K}] - K E[L 1{L > K}]
+		return forward * forward * Math.exp(variance)
+				* NormalDistribution.cumulativeDistribution(d1 + standardDeviation)
+				- strike * forward * NormalDistribution.cumulativeDistribution(d1);
+	}
+
+	private boolean isPaymentInAdvance(double paymentTime) {
+		if (paymentTime == periodStart) {
+			return true;
+		} else if (paymentTime == periodEnd) {
+			return false;
+		} else {
+			throw new IllegalArgumentException("Payment time not supported: " + paymentTime);
+		}
+	}
+
+	/**
+	 * @return FFX(T_2;0) = FX(0) P^f(T_2;0) / P^d(T_2;0)
+	 */
+	public double getInitialValueFXForward() {
+		return initialValueFX * foreignZeroBond / domesticZeroBond;
+	}
+
+	public double getInitialValueDomesticForwardRate() {
+		return initialValueDomesticForwardRate;
+	}
+
+	public double getInitialValueForeignForwardRate() {
+		return initialValueForeignForwardRate;
+	}
+
+	public double getInitialValueFX() {
+		return initialValueFX;
+	}
+
+	public double getVolatilityDomestic() {
+		return volatilityDomestic;
+	}
+
+	public double getVolatilityForeign() {
+		return volatilityForeign;
+	}
+
+	public double getVolatilityFXForward() {
+		return volatilityFXForward;
+	}
+
+	public double getCorrelationDomFor() {
+		return correlationDomFor;
+	}
+
+	public double getCorrelationFXDomestic() {
+		return correlationFXDomestic;
+	}
+
+	public double getCorrelationFXForeign() {
+		return correlationFXForeign;
+	}
+
+	public double getPeriodStart() {
+		return periodStart;
+	}
+
+	public double getPeriodEnd() {
+		return periodEnd;
+	}
+
+	public double getDomesticZeroBond() {
+		return domesticZeroBond;
+	}
+
+	public double getForeignZeroBond() {
+		return foreignZeroBond;
+	}
+}
@@ -0,0 +1,274 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import net.finmath.optimizer.LevenbergMarquardt;
+import net.finmath.optimizer.SolverException;
+
+/**
+ * This class calibrates the volatilities and the correlations of the simple
+ * cross currency model to quotes of domestic, foreign and quanto caplets and of
+ * FX options with maturity T_2. The values of the products are given by the
+ * closed form formulas of {@link SimpleCrossCurrencyAnalyticModel}, so no
+ * simulation is needed. The minimization is done by the Levenberg-Marquardt
+ * algorithm of finmath-lib, which computes the Jacobian by finite differences
+ * in parallel; the quotes are also valued in parallel when they are many.
+ *
+ * The parameters are transformed such that any value of the optimizer gives a
+ * valid model: the volatilities are exp(x), and the correlation matrix is
+ * written as C C^T, where the rows of the lower triangular C (in the order
+ * domestic, FFX, foreign) are unit vectors given by spherical angles in (0,
+ * pi). The matrix is then always positive semi-definite, and the factor
+ * loadings of LognormalSimpleCrossCurrencyProcessModel are well defined.
+ *
+ * Note that the caplets and the FX options with maturity T_2 do not depend on
+ * the correlation between the domestic rate and the FFX: this correlation is
+ * then not calibrated, but given.
+ */
+public class SimpleCrossCurrencyCalibration {
+
+	// below this number of quotes the valuation is not worth to be parallelized
+	private static final int MINIMUM_NUMBER_OF_QUOTES_FOR_PARALLEL_VALUATION = 64;
+
+	/**
+	 * A quote of a caplet or of an FX option with maturity T_2, i.e., its value
+	 * at time 0 in domestic currency.
+	 */
+	public static class CalibrationQuote {
+
+		private final boolean isFXOption;
+		private final int currency;
+		private final boolean isQuanto;
+		private final double paymentTime;
+		private final double strike;
+		private final double value;
+
+		private CalibrationQuote(boolean isFXOption, int currency, boolean isQuanto, double paymentTime,
+				double strike, double value) {
+			this.isFXOption = isFXOption;
+			this.currency = currency;
+			this.isQuanto = isQuanto;
+			this.paymentTime = paymentTime;
+			this.strike = strike;
+			this.value = value;
+		}
+
+		/**
+		 * @param currency,    0 if domestic, 1 if foreign
+		 * @param isQuanto,    true if it is a quanto
+		 * @param paymentTime, T_1 or T_2
+		 * @param strike,      K
+		 * @param value,       the value at time 0 in domestic currency
+		 * @return the quote of the caplet
+		 */
+		public static CalibrationQuote caplet(int currency, boolean isQuanto, double paymentTime, double strike,
+				double value) {
+			return new CalibrationQuote(false, currency, isQuanto, paymentTime, strike, value);
+		}
+
+		/**
+		 * @param maturity, T_2
+		 * @param strike,   K
+		 * @param value,    the value at time 0 in domestic currency
+		 * @return the quote of the FX option
+		 */
+		public static CalibrationQuote fxOption(double maturity, double strike, double value) {
+			return new CalibrationQuote(true, 1, false, maturity, strike, value);
+		}
+
+		public double getValue() {
+			return value;
+		}
+
+		/**
+		 * @param model, the analytic model
+		 * @return the value of the product of the quote in the model
+		 */
+		public double getModelValue(SimpleCrossCurrencyAnalyticModel model) {
+			return isFXOption ? model.getFXOptionValue(paymentTime, strike)
+					: model.getCapletValue(currency, isQuanto, paymentTime, strike);
+		}
+	}
+
+	/**
+	 * The result of the calibration.
+	 */
+	public static class CalibrationResult {
+
+		private final SimpleCrossCurrencyAnalyticModel model;
+		private final double rootMeanSquaredError;
+		private final int numberOfIterations;
+
+		private CalibrationResult(SimpleCrossCurrencyAnalyticModel model, double rootMeanSquaredError,
+				int numberOfIterations) {
+			this.model = model;
+			this.rootMeanSquaredError = rootMeanSquaredError;
+			this.numberOfIterations = numberOfIterations;
+		}
+
+		/**
+		 * @return the calibrated model, whose parameters can be used to construct
+		 *         the Monte-Carlo model
+		 */
+		public SimpleCrossCurrencyAnalyticModel getModel() {
+			return model;
+		}
+
+		public double getRootMeanSquaredError() {
+			return rootMeanSquaredError;
+		}
+
+		public int getNumberOfIterations() {
+			return numberOfIterations;
+		}
+	}
+
+	private final double initialValueDomesticForwardRate;
+	private final double initialValueForeignForwardRate;
+	private final double initialValueFX;
+	private final double correlationFXDomestic;
+	private final double periodStart;
+	private final double periodEnd;
+	private final double domesticZeroBond;
+	private final double foreignZeroBond;
+
+	private final List<CalibrationQuote> quotes;
+	private final int numberOfThreads;
+
+	private int maximumNumberOfIterations = 200;
+
+	/**
+	 * It constructs an object to calibrate the model to the given quotes.
+	 *
+	 * @param initialValueDomesticForwardRate, L^d(T_1, T_2;0)
+	 * @param initialValueForeignForwardRate,  L^f(T_1, T_2;0)
+	 * @param initialValueFX,                  FX(0)
+	 * @param correlationFXDomestic,           the correlation between L^d and FFX
+	 *                                         (not calibrated), in (-1, 1)
+	 * @param periodStart,                     T_1
+	 * @param periodEnd,                       T_2
+	 * @param domesticZeroBond,                P^d(T_2;0)
+	 * @param foreignZeroBond,                 P^f(T_2;0)
+	 * @param quotes,                          the quotes
+	 * @param numberOfThreads,                 the number of threads used by the
+	 *                                         optimizer
+	 */
+	public SimpleCrossCurrencyCalibration(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double correlationFXDomestic,
+			double periodStart, double periodEnd, double domesticZeroBond, double foreignZeroBond,
+			List<CalibrationQuote> quotes, int numberOfThreads) {
+		super();
+		if (Math.abs(correlationFXDomestic) >= 1) {
+			throw new IllegalArgumentException("The correlation must be in (-1, 1): " + correlationFXDomestic);
+		}
+		this.initialValueDomesticForwardRate = initialValueDomesticForwardRate;
+		this.initialValueForeignForwardRate = initialValueForeignForwardRate;
+		this.initialValueFX = initialValueFX;
+		this.correlationFXDomestic = correlationFXDomestic;
+		this.periodStart = periodStart;
+		this.periodEnd = periodEnd;
+		this.domesticZeroBond = domesticZeroBond;
+		this.foreignZeroBond = foreignZeroBond;
+		this.quotes = new ArrayList<>(quotes);
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * It calibrates the model starting from the given guess.
+	 *
+	 * @param volatilityDomestic,   initial guess of the log-volatility of L^d
+	 * @param volatilityForeign,    initial guess of the log-volatility of L^f
+	 * @param volatilityFXForward,  initial guess of the log-volatility of FFX
+	 * @param correlationDomFor,    initial guess of the correlation between L^d
+	 *                              and L^f
+	 * @param correlationFXForeign, initial guess of the correlation between L^f
+	 *                              and FFX
+	 * @return the result of the calibration
+	 * @throws SolverException if the optimizer fails
+	 */
+	public CalibrationResult calibrate(double volatilityDomestic, double volatilityForeign,
+			double volatilityFXForward, double correlationDomFor, double correlationFXForeign)
+			throws SolverException {
+		double[] initialParameters = getParameters(volatilityDomestic, volatilityForeign, volatilityFXForward,
+				correlationDomFor, correlationFXForeign);
+		double[] targetValues = quotes.stream().mapToDouble(CalibrationQuote::getValue).toArray();
+
+		LevenbergMarquardt optimizer = new LevenbergMarquardt(initialParameters, targetValues,
+				maximumNumberOfIterations, numberOfThreads) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void setValues(double[] parameters, double[] values) {
+				SimpleCrossCurrencyAnalyticModel model = getModel(parameters);
+				IntStream quoteIndices = IntStream.range(0, quotes.size());
+				if (quotes.size() >= MINIMUM_NUMBER_OF_QUOTES_FOR_PARALLEL_VALUATION) {
+					quoteIndices = quoteIndices.parallel();
+				}
+				quoteIndices.forEach(quoteIndex -> values[quoteIndex] = quotes.get(quoteIndex).getModelValue(model));
+			}
+		};
+		optimizer.run();
+
+		SimpleCrossCurrencyAnalyticModel calibratedModel = getModel(optimizer.getBestFitParameters());
+
+		double sumOfSquaredErrors = 0.0;
+		for (CalibrationQuote quote : quotes) {
+			double error = quote.getModelValue(calibratedModel) - quote.getValue();
+			sumOfSquaredErrors += error * error;
+		}
+
+		return new CalibrationResult(calibratedModel, Math.sqrt(sumOfSquaredErrors / quotes.size()),
+				optimizer.getIterations());
+	}
+
+	public void setMaximumNumberOfIterations(int maximumNumberOfIterations) {
+		this.maximumNumberOfIterations = maximumNumberOfIterations;
+	}
+
+	/*
+	 * The correlation matrix is C C^T, where the rows of C (domestic, FFX, foreign)
+	 * are (1, 0, 0), (cos(alpha), sin(alpha), 0) and (cos(beta),
+	 * sin(beta)cos(gamma), sin(beta)sin(gamma)). alpha is given by the correlation
+	 * between domestic and FFX, beta and gamma are calibrated.
+	 */
+	private SimpleCrossCurrencyAnalyticModel getModel(double[] parameters) {
+		double alpha = Math.acos(correlationFXDomestic);
+		double beta = getAngle(parameters[3]);
+		double gamma = getAngle(parameters[4]);
+
+		double correlationDomFor = Math.cos(beta);
+		double correlationFXForeign = Math.cos(alpha) * Math.cos(beta)
+				+ Math.sin(alpha) * Math.sin(beta) * Math.cos(gamma);
+
+		return new SimpleCrossCurrencyAnalyticModel(initialValueDomesticForwardRate, initialValueForeignForwardRate,
+				initialValueFX, Math.exp(parameters[0]), Math.exp(parameters[1]), Math.exp(parameters[2]),
+				correlationDomFor, correlationFXDomestic, correlationFXForeign, periodStart, periodEnd,
+				domesticZeroBond, foreignZeroBond);
+	}
+
+	// the inverse of getModel
+	private double[] getParameters(double volatilityDomestic, double volatilityForeign, double volatilityFXForward,
+			double correlationDomFor, double correlationFXForeign) {
+		double alpha = Math.acos(correlationFXDomestic);
+		double beta = Math.acos(Math.max(-1.0, Math.min(1.0, correlationDomFor)));
+		double cosGamma = (correlationFXForeign - Math.cos(alpha) * Math.cos(beta))
+				/ (Math.sin(alpha) * Math.sin(beta));
+		double gamma = Math.acos(Double.isFinite(cosGamma) ? Math.max(-1.0, Math.min(1.0, cosGamma)) : 0.0);
+
+		return new double[] { Math.log(volatilityDomestic), Math.log(volatilityForeign),
+				Math.log(volatilityFXForward), getAngleParameter(beta), getAngleParameter(gamma) };
+	}
+
+	// maps the real line to (0, pi)
+	private static double getAngle(double parameter) {
+		return Math.PI / (1.0 + Math.exp(-parameter));
+	}
+
+	private static double getAngleParameter(double angle) {
+		// the boundary is not reachable: we start slightly inside
+		double clampedAngle = Math.max(1E-6, Math.min(Math.PI - 1E-6, angle));
+		return Math.log(clampedAngle / (Math.PI - clampedAngle));
+	}
+}
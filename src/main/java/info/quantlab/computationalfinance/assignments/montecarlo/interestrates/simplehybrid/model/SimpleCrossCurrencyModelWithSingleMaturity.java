@@ -1,18 +1,31 @@
 package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 
-import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.LognormalProcessModel;
-import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ProcessModelFromLognormalProcessModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion.DriftShiftedBrownianMotion;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.DerivedQuantityCache.Quantity;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetricsListener.Phase;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ExactSchemeFromProcessModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.PrimitiveLognormalProcessModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ProcessFromMappedFile;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ProcessModelFromPrimitiveLognormalProcessModel;
 import net.finmath.exception.CalculationException;
 import net.finmath.montecarlo.BrownianMotion;
-import net.finmath.montecarlo.MonteCarloSimulationModel;
+import net.finmath.montecarlo.RandomVariableFactory;
+import net.finmath.montecarlo.RandomVariableFromArrayFactory;
 import net.finmath.montecarlo.model.ProcessModel;
 import net.finmath.montecarlo.process.EulerSchemeFromProcessModel;
 import net.finmath.montecarlo.process.MonteCarloProcess;
 import net.finmath.stochastic.RandomVariable;
 import net.finmath.stochastic.Scalar;
 import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
 
 /**
  * This class provides the simulation of the domestic and foreign Libor, and of
@@ -24,14 +37,54 @@ import net.finmath.time.TimeDiscretization;
  */
 public class SimpleCrossCurrencyModelWithSingleMaturity implements SimpleCrossCurrencyModel {
 
+	/**
+	 * The scheme used for the simulation of the processes.
+	 */
+	public enum SimulationScheme {
+		/**
+		 * Euler scheme for the logarithm of the processes, over the whole time
+		 * discretization of the Brownian motion.
+		 */
+		EULER,
+		/**
+		 * Exact simulation of the logarithm of the processes, only at the times 0, T_1
+		 * and T_2. This is possible since the log-processes have constant drift and
+		 * factor loadings. The Brownian motion given is then only used on the time
+		 * discretization {0, T_1, T_2}.
+		 */
+		EXACT
+	}
+
+	private double initialValueDomesticForwardRate;
+	private double initialValueForeignForwardRate;
+	private double initialValueFX;
+
+	private double volatilityDomestic;
+	private double volatilityForeign;
+	private double volatilityFXForward;
+
+	private double correlationDomFor;
+	private double correlationFXDomestic;
+	private double correlationFXForeign;
+
 	private double periodStart;
 	private double periodEnd;
 	private double domesticZeroBond;
 	private double foreignZeroBond;
 
+	private SimulationScheme simulationScheme;
+	private RandomVariableFactory randomVariableFactory;
+
 	private BrownianMotion brownianMotion;
 
+	private transient PrimitiveLognormalProcessModel lognormalProcessModel;
 	private transient MonteCarloProcess process;
+	private transient volatile boolean isSimulated;
+
+	// the numeraire and the FX rates are computed only once
+	private static final int DERIVED_QUANTITY_CACHE_SIZE = 32;
+	private final transient DerivedQuantityCache derivedQuantityCache = new DerivedQuantityCache(
+			DERIVED_QUANTITY_CACHE_SIZE);
 
 	/**
 	 * It constructs an object to simulate domestic and foreign Libor, and of the
@@ -63,41 +116,213 @@ public class SimpleCrossCurrencyModelWithSingleMaturity implements SimpleCrossCu
 			double volatilityForeign, double volatilityFXForward, double correlationDomFor,
 			double correlationFXDomestic, double correlationFXForeign, double periodStart, double periodEnd,
 			double domesticZeroBond, double foreignZeroBond, BrownianMotion brownianMotion) {
+		this(initialValueDomesticForwardRate, initialValueForeignForwardRate, initialValueFX, volatilityDomestic,
+				volatilityForeign, volatilityFXForward, correlationDomFor, correlationFXDomestic, correlationFXForeign,
+				periodStart, periodEnd, domesticZeroBond, foreignZeroBond, brownianMotion, SimulationScheme.EULER);
+	}
+
+	/**
+	 * It constructs an object to simulate domestic and foreign Libor, and of the
+	 * forward FX rate, with the given simulation scheme.
+	 *
+	 * @param initialValueDomesticForwardRate, L^d(T_1, T_2;0)
+	 * @param initialValueForeignForwardRate,  L^f(T_1, T_2;0)
+	 * @param initialValueFX,                  FFX(T_2;0)
+	 * @param volatilityDomestic,              the log-volatility of the process
+	 *                                         (L^d(T_1, T_2;t))_{0 <= t <= T_1}
+	 * @param volatilityForeign,               the log-volatility of the process
+	 *                                         (L^f(T_1, T_2;t))_{0 <= t <= T_1}
+	 * @param volatilityFXForward,             the log-volatility of the process
+	 *                                         (FFX(T_2;t))_{0 <= t <= T_1}
+	 * @param correlationDomFor,               the correlation between L^d and L^f
+	 * @param correlationFXDomestic,           the correlation between L^d and FFX
+	 * @param correlationFXForeign,            the correlation between L^f and FFX
+	 * @param periodStart,                     T_1
+	 * @param periodEnd,                       T_2
+	 * @param domesticZeroBond,                P^d(T_2;0)
+	 * @param foreignZeroBond,                 P^f(T_2;0)
+	 * @param brownianMotion,                  the Brownian motion to build the
+	 *                                         simulation of the processes: these
+	 *                                         represents the independent stochastic
+	 *                                         drivers W^1, W^2, W^3
+	 * @param simulationScheme,                EULER to simulate on the time
+	 *                                         discretization of the Brownian
+	 *                                         motion, EXACT to sample only 0, T_1
+	 *                                         and T_2
+	 */
+	public SimpleCrossCurrencyModelWithSingleMaturity(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double volatilityDomestic,
+			double volatilityForeign, double volatilityFXForward, double correlationDomFor,
+			double correlationFXDomestic, double correlationFXForeign, double periodStart, double periodEnd,
+			double domesticZeroBond, double foreignZeroBond, BrownianMotion brownianMotion,
+			SimulationScheme simulationScheme) {
+		this(initialValueDomesticForwardRate, initialValueForeignForwardRate, initialValueFX, volatilityDomestic,
+				volatilityForeign, volatilityFXForward, correlationDomFor, correlationFXDomestic, correlationFXForeign,
+				periodStart, periodEnd, domesticZeroBond, foreignZeroBond, brownianMotion, simulationScheme,
+				new RandomVariableFromArrayFactory());
+	}
+
+	/**
+	 * It constructs an object to simulate domestic and foreign Libor, and of the
+	 * forward FX rate, with the given simulation scheme, storing the simulated
+	 * values in random variables created by the given factory.
+	 *
+	 * @param initialValueDomesticForwardRate, L^d(T_1, T_2;0)
+	 * @param initialValueForeignForwardRate,  L^f(T_1, T_2;0)
+	 * @param initialValueFX,                  FFX(T_2;0)
+	 * @param volatilityDomestic,              the log-volatility of the process
+	 *                                         (L^d(T_1, T_2;t))_{0 <= t <= T_1}
+	 * @param volatilityForeign,               the log-volatility of the process
+	 *                                         (L^f(T_1, T_2;t))_{0 <= t <= T_1}
+	 * @param volatilityFXForward,             the log-volatility of the process
+	 *                                         (FFX(T_2;t))_{0 <= t <= T_1}
+	 * @param correlationDomFor,               the correlation between L^d and L^f
+	 * @param correlationFXDomestic,           the correlation between L^d and FFX
+	 * @param correlationFXForeign,            the correlation between L^f and FFX
+	 * @param periodStart,                     T_1
+	 * @param periodEnd,                       T_2
+	 * @param domesticZeroBond,                P^d(T_2;0)
+	 * @param foreignZeroBond,                 P^f(T_2;0)
+	 * @param brownianMotion,                  the Brownian motion to build the
+	 *                                         simulation of the processes
+	 * @param simulationScheme,                EULER or EXACT
+	 * @param randomVariableFactory,           the factory of the random variables
+	 *                                         storing the simulated values, for
+	 *                                         example new
+	 *                                         RandomVariableFromArrayFactory(false)
+	 *                                         for single precision
+	 */
+	public SimpleCrossCurrencyModelWithSingleMaturity(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double volatilityDomestic,
+			double volatilityForeign, double volatilityFXForward, double correlationDomFor,
+			double correlationFXDomestic, double correlationFXForeign, double periodStart, double periodEnd,
+			double domesticZeroBond, double foreignZeroBond, BrownianMotion brownianMotion,
+			SimulationScheme simulationScheme, RandomVariableFactory randomVariableFactory) {
+		/*
+		 * For the exact scheme we only need the Brownian increments between the times
+		 * at which the model can be evaluated: a (possibly fine) time discretization
+		 * of the Brownian motion given does not cost anything.
+		 */
+		this(initialValueDomesticForwardRate, initialValueForeignForwardRate, initialValueFX, volatilityDomestic,
+				volatilityForeign, volatilityFXForward, correlationDomFor, correlationFXDomestic, correlationFXForeign,
+				periodStart, periodEnd, domesticZeroBond, foreignZeroBond,
+				simulationScheme == SimulationScheme.EXACT
+						? brownianMotion.getCloneWithModifiedTimeDiscretization(
+								new TimeDiscretizationFromArray(0.0, periodStart, periodEnd))
+						: brownianMotion,
+				simulationScheme, randomVariableFactory, null);
+	}
+
+	/*
+	 * Here the Brownian motion is already the one used by the scheme. If a process
+	 * factory is given, it provides the process instead of the scheme: for example
+	 * a clone of the exact scheme of another model, sharing the components whose
+	 * coefficients are not modified, or a process reading the values from a file.
+	 */
+	private SimpleCrossCurrencyModelWithSingleMaturity(double initialValueDomesticForwardRate,
+			double initialValueForeignForwardRate, double initialValueFX, double volatilityDomestic,
+			double volatilityForeign, double volatilityFXForward, double correlationDomFor,
+			double correlationFXDomestic, double correlationFXForeign, double periodStart, double periodEnd,
+			double domesticZeroBond, double foreignZeroBond, BrownianMotion brownianMotion,
+			SimulationScheme simulationScheme, RandomVariableFactory randomVariableFactory,
+			Function<ProcessModel, MonteCarloProcess> processFactory) {
 		super();
+		this.initialValueDomesticForwardRate = initialValueDomesticForwardRate;
+		this.initialValueForeignForwardRate = initialValueForeignForwardRate;
+		this.initialValueFX = initialValueFX;
+		this.volatilityDomestic = volatilityDomestic;
+		this.volatilityForeign = volatilityForeign;
+		this.volatilityFXForward = volatilityFXForward;
+		this.correlationDomFor = correlationDomFor;
+		this.correlationFXDomestic = correlationFXDomestic;
+		this.correlationFXForeign = correlationFXForeign;
 		this.periodStart = periodStart;
 		this.periodEnd = periodEnd;
 		this.domesticZeroBond = domesticZeroBond;
 		this.foreignZeroBond = foreignZeroBond;
+		this.simulationScheme = simulationScheme;
+		this.randomVariableFactory = randomVariableFactory;
 		this.brownianMotion = brownianMotion;
 
 		/*
 		 * Here we have to provide an object of type LognormalProcessModel: we want to
 		 * give the data identifying the model we want to simulate.
 		 */
-		LognormalProcessModel lognormalProcessModel = new LognormalSimpleCrossCurrencyProcessModel(periodStart,
+		lognormalProcessModel = new LognormalSimpleCrossCurrencyProcessModel(periodStart,
 				periodEnd, domesticZeroBond, initialValueDomesticForwardRate, initialValueForeignForwardRate,
 				initialValueFX * foreignZeroBond / domesticZeroBond, volatilityDomestic, volatilityForeign,
 				volatilityFXForward, correlationDomFor, correlationFXDomestic, correlationFXForeign);
 
 		/*
 		 * Then, such an object gets passed to the constructor of
-		 * ProcessModelFromLognormalProcessModel: it is basically wrapped in a class
-		 * providing some other methods to define the model we simulate. For example,
-		 * it's here that one specifies that the logarithm is actually simulated.
+		 * ProcessModelFromPrimitiveLognormalProcessModel: it is basically wrapped in a
+		 * class providing some other methods to define the model we simulate. For
+		 * example, it's here that one specifies that the logarithm is actually
+		 * simulated. The (constant) coefficients are wrapped in random variables only
+		 * once per time index.
 		 */
-		ProcessModel processModel = new ProcessModelFromLognormalProcessModel(lognormalProcessModel);
+		ProcessModel processModel = new ProcessModelFromPrimitiveLognormalProcessModel(null, randomVariableFactory,
+				lognormalProcessModel);
 
 		/*
 		 * Then, we link together the specification of the model and the stochastic
-		 * driver: the simulation is performed.
+		 * driver. The simulation is only performed at the first request of a value.
 		 */
-		process = new EulerSchemeFromProcessModel(processModel, brownianMotion);
+		if (processFactory != null) {
+			process = processFactory.apply(processModel);
+			return;
+		}
+		switch (simulationScheme) {
+		case EXACT:
+			process = new ExactSchemeFromProcessModel(processModel, this.brownianMotion);
+			break;
+		case EULER:
+		default:
+			process = new EulerSchemeFromProcessModel(processModel, this.brownianMotion);
+			break;
+		}
+	}
 
+	/*
+	 * The first request of a value triggers the generation of the Brownian
+	 * increments and the simulation of the paths: we do them here one after the
+	 * other, so that their duration can be reported to the metrics listener. The
+	 * exact scheme simulates (and reports) every component only when it is
+	 * requested: a domestic product does not simulate the foreign Libor and the
+	 * forward FX rate.
+	 */
+	private synchronized void simulate() {
+		if (isSimulated) {
+			return;
+		}
+		if (!(process instanceof ProcessFromMappedFile)) {
+			SimulationMetrics.measurePhase(Phase.BROWNIAN_MOTION_GENERATION,
+					() -> brownianMotion.getBrownianIncrement(0, 0));
+		}
+		if (process instanceof ExactSchemeFromProcessModel) {
+			isSimulated = true;
+			return;
+		}
+		SimulationMetrics.measurePhase(Phase.SIMULATION, () -> {
+			try {
+				return process.getProcessValue(0, 0);
+			} catch (CalculationException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		isSimulated = true;
 	}
 
 	private RandomVariable getProcessValue(double time, int componentIndex) {
+		int timeIndex = process.getTimeIndex(time);
+		if (timeIndex < 0) {
+			throw new IllegalArgumentException("Time not supported: " + time);
+		}
+		if (!isSimulated) {
+			simulate();
+		}
 		try {
-			return process.getProcessValue(process.getTimeIndex(time), componentIndex);
+			return process.getProcessValue(timeIndex, componentIndex);
 		} catch (CalculationException e) {
 			throw new RuntimeException(e);
 		}
@@ -110,6 +335,13 @@ public class SimpleCrossCurrencyModelWithSingleMaturity implements SimpleCrossCu
 
 	@Override
 	public RandomVariable getFXRate(int currency, double time) {
+		if (currency == 0) {
+			return new Scalar(1.0);
+		}
+		return derivedQuantityCache.get(Quantity.FX_RATE, time, currency, () -> calculateFXRate(currency, time));
+	}
+
+	private RandomVariable calculateFXRate(int currency, double time) {
 		/*
 		 * Here we want to return the FX rate relative to T_2, call it FX(T_2), based on
 		 * the data we have. We know that FX(T_2; t) = FFX(T_2; t) P^d(T_2;t) /
@@ -152,13 +384,35 @@ public class SimpleCrossCurrencyModelWithSingleMaturity implements SimpleCrossCu
 		}
 	}
 
+	/**
+	 * It returns the forward FX rate FFX(T_2;t), i.e., the process actually
+	 * simulated for the FX.
+	 *
+	 * @param time, t
+	 * @return FFX(T_2;t)
+	 */
+	public RandomVariable getForwardFXRate(double time) {
+		return derivedQuantityCache.get(Quantity.FORWARD_FX_RATE, time, 1,
+				() -> getProcessValue(time, 2 /* componentIndex */));
+	}
+
 	@Override
 	public RandomVariable getNumeraire(double time) {
-		try {
-			return process.getModel().getNumeraire(process, time);
-		} catch (CalculationException e) {
-			throw new RuntimeException(e);
-		}
+		return derivedQuantityCache.get(Quantity.NUMERAIRE, time, 0, () -> {
+			try {
+				return process.getModel().getNumeraire(process, time);
+			} catch (CalculationException e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	/**
+	 * @return the cache of the numeraire and of the FX rates computed so far,
+	 *         giving also the number of hits and misses
+	 */
+	public DerivedQuantityCache getDerivedQuantityCache() {
+		return derivedQuantityCache;
 	}
 
 	@Override
@@ -188,17 +442,285 @@ public class SimpleCrossCurrencyModelWithSingleMaturity implements SimpleCrossCu
 
 	@Override
 	public RandomVariable getMonteCarloWeights(int timeIndex) throws CalculationException {
-		return new Scalar(1.0);
+		return getMonteCarloWeights(getTime(timeIndex));
 	}
 
+	/**
+	 * It returns the weights of the paths at time t. They are all 1 unless the
+	 * model uses importance sampling (see {@link #getCloneWithImportanceSampling}):
+	 * then they are the likelihood ratio of the pricing measure with respect to
+	 * the one of the simulation, so that the expectation of a payoff under the
+	 * pricing measure is the average of the payoff multiplied by the weights.
+	 */
 	@Override
 	public RandomVariable getMonteCarloWeights(double time) throws CalculationException {
+		if (brownianMotion instanceof DriftShiftedBrownianMotion) {
+			return ((DriftShiftedBrownianMotion) brownianMotion).getLikelihoodRatio(time);
+		}
 		return new Scalar(1.0);
 	}
 
+	/**
+	 * It returns a drift of the Brownian motion for the importance sampling of a
+	 * caplet on the Libor of the given currency, with strike K. The drift is
+	 * parallel to the factor loadings lambda of the logarithm of the Libor, and
+	 * such that under the simulation measure the expectation of log(L(T_1, T_2;
+	 * T_1)) is log(K): about half of the paths then end in the money. For a Libor
+	 * whose expectation is already above the strike the drift is zero.
+	 *
+	 * @param currency, 0 for the domestic, 1 for the foreign Libor
+	 * @param strike,   K
+	 * @return the drift, one value per factor
+	 */
+	public double[] getImportanceSamplingDrift(int currency, double strike) {
+		if (currency != 0 && currency != 1) {
+			throw new IllegalArgumentException("Currency not supported: " + currency);
+		}
+		if (strike <= 0) {
+			throw new IllegalArgumentException("The strike must be positive.");
+		}
+		// the log-coefficients are constant in time
+		double logDrift = lognormalProcessModel.getDriftPrimitive(0)[currency];
+		double[] factorLoadings = lognormalProcessModel.getFactorLoadingPrimitive(0, currency);
+
+		double squaredVolatility = 0.0;
+		for (double factorLoading : factorLoadings) {
+			squaredVolatility += factorLoading * factorLoading;
+		}
+
+		/*
+		 * With the drift c lambda, the mean of log(L(T_1)) is shifted by c |lambda|^2
+		 * T_1. We do not shift towards lower values: this would not help a caplet.
+		 */
+		double[] drift = new double[brownianMotion.getNumberOfFactors()];
+		double initialValue = currency == 0 ? initialValueDomesticForwardRate : initialValueForeignForwardRate;
+		double shift = (Math.log(strike / initialValue) - logDrift * periodStart)
+				/ (squaredVolatility * periodStart);
+		if (squaredVolatility == 0.0 || !(shift > 0.0)) {
+			return drift;
+		}
+		for (int factor = 0; factor < factorLoadings.length && factor < drift.length; factor++) {
+			drift[factor] = shift * factorLoadings[factor];
+		}
+		return drift;
+	}
+
+	/**
+	 * It returns a clone of this model with importance sampling for a caplet on the
+	 * Libor of the given currency with strike K, with the drift of
+	 * {@link #getImportanceSamplingDrift(int, double)}. The clone uses the same
+	 * Brownian increments of this model plus the drift, up to T_1.
+	 *
+	 * @param currency, 0 for the domestic, 1 for the foreign Libor
+	 * @param strike,   K
+	 * @return the clone
+	 */
+	public SimpleCrossCurrencyModelWithSingleMaturity getCloneWithImportanceSampling(int currency, double strike) {
+		try {
+			return getCloneWithModifiedData(
+					Map.of("importanceSamplingDrift", getImportanceSamplingDrift(currency, strike)));
+		} catch (CalculationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the Brownian motion driving the simulation. For the exact scheme,
+	 *         this is the one on the time discretization {0, T_1, T_2}
+	 */
+	public BrownianMotion getBrownianMotion() {
+		return brownianMotion;
+	}
+
+	public SimulationScheme getSimulationScheme() {
+		return simulationScheme;
+	}
+
+	public RandomVariableFactory getRandomVariableFactory() {
+		return randomVariableFactory;
+	}
+
+	public double getInitialValueDomesticForwardRate() {
+		return initialValueDomesticForwardRate;
+	}
+
+	public double getInitialValueForeignForwardRate() {
+		return initialValueForeignForwardRate;
+	}
+
+	public double getInitialValueFX() {
+		return initialValueFX;
+	}
+
+	public double getVolatilityDomestic() {
+		return volatilityDomestic;
+	}
+
+	public double getVolatilityForeign() {
+		return volatilityForeign;
+	}
+
+	public double getVolatilityFXForward() {
+		return volatilityFXForward;
+	}
+
+	public double getCorrelationDomFor() {
+		return correlationDomFor;
+	}
+
+	public double getCorrelationFXDomestic() {
+		return correlationFXDomestic;
+	}
+
+	public double getCorrelationFXForeign() {
+		return correlationFXForeign;
+	}
+
+	public double getPeriodStart() {
+		return periodStart;
+	}
+
+	public double getPeriodEnd() {
+		return periodEnd;
+	}
+
+	public double getDomesticZeroBond() {
+		return domesticZeroBond;
+	}
+
+	public double getForeignZeroBond() {
+		return foreignZeroBond;
+	}
+
+	/**
+	 * It returns a clone of this model with modified parameters. The keys are the
+	 * names of the parameters of the constructor: initialValueDomesticForwardRate,
+	 * initialValueForeignForwardRate, initialValueFX, volatilityDomestic,
+	 * volatilityForeign, volatilityFXForward, correlationDomFor,
+	 * correlationFXDomestic, correlationFXForeign, domesticZeroBond,
+	 * foreignZeroBond (with values of type Number), brownianMotion,
+	 * randomVariableFactory and importanceSamplingDrift.
+	 *
+	 * If no Brownian motion is given, the clone uses the same Brownian increments
+	 * of this model (common random numbers). With the exact scheme, the clone
+	 * furthermore shares the simulated components whose initial value, drift and
+	 * factor loadings are not changed, and only simulates the others, at the first
+	 * request of a value.
+	 *
+	 * The value of importanceSamplingDrift is a double[] with one drift per
+	 * factor: the clone is simulated with the Brownian motion (of this model, if
+	 * none is given) shifted by this drift up to T_1, and the Monte-Carlo weights
+	 * are the corresponding likelihood ratios. A zero drift switches importance
+	 * sampling off.
+	 *
+	 * @param dataModified, the map of the modified parameters
+	 * @return the clone
+	 */
 	@Override
-	public MonteCarloSimulationModel getCloneWithModifiedData(Map<String, Object> dataModified)
+	public SimpleCrossCurrencyModelWithSingleMaturity getCloneWithModifiedData(Map<String, Object> dataModified)
 			throws CalculationException {
-		throw new UnsupportedOperationException();
+		Map<String, Double> parameters = new HashMap<>();
+		parameters.put("initialValueDomesticForwardRate", initialValueDomesticForwardRate);
+		parameters.put("initialValueForeignForwardRate", initialValueForeignForwardRate);
+		parameters.put("initialValueFX", initialValueFX);
+		parameters.put("volatilityDomestic", volatilityDomestic);
+		parameters.put("volatilityForeign", volatilityForeign);
+		parameters.put("volatilityFXForward", volatilityFXForward);
+		parameters.put("correlationDomFor", correlationDomFor);
+		parameters.put("correlationFXDomestic", correlationFXDomestic);
+		parameters.put("correlationFXForeign", correlationFXForeign);
+		parameters.put("domesticZeroBond", domesticZeroBond);
+		parameters.put("foreignZeroBond", foreignZeroBond);
+
+		BrownianMotion newBrownianMotion = null;
+		double[] importanceSamplingDrift = null;
+		RandomVariableFactory newRandomVariableFactory = randomVariableFactory;
+		for (Map.Entry<String, Object> entry : dataModified.entrySet()) {
+			if (entry.getKey().equals("brownianMotion")) {
+				newBrownianMotion = (BrownianMotion) entry.getValue();
+			} else if (entry.getKey().equals("importanceSamplingDrift")) {
+				importanceSamplingDrift = (double[]) entry.getValue();
+			} else if (entry.getKey().equals("randomVariableFactory")) {
+				newRandomVariableFactory = (RandomVariableFactory) entry.getValue();
+			} else if (parameters.containsKey(entry.getKey())) {
+				parameters.put(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+			} else {
+				throw new IllegalArgumentException("Parameter not supported: " + entry.getKey());
+			}
+		}
+
+		if (importanceSamplingDrift != null) {
+			// the drift replaces the one of this model, if any
+			BrownianMotion unshiftedBrownianMotion = newBrownianMotion != null ? newBrownianMotion : brownianMotion;
+			if (unshiftedBrownianMotion instanceof DriftShiftedBrownianMotion) {
+				unshiftedBrownianMotion = ((DriftShiftedBrownianMotion) unshiftedBrownianMotion).getBrownianMotion();
+			}
+			if (simulationScheme == SimulationScheme.EXACT) {
+				unshiftedBrownianMotion = unshiftedBrownianMotion.getCloneWithModifiedTimeDiscretization(
+						new TimeDiscretizationFromArray(0.0, periodStart, periodEnd));
+			}
+			boolean isZero = true;
+			for (double drift : importanceSamplingDrift) {
+				isZero &= drift == 0.0;
+			}
+			BrownianMotion shiftedBrownianMotion = isZero ? unshiftedBrownianMotion
+					: new DriftShiftedBrownianMotion(unshiftedBrownianMotion, importanceSamplingDrift, periodStart);
+
+			// the paths are different: nothing can be shared
+			return new SimpleCrossCurrencyModelWithSingleMaturity(parameters.get("initialValueDomesticForwardRate"),
+					parameters.get("initialValueForeignForwardRate"), parameters.get("initialValueFX"),
+					parameters.get("volatilityDomestic"), parameters.get("volatilityForeign"),
+					parameters.get("volatilityFXForward"), parameters.get("correlationDomFor"),
+					parameters.get("correlationFXDomestic"), parameters.get("correlationFXForeign"), periodStart,
+					periodEnd, parameters.get("domesticZeroBond"), parameters.get("foreignZeroBond"),
+					shiftedBrownianMotion, simulationScheme, newRandomVariableFactory, null);
+		}
+
+		if (newBrownianMotion != null) {
+			// New random numbers: nothing can be shared
+			return new SimpleCrossCurrencyModelWithSingleMaturity(parameters.get("initialValueDomesticForwardRate"),
+					parameters.get("initialValueForeignForwardRate"), parameters.get("initialValueFX"),
+					parameters.get("volatilityDomestic"), parameters.get("volatilityForeign"),
+					parameters.get("volatilityFXForward"), parameters.get("correlationDomFor"),
+					parameters.get("correlationFXDomestic"), parameters.get("correlationFXForeign"), periodStart,
+					periodEnd, parameters.get("domesticZeroBond"), parameters.get("foreignZeroBond"), newBrownianMotion,
+					simulationScheme, newRandomVariableFactory);
+		}
+
+		// with a different factory the values cannot be shared
+		Function<ProcessModel, MonteCarloProcess> processFactory = process instanceof ExactSchemeFromProcessModel
+				&& newRandomVariableFactory == randomVariableFactory
+						? ((ExactSchemeFromProcessModel) process)::getCloneWithModifiedModel
+						: null;
+
+		return new SimpleCrossCurrencyModelWithSingleMaturity(parameters.get("initialValueDomesticForwardRate"),
+				parameters.get("initialValueForeignForwardRate"), parameters.get("initialValueFX"),
+				parameters.get("volatilityDomestic"), parameters.get("volatilityForeign"),
+				parameters.get("volatilityFXForward"), parameters.get("correlationDomFor"),
+				parameters.get("correlationFXDomestic"), parameters.get("correlationFXForeign"), periodStart, periodEnd,
+				parameters.get("domesticZeroBond"), parameters.get("foreignZeroBond"), brownianMotion,
+				simulationScheme, newRandomVariableFactory, processFactory);
+	}
+
+	/*
+	 * A model with the same data, whose values are read from a file written by
+	 * ProcessFromMappedFile.write instead of being simulated.
+	 */
+	SimpleCrossCurrencyModelWithSingleMaturity getCloneWithProcessFromFile(Path file) {
+		return new SimpleCrossCurrencyModelWithSingleMaturity(initialValueDomesticForwardRate,
+				initialValueForeignForwardRate, initialValueFX, volatilityDomestic, volatilityForeign,
+				volatilityFXForward, correlationDomFor, correlationFXDomestic, correlationFXForeign, periodStart,
+				periodEnd, domesticZeroBond, foreignZeroBond, brownianMotion, simulationScheme, randomVariableFactory,
+				processModel -> {
+					try {
+						return new ProcessFromMappedFile(processModel, randomVariableFactory, file);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+	}
+
+	MonteCarloProcess getProcess() {
+		return process;
 	}
 }
\ No newline at end of file
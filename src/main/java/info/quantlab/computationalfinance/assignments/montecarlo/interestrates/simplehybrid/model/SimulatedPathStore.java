@@ -0,0 +1,154 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion.DriftShiftedBrownianMotion;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ProcessFromMappedFile;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariableFactory;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class stores the simulated paths of models of type
+ * {@link SimpleCrossCurrencyModelWithSingleMaturity} in a directory, one file
+ * for every model, so that they can be reused by other runs or by other
+ * processes on the same machine instead of being simulated again. The files
+ * are read by {@link ProcessFromMappedFile}, i.e., they are memory-mapped.
+ *
+ * The name of the file is a hash of everything determining the paths: the
+ * parameters of the model, the simulation scheme, the time discretization and
+ * the number of paths and factors of the Brownian motion, and the factory of
+ * the random variables. Since a Brownian motion does not expose its seed, the
+ * random numbers are identified by a key given by the user (for example,
+ * "mersenne-3141"): two models with the same key must have the same Brownian
+ * motion.
+ */
+public class SimulatedPathStore {
+
+	private static final String FILE_EXTENSION = ".bin";
+
+	private final Path directory;
+
+	/**
+	 * It constructs an object storing the paths in the given directory, which is
+	 * created if it does not exist.
+	 *
+	 * @param directory, the directory
+	 * @throws IOException if the directory cannot be created
+	 */
+	public SimulatedPathStore(Path directory) throws IOException {
+		super();
+		this.directory = Files.createDirectories(directory);
+	}
+
+	/**
+	 * It returns a model with the same data as the given one, whose paths are read
+	 * from the store. If they are not stored yet, they are simulated by the given
+	 * model and written to the store first.
+	 *
+	 * @param model,     the model
+	 * @param driverKey, a key identifying the random numbers of the Brownian
+	 *                   motion of the model
+	 * @return the model reading the paths from the store
+	 * @throws IOException          if the file cannot be read or written
+	 * @throws CalculationException if the simulation fails
+	 */
+	public SimpleCrossCurrencyModelWithSingleMaturity getModel(SimpleCrossCurrencyModelWithSingleMaturity model,
+			String driverKey) throws IOException, CalculationException {
+		Path file = getFile(model, driverKey);
+		if (!Files.exists(file)) {
+			// only the times used by the model, also for an Euler scheme on a fine grid
+			ProcessFromMappedFile.write(model.getProcess(),
+					new TimeDiscretizationFromArray(0.0, model.getPeriodStart(), model.getPeriodEnd()), file);
+		}
+		return model.getCloneWithProcessFromFile(file);
+	}
+
+	/**
+	 * @param model,     the model
+	 * @param driverKey, a key identifying the random numbers of the Brownian
+	 *                   motion of the model
+	 * @return true if the paths of the model are already in the store
+	 */
+	public boolean contains(SimpleCrossCurrencyModelWithSingleMaturity model, String driverKey) {
+		return Files.exists(getFile(model, driverKey));
+	}
+
+	/**
+	 * @param model,     the model
+	 * @param driverKey, a key identifying the random numbers of the Brownian
+	 *                   motion of the model
+	 * @return the file where the paths of the model are stored
+	 */
+	public Path getFile(SimpleCrossCurrencyModelWithSingleMaturity model, String driverKey) {
+		return directory.resolve(getKey(model, driverKey) + FILE_EXTENSION);
+	}
+
+	/**
+	 * It returns the SHA-256 hash (in hexadecimal) identifying the paths of the
+	 * model.
+	 *
+	 * @param model,     the model
+	 * @param driverKey, a key identifying the random numbers of the Brownian
+	 *                   motion of the model
+	 * @return the key
+	 */
+	public static String getKey(SimpleCrossCurrencyModelWithSingleMaturity model, String driverKey) {
+		StringBuilder description = new StringBuilder();
+		description.append(model.getSimulationScheme()).append(';');
+
+		double[] parameters = { model.getInitialValueDomesticForwardRate(), model.getInitialValueForeignForwardRate(),
+				model.getInitialValueFX(), model.getVolatilityDomestic(), model.getVolatilityForeign(),
+				model.getVolatilityFXForward(), model.getCorrelationDomFor(), model.getCorrelationFXDomestic(),
+				model.getCorrelationFXForeign(), model.getPeriodStart(), model.getPeriodEnd(),
+				model.getDomesticZeroBond(), model.getForeignZeroBond() };
+		for (double parameter : parameters) {
+			// the exact bits: two parameters differing in the last digit give different paths
+			description.append(Long.toHexString(Double.doubleToLongBits(parameter))).append(';');
+		}
+
+		TimeDiscretization times = model.getBrownianMotion().getTimeDiscretization();
+		for (int timeIndex = 0; timeIndex < times.getNumberOfTimes(); timeIndex++) {
+			description.append(Long.toHexString(Double.doubleToLongBits(times.getTime(timeIndex)))).append(';');
+		}
+		description.append(model.getBrownianMotion().getNumberOfPaths()).append(';')
+				.append(model.getBrownianMotion().getNumberOfFactors()).append(';')
+				.append(model.getRandomVariableFactory().getClass().getName()).append(';');
+
+		// with importance sampling the paths are the ones of the shifted Brownian motion
+		if (model.getBrownianMotion() instanceof DriftShiftedBrownianMotion) {
+			for (double drift : ((DriftShiftedBrownianMotion) model.getBrownianMotion()).getDrift()) {
+				description.append(Long.toHexString(Double.doubleToLongBits(drift))).append(';');
+			}
+		}
+
+		// factories of the same class may store with different precision: 1/3 tells them apart
+		RandomVariableFactory factory = model.getRandomVariableFactory();
+		description.append(Long.toHexString(Double.doubleToLongBits(
+				factory.createRandomVariable(0.0, new double[] { 1.0 / 3.0, 0.0 }).get(0)))).append(';');
+		description.append(driverKey);
+
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256")
+					.digest(description.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder();
+			for (byte b : hash) {
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+}
@@ -0,0 +1,121 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import java.util.function.Supplier;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyAnalyticModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+
+/**
+ * This class provides the valuation of cross currency products by the
+ * analytic formulas of {@link SimpleCrossCurrencyAnalyticModel} whenever
+ * possible: generalized caplets, zero coupon bonds and FX options with
+ * maturity T_2. The other products are valued by Monte-Carlo, with a model
+ * that is created only when it is needed for the first time.
+ */
+public class AnalyticValuationEngine {
+
+	private final SimpleCrossCurrencyAnalyticModel analyticModel;
+	private final Supplier<SimpleCrossCurrencyModel> monteCarloModelSupplier;
+
+	private transient SimpleCrossCurrencyModel monteCarloModel;
+
+	/**
+	 * It constructs an object for the valuation with the analytic formulas and
+	 * with the Monte-Carlo model as fall back.
+	 *
+	 * @param analyticModel,           the model providing the analytic formulas
+	 * @param monteCarloModelSupplier, provides the Monte-Carlo model for the
+	 *                                 products with no analytic formula. It is
+	 *                                 called at most once. May be null: then these
+	 *                                 products cannot be valued
+	 */
+	public AnalyticValuationEngine(SimpleCrossCurrencyAnalyticModel analyticModel,
+			Supplier<SimpleCrossCurrencyModel> monteCarloModelSupplier) {
+		super();
+		this.analyticModel = analyticModel;
+		this.monteCarloModelSupplier = monteCarloModelSupplier;
+	}
+
+	/**
+	 * It constructs an object for the valuation with the analytic formulas only.
+	 *
+	 * @param analyticModel, the model providing the analytic formulas
+	 */
+	public AnalyticValuationEngine(SimpleCrossCurrencyAnalyticModel analyticModel) {
+		this(analyticModel, null);
+	}
+
+	/**
+	 * It returns the value of the product at time 0: analytic if possible,
+	 * otherwise by Monte-Carlo.
+	 *
+	 * @param product, the product
+	 * @return the value at time 0
+	 */
+	public double getValue(CrossCurrencyProduct product) {
+		if (isAnalyticValueAvailable(product)) {
+			return getAnalyticValue(product);
+		}
+		if (monteCarloModelSupplier == null) {
+			throw new IllegalArgumentException("No analytic formula and no Monte-Carlo model for " + product);
+		}
+		return product.getValue(0.0, getMonteCarloModel()).getAverage();
+	}
+
+	/**
+	 * @param product, the product
+	 * @return true if the product can be valued by an analytic formula
+	 */
+	public boolean isAnalyticValueAvailable(CrossCurrencyProduct product) {
+		double periodStart = analyticModel.getPeriodStart();
+		double periodEnd = analyticModel.getPeriodEnd();
+
+		if (product instanceof GeneralizedCaplet) {
+			GeneralizedCaplet caplet = (GeneralizedCaplet) product;
+			return (caplet.getCurrencyIndex() == 0 || caplet.getCurrencyIndex() == 1) && caplet.getFixingTime() == periodStart
+					&& caplet.getPeriodStart() == periodStart && caplet.getPeriodEnd() == periodEnd
+					&& (caplet.getPaymentTime() == periodStart || caplet.getPaymentTime() == periodEnd);
+		} else if (product instanceof ZeroCouponBond) {
+			ZeroCouponBond bond = (ZeroCouponBond) product;
+			return (bond.getCurrencyIndex() == 0 || bond.getCurrencyIndex() == 1)
+					&& (bond.getMaturity() == periodStart || bond.getMaturity() == periodEnd);
+		} else if (product instanceof FXOption) {
+			return ((FXOption) product).getMaturity() == periodEnd;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * @param product, the product: it must have an analytic formula
+	 * @return the analytic value at time 0
+	 */
+	public double getAnalyticValue(CrossCurrencyProduct product) {
+		if (!isAnalyticValueAvailable(product)) {
+			throw new IllegalArgumentException("No analytic formula for " + product);
+		}
+
+		if (product instanceof GeneralizedCaplet) {
+			GeneralizedCaplet caplet = (GeneralizedCaplet) product;
+			return analyticModel.getCapletValue(caplet.getCurrencyIndex(), caplet.isQuanto(), caplet.getPaymentTime(),
+					caplet.getStrike());
+		} else if (product instanceof ZeroCouponBond) {
+			ZeroCouponBond bond = (ZeroCouponBond) product;
+			return analyticModel.getZeroBondValue(bond.getCurrencyIndex(), bond.getMaturity());
+		} else {
+			FXOption option = (FXOption) product;
+			return analyticModel.getFXOptionValue(option.getMaturity(), option.getStrike());
+		}
+	}
+
+	private synchronized SimpleCrossCurrencyModel getMonteCarloModel() {
+		if (monteCarloModel == null) {
+			monteCarloModel = monteCarloModelSupplier.get();
+		}
+		return monteCarloModel;
+	}
+
+	public SimpleCrossCurrencyAnalyticModel getAnalyticModel() {
+		return analyticModel;
+	}
+}
@@ -0,0 +1,116 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.PayoffExpression.Observable;
+import net.finmath.montecarlo.RandomVariableFactory;
+import net.finmath.montecarlo.RandomVariableFromArrayFactory;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class provides the evaluation of a {@link PayoffExpression} on the
+ * paths of a model. Every observable of the expression is requested to the
+ * model once, then the expression is evaluated path by path in a single loop
+ * writing directly into an array, from which the result is created by the
+ * factory of the random variables of the model.
+ *
+ * The loop can also be run in parallel: this pays off only for expressions
+ * with many operations or for a large number of paths.
+ */
+public class CompiledPayoff {
+
+	private static final RandomVariableFactory DEFAULT_RANDOM_VARIABLE_FACTORY = new RandomVariableFromArrayFactory();
+
+	private final PayoffExpression expression;
+	private final List<Observable> observables;
+
+	CompiledPayoff(PayoffExpression expression, Set<Observable> observables) {
+		this.expression = expression;
+		this.observables = new ArrayList<>(observables);
+	}
+
+	/**
+	 * It evaluates the payoff on the paths of the model.
+	 *
+	 * @param model, the model
+	 * @return the payoff
+	 */
+	public RandomVariable getValue(SimpleCrossCurrencyModel model) {
+		return getValue(model, false);
+	}
+
+	/**
+	 * It evaluates the payoff on the paths of the model.
+	 *
+	 * @param model,      the model
+	 * @param isParallel, true if the paths are evaluated in parallel
+	 * @return the payoff
+	 */
+	public RandomVariable getValue(SimpleCrossCurrencyModel model, boolean isParallel) {
+		Map<Observable, double[]> realizations = new HashMap<>();
+		Map<Observable, Double> constants = new HashMap<>();
+		double filtrationTime = 0.0;
+		for (Observable observable : observables) {
+			RandomVariable value = observable.getValue(model);
+			if (value.isDeterministic()) {
+				constants.put(observable, value.get(0));
+			} else {
+				realizations.put(observable, value.getRealizations());
+			}
+			filtrationTime = Math.max(filtrationTime, value.getFiltrationTime());
+		}
+
+		IntToDoubleFunction function = expression.bind(realizations, constants);
+		RandomVariableFactory randomVariableFactory = getRandomVariableFactory(model);
+		if (realizations.isEmpty()) {
+			return randomVariableFactory.createRandomVariable(filtrationTime, function.applyAsDouble(0));
+		}
+
+		int numberOfPaths = model.getNumberOfPaths();
+		double[] values = new double[numberOfPaths];
+		if (isParallel) {
+			IntStream.range(0, numberOfPaths).parallel()
+					.forEach(pathIndex -> values[pathIndex] = function.applyAsDouble(pathIndex));
+		} else {
+			for (int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				values[pathIndex] = function.applyAsDouble(pathIndex);
+			}
+		}
+		return randomVariableFactory.createRandomVariable(filtrationTime, values);
+	}
+
+	/*
+	 * SimpleCrossCurrencyModel does not give the factory of its random variables:
+	 * the models which do not expose it use the one of double precision arrays.
+	 */
+	private static RandomVariableFactory getRandomVariableFactory(SimpleCrossCurrencyModel model) {
+		if (model instanceof SimpleCrossCurrencyModelWithSingleMaturity) {
+			return ((SimpleCrossCurrencyModelWithSingleMaturity) model).getRandomVariableFactory();
+		}
+		return DEFAULT_RANDOM_VARIABLE_FACTORY;
+	}
+
+	/**
+	 * @return the number of distinct observables requested to the model
+	 */
+	public int getNumberOfObservables() {
+		return observables.size();
+	}
+
+	public PayoffExpression getExpression() {
+		return expression;
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledPayoff [expression=" + expression + "]";
+	}
+}
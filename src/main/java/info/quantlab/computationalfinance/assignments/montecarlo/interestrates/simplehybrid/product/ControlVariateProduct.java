@@ -0,0 +1,296 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import net.finmath.montecarlo.AbstractMonteCarloProduct;
+import net.finmath.montecarlo.MonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class wraps a product and reduces the variance of its Monte-Carlo
+ * valuation by control variates: products C_1, ..., C_m whose values c_1,
+ * ..., c_m are known analytically are valued on the same paths, and the
+ * estimator of the value of the product Y becomes Y - sum_j beta_j (C_j - c_j).
+ * The coefficients beta are the ones minimizing the variance, i.e., the
+ * regression coefficients of Y on C_1, ..., C_m, estimated on the same paths.
+ *
+ * The values of the controls are values at time 0, so the valuation is only
+ * possible at evaluation time 0.
+ */
+public class ControlVariateProduct extends AbstractMonteCarloProduct implements CrossCurrencyProduct {
+
+	// controls whose variance is below this threshold (relative to the one of the product) are ignored
+	private static final double VARIANCE_THRESHOLD = 1E-14;
+
+	/**
+	 * The result of the valuation with control variates.
+	 */
+	public static class ControlVariateEstimate {
+
+		private final double value;
+		private final double standardError;
+		private final double varianceReductionFactor;
+		private final double[] coefficients;
+
+		private ControlVariateEstimate(double value, double standardError, double varianceReductionFactor,
+				double[] coefficients) {
+			this.value = value;
+			this.standardError = standardError;
+			this.varianceReductionFactor = varianceReductionFactor;
+			this.coefficients = coefficients;
+		}
+
+		/**
+		 * @return the estimate of the value adjusted by the control variates
+		 */
+		public double getValue() {
+			return value;
+		}
+
+		/**
+		 * @return the standard error of the adjusted estimate
+		 */
+		public double getStandardError() {
+			return standardError;
+		}
+
+		/**
+		 * @return the variance of the plain estimator divided by the variance of the
+		 *         adjusted one
+		 */
+		public double getVarianceReductionFactor() {
+			return varianceReductionFactor;
+		}
+
+		/**
+		 * @return the coefficients beta (0 for the controls that have been ignored)
+		 */
+		public double[] getCoefficients() {
+			return coefficients.clone();
+		}
+	}
+
+	private final CrossCurrencyProduct product;
+	private final List<CrossCurrencyProduct> controls;
+	private final double[] controlValues;
+
+	/**
+	 * It constructs an object for the valuation of the product with the given
+	 * control variates.
+	 *
+	 * @param product,       the product to value
+	 * @param controls,      the control variates
+	 * @param controlValues, the (analytic) values of the controls at time 0
+	 */
+	public ControlVariateProduct(CrossCurrencyProduct product, List<? extends CrossCurrencyProduct> controls,
+			double[] controlValues) {
+		super();
+		if (controls.size() != controlValues.length) {
+			throw new IllegalArgumentException("Number of controls and of control values differ.");
+		}
+		this.product = product;
+		this.controls = new ArrayList<>(controls);
+		this.controlValues = controlValues.clone();
+	}
+
+	/**
+	 * It constructs the valuation of a generalized caplet with the following
+	 * control variates, valued analytically by the engine: the forward rate paid
+	 * in the same units as the caplet (i.e., the caplet with strike 0), the zero
+	 * bond paying one unit of the currency of the payment at payment time and the
+	 * domestic caplet paid in T_2 with the same strike.
+	 *
+	 * @param caplet, the caplet to value
+	 * @param engine, the engine giving the values of the controls
+	 * @return the product with control variates
+	 */
+	public static ControlVariateProduct of(GeneralizedCaplet caplet, AnalyticValuationEngine engine) {
+		List<CrossCurrencyProduct> controls = new ArrayList<>();
+
+		controls.add(new GeneralizedCaplet(caplet.getCurrencyIndex(), caplet.isQuanto(), caplet.getFixingTime(),
+				caplet.getPeriodStart(), caplet.getPeriodEnd(), caplet.getPaymentTime(), 0.0));
+
+		int paymentCurrency = caplet.isQuanto() ? 0 : caplet.getCurrencyIndex();
+		controls.add(new ZeroCouponBond(paymentCurrency, caplet.getPaymentTime()));
+
+		boolean isDomesticCaplet = caplet.getCurrencyIndex() == 0 && caplet.getPaymentTime() == caplet.getPeriodEnd();
+		if (!isDomesticCaplet) {
+			controls.add(new GeneralizedCaplet(0, false, caplet.getFixingTime(), caplet.getPeriodStart(),
+					caplet.getPeriodEnd(), caplet.getPeriodEnd(), caplet.getStrike()));
+		}
+
+		double[] controlValues = controls.stream().mapToDouble(engine::getAnalyticValue).toArray();
+
+		return new ControlVariateProduct(caplet, controls, controlValues);
+	}
+
+	@Override
+	public RandomVariable getValue(double evaluationTime, SimpleCrossCurrencyModel model) {
+		RandomVariable value = product.getValue(evaluationTime, model);
+		RandomVariable[] controlRealizations = getControlRealizations(evaluationTime, model);
+
+		double[] coefficients = getCoefficients(value, controlRealizations);
+
+		return getAdjustedValue(value, controlRealizations, coefficients);
+	}
+
+	/**
+	 * It returns the adjusted estimate together with its standard error and the
+	 * variance reduction factor achieved.
+	 *
+	 * @param model, the model
+	 * @return the estimate
+	 */
+	public ControlVariateEstimate getEstimate(SimpleCrossCurrencyModel model) {
+		RandomVariable value = product.getValue(0.0, model);
+		RandomVariable[] controlRealizations = getControlRealizations(0.0, model);
+
+		double[] coefficients = getCoefficients(value, controlRealizations);
+		RandomVariable adjustedValue = getAdjustedValue(value, controlRealizations, coefficients);
+
+		double adjustedVariance = adjustedValue.getVariance();
+		double varianceReductionFactor = adjustedVariance > 0 ? value.getVariance() / adjustedVariance
+				: Double.POSITIVE_INFINITY;
+
+		return new ControlVariateEstimate(adjustedValue.getAverage(), adjustedValue.getStandardError(),
+				varianceReductionFactor, coefficients);
+	}
+
+	private RandomVariable[] getControlRealizations(double evaluationTime, SimpleCrossCurrencyModel model) {
+		if (evaluationTime != 0.0) {
+			throw new IllegalArgumentException("Control variates only available for evaluation time 0.");
+		}
+		RandomVariable[] controlRealizations = new RandomVariable[controls.size()];
+		for (int controlIndex = 0; controlIndex < controls.size(); controlIndex++) {
+			controlRealizations[controlIndex] = controls.get(controlIndex).getValue(evaluationTime, model);
+		}
+		return controlRealizations;
+	}
+
+	private RandomVariable getAdjustedValue(RandomVariable value, RandomVariable[] controlRealizations,
+			double[] coefficients) {
+		RandomVariable adjustedValue = value;
+		for (int controlIndex = 0; controlIndex < controlRealizations.length; controlIndex++) {
+			if (coefficients[controlIndex] != 0.0) {
+				adjustedValue = adjustedValue.sub(
+						controlRealizations[controlIndex].sub(controlValues[controlIndex]).mult(coefficients[controlIndex]));
+			}
+		}
+		return adjustedValue;
+	}
+
+	/*
+	 * The regression coefficients beta = Cov(C,C)^{-1} Cov(C,Y). Controls with
+	 * (almost) zero variance, for example deterministic ones, are not used.
+	 */
+	private double[] getCoefficients(RandomVariable value, RandomVariable[] controlRealizations) {
+		int numberOfControls = controlRealizations.length;
+
+		double threshold = VARIANCE_THRESHOLD * Math.max(value.getVariance(), Double.MIN_NORMAL);
+
+		List<Integer> usedControls = new ArrayList<>();
+		RandomVariable[] centeredControls = new RandomVariable[numberOfControls];
+		for (int controlIndex = 0; controlIndex < numberOfControls; controlIndex++) {
+			RandomVariable control = controlRealizations[controlIndex];
+			if (control.getVariance() > threshold) {
+				usedControls.add(controlIndex);
+				centeredControls[controlIndex] = control.sub(control.getAverage());
+			}
+		}
+
+		int size = usedControls.size();
+		double[][] covariance = new double[size][size];
+		double[] covarianceWithValue = new double[size];
+		RandomVariable centeredValue = value.sub(value.getAverage());
+		for (int i = 0; i < size; i++) {
+			RandomVariable controlI = centeredControls[usedControls.get(i)];
+			covarianceWithValue[i] = controlI.mult(centeredValue).getAverage();
+			for (int j = 0; j <= i; j++) {
+				covariance[i][j] = controlI.mult(centeredControls[usedControls.get(j)]).getAverage();
+				covariance[j][i] = covariance[i][j];
+			}
+		}
+
+		double[] solution = solve(covariance, covarianceWithValue);
+
+		double[] coefficients = new double[numberOfControls];
+		for (int i = 0; i < size; i++) {
+			coefficients[usedControls.get(i)] = solution[i];
+		}
+		return coefficients;
+	}
+
+	/*
+	 * Gaussian elimination with partial pivoting. The systems here are at most of
+	 * a few equations. Linearly dependent controls give a zero pivot: the
+	 * corresponding coefficient is then set to 0.
+	 */
+	private static double[] solve(double[][] matrix, double[] vector) {
+		int size = vector.length;
+		double[][] a = new double[size][];
+		for (int i = 0; i < size; i++) {
+			a[i] = matrix[i].clone();
+		}
+		double[] b = vector.clone();
+		double scale = 0.0;
+		for (int i = 0; i < size; i++) {
+			scale = Math.max(scale, Math.abs(a[i][i]));
+		}
+
+		boolean[] isSingular = new boolean[size];
+		for (int column = 0; column < size; column++) {
+			int pivot = column;
+			for (int row = column + 1; row < size; row++) {
+				if (Math.abs(a[row][column]) > Math.abs(a[pivot][column])) {
+					pivot = row;
+				}
+			}
+			double[] rowTemp = a[column];
+			a[column] = a[pivot];
+			a[pivot] = rowTemp;
+			double bTemp = b[column];
+			b[column] = b[pivot];
+			b[pivot] = bTemp;
+
+			if (Math.abs(a[column][column]) <= 1E-12 * scale) {
+				isSingular[column] = true;
+				continue;
+			}
+			for (int row = column + 1; row < size; row++) {
+				double factor = a[row][column] / a[column][column];
+				for (int k = column; k < size; k++) {
+					a[row][k] -= factor * a[column][k];
+				}
+				b[row] -= factor * b[column];
+			}
+		}
+
+		double[] solution = new double[size];
+		for (int row = size - 1; row >= 0; row--) {
+			if (isSingular[row]) {
+				continue;
+			}
+			double sum = b[row];
+			for (int k = row + 1; k < size; k++) {
+				sum -= a[row][k] * solution[k];
+			}
+			solution[row] = sum / a[row][row];
+		}
+		return solution;
+	}
+
+	@Override
+	public RandomVariable getValue(double evaluationTime, MonteCarloSimulationModel model) {
+		if (model instanceof SimpleCrossCurrencyModel) {
+			return getValue(evaluationTime, (SimpleCrossCurrencyModel) model);
+		} else {
+			throw new IllegalArgumentException("Product requires a model implementing SimpleCrossCurrencyModel");
+		}
+	}
+
+	public CrossCurrencyProduct getProduct() {
+		return product;
+	}
+}
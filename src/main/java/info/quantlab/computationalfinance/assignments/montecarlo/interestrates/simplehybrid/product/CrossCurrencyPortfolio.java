@@ -0,0 +1,138 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.stochastic.Scalar;
+
+/**
+ * This class provides the valuation of a book of products on the same model
+ * in one pass. The generalized caplets are grouped by the market observables
+ * they need (forward rate at fixing, FX rate at payment time, numeraire
+ * ratio): every observable is fetched from the model only once and every group
+ * is valued for all its strikes at once by a
+ * {@link GeneralizedCapletStrikeLadder}. The other products are valued one by
+ * one.
+ */
+public class CrossCurrencyPortfolio {
+
+	private final List<CrossCurrencyProduct> products;
+
+	// the caplets sharing the same observables, with their positions in the portfolio
+	private final List<GeneralizedCaplet> groupRepresentatives = new ArrayList<>();
+	private final List<GeneralizedCapletStrikeLadder> groupLadders = new ArrayList<>();
+	private final List<int[]> groupProductIndices = new ArrayList<>();
+
+	private final List<Integer> otherProductIndices = new ArrayList<>();
+
+	/**
+	 * It constructs the portfolio and groups its generalized caplets by the
+	 * observables they depend on.
+	 *
+	 * @param products, the products of the portfolio
+	 */
+	public CrossCurrencyPortfolio(List<? extends CrossCurrencyProduct> products) {
+		super();
+		this.products = new ArrayList<>(products);
+
+		Map<List<Object>, List<Integer>> groups = new LinkedHashMap<>();
+		for (int productIndex = 0; productIndex < this.products.size(); productIndex++) {
+			CrossCurrencyProduct product = this.products.get(productIndex);
+			if (product instanceof GeneralizedCaplet) {
+				GeneralizedCaplet caplet = (GeneralizedCaplet) product;
+				List<Object> key = List.of(caplet.getCurrencyIndex(), caplet.isQuanto(), caplet.getFixingTime(),
+						caplet.getPeriodStart(), caplet.getPeriodEnd(), caplet.getPaymentTime());
+				groups.computeIfAbsent(key, k -> new ArrayList<>()).add(productIndex);
+			} else {
+				otherProductIndices.add(productIndex);
+			}
+		}
+
+		for (List<Integer> group : groups.values()) {
+			GeneralizedCaplet representative = (GeneralizedCaplet) this.products.get(group.get(0));
+
+			int[] productIndices = group.stream().mapToInt(Integer::intValue).toArray();
+			double[] strikes = new double[productIndices.length];
+			for (int i = 0; i < productIndices.length; i++) {
+				strikes[i] = ((GeneralizedCaplet) this.products.get(productIndices[i])).getStrike();
+			}
+
+			groupRepresentatives.add(representative);
+			groupLadders.add(new GeneralizedCapletStrikeLadder(representative.getCurrencyIndex(), representative.isQuanto(),
+					representative.getFixingTime(), representative.getPeriodStart(), representative.getPeriodEnd(),
+					representative.getPaymentTime(), strikes));
+			groupProductIndices.add(productIndices);
+		}
+	}
+
+	/**
+	 * It returns the values of all the products of the portfolio.
+	 *
+	 * @param evaluationTime, the evaluation time
+	 * @param model,          the model
+	 * @return the values, in the order of the products given in the constructor
+	 */
+	public double[] getValues(double evaluationTime, SimpleCrossCurrencyModel model) {
+		return SimulationMetrics.measureValuation("CrossCurrencyPortfolio", () -> calculateValues(evaluationTime, model));
+	}
+
+	private double[] calculateValues(double evaluationTime, SimpleCrossCurrencyModel model) {
+		double[] values = new double[products.size()];
+
+		// the observables computed so far: each one is requested to the model only once
+		Map<List<Object>, RandomVariable> forwardRates = new HashMap<>();
+		Map<List<Object>, RandomVariable> fxRates = new HashMap<>();
+		Map<Double, RandomVariable> numeraires = new HashMap<>();
+
+		RandomVariable numeraireAtEvaluationTime = numeraires.computeIfAbsent(evaluationTime, model::getNumeraire);
+
+		for (int groupIndex = 0; groupIndex < groupLadders.size(); groupIndex++) {
+			GeneralizedCaplet caplet = groupRepresentatives.get(groupIndex);
+
+			RandomVariable forwardRate = forwardRates.computeIfAbsent(
+					List.of(caplet.getCurrencyIndex(), caplet.getFixingTime(), caplet.getPeriodStart(), caplet.getPeriodEnd()),
+					key -> model.getForwardRate(caplet.getCurrencyIndex(), caplet.getFixingTime(), caplet.getPeriodStart(),
+							caplet.getPeriodEnd()));
+
+			RandomVariable fxRate = caplet.isQuanto() ? new Scalar(1.0)
+					: fxRates.computeIfAbsent(List.of(caplet.getCurrencyIndex(), caplet.getPaymentTime()),
+							key -> model.getFXRate(caplet.getCurrencyIndex(), caplet.getPaymentTime()));
+
+			RandomVariable numeraireAtPaymentTime = numeraires.computeIfAbsent(caplet.getPaymentTime(),
+					model::getNumeraire);
+
+			RandomVariable weight = MonteCarloWeights.applyWeights(
+					fxRate.div(numeraireAtPaymentTime).mult(numeraireAtEvaluationTime), model, evaluationTime,
+					caplet.getPaymentTime());
+
+			int[] productIndices = groupProductIndices.get(groupIndex);
+
+			// sorting the paths only pays off for more than one strike
+			if (productIndices.length == 1) {
+				values[productIndices[0]] = forwardRate.sub(caplet.getStrike()).floor(0.0).mult(weight).getAverage();
+				continue;
+			}
+
+			double[] groupValues = groupLadders.get(groupIndex).getValues(forwardRate, weight, model.getNumberOfPaths());
+			for (int i = 0; i < productIndices.length; i++) {
+				values[productIndices[i]] = groupValues[i];
+			}
+		}
+
+		for (int productIndex : otherProductIndices) {
+			values[productIndex] = products.get(productIndex).getValue(evaluationTime, model).getAverage();
+		}
+
+		return values;
+	}
+
+	public List<CrossCurrencyProduct> getProducts() {
+		return new ArrayList<>(products);
+	}
+}
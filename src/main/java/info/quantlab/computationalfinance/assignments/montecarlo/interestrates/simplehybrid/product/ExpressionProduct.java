@@ -0,0 +1,98 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import static info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.PayoffExpression.constant;
+import static info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.PayoffExpression.forwardRate;
+import static info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.PayoffExpression.fxRate;
+import static info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.PayoffExpression.numeraire;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import net.finmath.montecarlo.AbstractMonteCarloProduct;
+import net.finmath.montecarlo.MonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class provides the valuation of a product paying in domestic currency
+ * the payoff given by a {@link PayoffExpression} at the payment time. The value
+ * is the payoff divided by the numeraire at payment time and multiplied by the
+ * numeraire at evaluation time: this is also part of the expression, so the
+ * whole valuation is done in one loop over the paths.
+ */
+public class ExpressionProduct extends AbstractMonteCarloProduct implements CrossCurrencyProduct {
+
+	private final PayoffExpression payoff;
+	private final double paymentTime;
+	private final boolean isParallel;
+
+	// the compiled valuation for every evaluation time requested so far
+	private final Map<Double, CompiledPayoff> compiledValues = new ConcurrentHashMap<>();
+
+	/**
+	 * It constructs an object for the valuation of the product.
+	 *
+	 * @param payoff,      the payoff, in domestic currency
+	 * @param paymentTime, the payment time
+	 * @param isParallel,  true if the paths are evaluated in parallel
+	 */
+	public ExpressionProduct(PayoffExpression payoff, double paymentTime, boolean isParallel) {
+		super();
+		this.payoff = payoff;
+		this.paymentTime = paymentTime;
+		this.isParallel = isParallel;
+	}
+
+	/**
+	 * It constructs an object for the valuation of the product, evaluating the
+	 * paths sequentially.
+	 *
+	 * @param payoff,      the payoff, in domestic currency
+	 * @param paymentTime, the payment time
+	 */
+	public ExpressionProduct(PayoffExpression payoff, double paymentTime) {
+		this(payoff, paymentTime, false);
+	}
+
+	/**
+	 * It returns the product with the same payoff as the generalized caplet.
+	 *
+	 * @param caplet, the caplet
+	 * @return the product
+	 */
+	public static ExpressionProduct of(GeneralizedCaplet caplet) {
+		PayoffExpression capletPayoff = forwardRate(caplet.getCurrencyIndex(), caplet.getFixingTime(),
+				caplet.getPeriodStart(), caplet.getPeriodEnd()).sub(caplet.getStrike()).floor(0.0);
+		PayoffExpression fx = caplet.isQuanto() ? constant(1.0) : fxRate(caplet.getCurrencyIndex(), caplet.getPaymentTime());
+		return new ExpressionProduct(capletPayoff.mult(fx), caplet.getPaymentTime());
+	}
+
+	@Override
+	public RandomVariable getValue(double evaluationTime, SimpleCrossCurrencyModel model) {
+		CompiledPayoff compiledValue = compiledValues.computeIfAbsent(evaluationTime,
+				time -> payoff.div(numeraire(paymentTime)).mult(numeraire(time)).compile());
+		return MonteCarloWeights.applyWeights(compiledValue.getValue(model, isParallel), model, evaluationTime,
+				paymentTime);
+	}
+
+	@Override
+	public RandomVariable getValue(double evaluationTime, MonteCarloSimulationModel model) {
+		if (model instanceof SimpleCrossCurrencyModel) {
+			return getValue(evaluationTime, (SimpleCrossCurrencyModel) model);
+		} else {
+			throw new IllegalArgumentException("Product requires a model implementing SimpleCrossCurrencyModel");
+		}
+	}
+
+	public PayoffExpression getPayoff() {
+		return payoff;
+	}
+
+	public double getPaymentTime() {
+		return paymentTime;
+	}
+
+	public boolean isParallel() {
+		return isParallel;
+	}
+}
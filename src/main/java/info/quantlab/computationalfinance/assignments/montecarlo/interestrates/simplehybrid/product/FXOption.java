@@ -0,0 +1,59 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import net.finmath.montecarlo.AbstractMonteCarloProduct;
+import net.finmath.montecarlo.MonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class provides the valuation of an FX option, paying max(FX(T) - K, 0)
+ * units of the domestic currency in T.
+ */
+public class FXOption extends AbstractMonteCarloProduct implements CrossCurrencyProduct {
+
+	private double maturity;
+	private double strike;
+
+	/**
+	 * It constructs an object for the valuation of an FX option.
+	 *
+	 * @param maturity, T_1 or T_2
+	 * @param strike,   K
+	 */
+	public FXOption(double maturity, double strike) {
+		super();
+		this.maturity = maturity;
+		this.strike = strike;
+	}
+
+	@Override
+	public RandomVariable getValue(double evaluationTime, SimpleCrossCurrencyModel model) {
+
+		RandomVariable fxRate = model.getFXRate(1, maturity);
+
+		RandomVariable payment = fxRate.sub(strike).floor(0.0);
+
+		RandomVariable numeraireAtPaymentTime = model.getNumeraire(maturity);
+		RandomVariable numeraireAtEvaluationTime = model.getNumeraire(evaluationTime);
+
+		return MonteCarloWeights.applyWeights(payment.div(numeraireAtPaymentTime).mult(numeraireAtEvaluationTime),
+				model, evaluationTime, maturity);
+	}
+
+	@Override
+	public RandomVariable getValue(double evaluationTime, MonteCarloSimulationModel model) {
+		if (model instanceof SimpleCrossCurrencyModel) {
+			return getValue(evaluationTime, (SimpleCrossCurrencyModel) model);
+		} else {
+			throw new IllegalArgumentException("Product requires a model implementing SimpleCrossCurrencyModel");
+		}
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+}
@@ -71,7 +71,41 @@ public class GeneralizedCaplet extends AbstractMonteCarloProduct implements Cros
 		RandomVariable numeraireAtPaymentTime = model.getNumeraire(paymentTime);
 		RandomVariable numeraireAtEvaluationTime = model.getNumeraire(evaluationTime);
 
-		return value.div(numeraireAtPaymentTime).mult(numeraireAtEvaluationTime);
+		// the likelihood ratio, if the model uses importance sampling
+		return MonteCarloWeights.applyWeights(value.div(numeraireAtPaymentTime).mult(numeraireAtEvaluationTime),
+				model, evaluationTime, paymentTime);
+	}
+
+	/**
+	 * @return 0 if domestic, 1 if foreign (getCurrency() of the finmath-lib
+	 *         products gives the name of the currency instead)
+	 */
+	public int getCurrencyIndex() {
+		return currency;
+	}
+
+	public boolean isQuanto() {
+		return isQuanto;
+	}
+
+	public double getFixingTime() {
+		return fixingTime;
+	}
+
+	public double getPeriodStart() {
+		return periodStart;
+	}
+
+	public double getPeriodEnd() {
+		return periodEnd;
+	}
+
+	public double getPaymentTime() {
+		return paymentTime;
+	}
+
+	public double getStrike() {
+		return strike;
 	}
 
 	@Override
@@ -0,0 +1,261 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.stochastic.Scalar;
+
+/**
+ * This class provides the pathwise sensitivities of the value of a
+ * generalized caplet with respect to all the parameters of the model, from a
+ * single simulation.
+ *
+ * The logarithm of every process is affine in the Brownian motion:
+ * log X_i(t) = log X_i(0) + mu_i t + sum_j lambda_{i,j} W_j(t), where the
+ * initial value, the drift mu and the factor loadings lambda are explicit
+ * functions of the model parameters. So the derivative of X_i(t) with respect
+ * to a parameter is X_i(t) times the derivative of the right hand side, which
+ * is known path by path. The derivative of the payoff then follows by the
+ * chain rule (the payoff of the caplet is Lipschitz, so the pathwise
+ * derivative gives an unbiased estimator).
+ */
+public class GeneralizedCapletSensitivities {
+
+	/**
+	 * The names of the parameters, in the order of the sensitivity vector.
+	 */
+	public static final String[] PARAMETER_NAMES = { "initialValueDomesticForwardRate",
+			"initialValueForeignForwardRate", "initialValueFX", "volatilityDomestic", "volatilityForeign",
+			"volatilityFXForward", "correlationDomFor", "correlationFXDomestic", "correlationFXForeign",
+			"domesticZeroBond", "foreignZeroBond" };
+
+	private static final int NUMBER_OF_PARAMETERS = PARAMETER_NAMES.length;
+	private static final int DOMESTIC_ZERO_BOND_INDEX = 9;
+
+	private final GeneralizedCaplet caplet;
+
+	/**
+	 * It constructs an object for the sensitivities of the caplet.
+	 *
+	 * @param caplet, the caplet
+	 */
+	public GeneralizedCapletSensitivities(GeneralizedCaplet caplet) {
+		super();
+		this.caplet = caplet;
+	}
+
+	/**
+	 * It returns the derivatives of the value at time 0 of the caplet with respect
+	 * to the parameters of the model, in the order of {@link #PARAMETER_NAMES}.
+	 *
+	 * @param model, the model
+	 * @return the sensitivity vector
+	 */
+	public double[] getSensitivities(SimpleCrossCurrencyModelWithSingleMaturity model) {
+		double periodStart = model.getPeriodStart();
+		double periodEnd = model.getPeriodEnd();
+		double periodLength = periodEnd - periodStart;
+		double domesticZeroBond = model.getDomesticZeroBond();
+
+		if (caplet.getFixingTime() != periodStart) {
+			throw new IllegalArgumentException("Fixing time not supported: " + caplet.getFixingTime());
+		}
+
+		double[][][] logDerivativeCoefficients = getLogDerivativeCoefficients(model);
+
+		// the derivatives of the processes involved, at fixing
+		RandomVariable[] brownianMotionAtFixing = getBrownianMotion(model, periodStart);
+
+		int currency = caplet.getCurrencyIndex();
+		RandomVariable forwardRate = model.getForwardRate(currency, periodStart, periodStart, periodEnd);
+		RandomVariable[] forwardRateDerivatives = getDerivatives(forwardRate, logDerivativeCoefficients[currency],
+				periodStart, brownianMotionAtFixing);
+
+		/*
+		 * A = FX(T) N(0) / N(T): the value is max(L - K, 0) * A. Note that in all the
+		 * cases A does only depend on the processes and on P^d(T_2;0) = N(0).
+		 */
+		boolean isPaymentInAdvance = caplet.getPaymentTime() == periodStart;
+		if (!isPaymentInAdvance && caplet.getPaymentTime() != periodEnd) {
+			throw new IllegalArgumentException("Payment time not supported: " + caplet.getPaymentTime());
+		}
+		boolean isForeignPayment = currency == 1 && !caplet.isQuanto();
+
+		RandomVariable weight;
+		RandomVariable[] weightDerivatives = new RandomVariable[NUMBER_OF_PARAMETERS];
+		if (!isForeignPayment && !isPaymentInAdvance) {
+			// A = P^d(T_2;0)
+			weight = new Scalar(domesticZeroBond);
+			for (int parameterIndex = 0; parameterIndex < NUMBER_OF_PARAMETERS; parameterIndex++) {
+				weightDerivatives[parameterIndex] = new Scalar(0.0);
+			}
+		} else if (!isForeignPayment) {
+			// A = P^d(T_2;0) (1 + L^d(T_1) (T_2 - T_1))
+			RandomVariable domesticForwardRate = model.getForwardRate(0, periodStart, periodStart, periodEnd);
+			RandomVariable[] domesticForwardRateDerivatives = getDerivatives(domesticForwardRate,
+					logDerivativeCoefficients[0], periodStart, brownianMotionAtFixing);
+
+			weight = domesticForwardRate.mult(periodLength).add(1.0).mult(domesticZeroBond);
+			for (int parameterIndex = 0; parameterIndex < NUMBER_OF_PARAMETERS; parameterIndex++) {
+				weightDerivatives[parameterIndex] = domesticForwardRateDerivatives[parameterIndex]
+						.mult(periodLength * domesticZeroBond);
+			}
+		} else if (!isPaymentInAdvance) {
+			// A = P^d(T_2;0) FFX(T_2)
+			RandomVariable fxForward = model.getForwardFXRate(periodEnd);
+			RandomVariable[] fxForwardDerivatives = getDerivatives(fxForward, logDerivativeCoefficients[2], periodEnd,
+					getBrownianMotion(model, periodEnd));
+
+			weight = fxForward.mult(domesticZeroBond);
+			for (int parameterIndex = 0; parameterIndex < NUMBER_OF_PARAMETERS; parameterIndex++) {
+				weightDerivatives[parameterIndex] = fxForwardDerivatives[parameterIndex].mult(domesticZeroBond);
+			}
+		} else {
+			// A = P^d(T_2;0) FX(T_1) (1 + L^d(T_1) (T_2 - T_1)) = P^d(T_2;0) FFX(T_1) (1 + L^f(T_1) (T_2 - T_1))
+			RandomVariable fxForward = model.getForwardFXRate(periodStart);
+			RandomVariable[] fxForwardDerivatives = getDerivatives(fxForward, logDerivativeCoefficients[2],
+					periodStart, brownianMotionAtFixing);
+			RandomVariable foreignFactor = forwardRate.mult(periodLength).add(1.0);
+
+			weight = fxForward.mult(foreignFactor).mult(domesticZeroBond);
+			for (int parameterIndex = 0; parameterIndex < NUMBER_OF_PARAMETERS; parameterIndex++) {
+				weightDerivatives[parameterIndex] = fxForwardDerivatives[parameterIndex].mult(foreignFactor)
+						.add(fxForward.mult(forwardRateDerivatives[parameterIndex]).mult(periodLength))
+						.mult(domesticZeroBond);
+			}
+		}
+
+		// the explicit dependence on N(0) = P^d(T_2;0)
+		weightDerivatives[DOMESTIC_ZERO_BOND_INDEX] = weightDerivatives[DOMESTIC_ZERO_BOND_INDEX]
+				.add(weight.div(domesticZeroBond));
+
+		RandomVariable payoff = forwardRate.sub(caplet.getStrike()).floor(0.0);
+		RandomVariable indicator = forwardRate.sub(caplet.getStrike()).choose(new Scalar(1.0), new Scalar(0.0));
+		RandomVariable indicatorTimesWeight = indicator.mult(weight);
+
+		/*
+		 * With importance sampling the derivatives are multiplied by the likelihood
+		 * ratio, as the payoff in the valuation: it does not depend on the parameters
+		 * of the model, since the drift of the Brownian motion is fixed.
+		 */
+		double[] sensitivities = new double[NUMBER_OF_PARAMETERS];
+		for (int parameterIndex = 0; parameterIndex < NUMBER_OF_PARAMETERS; parameterIndex++) {
+			RandomVariable derivative = indicatorTimesWeight.mult(forwardRateDerivatives[parameterIndex])
+					.add(payoff.mult(weightDerivatives[parameterIndex]));
+			sensitivities[parameterIndex] = MonteCarloWeights
+					.applyWeights(derivative, model, 0.0, caplet.getPaymentTime()).getAverage();
+		}
+		return sensitivities;
+	}
+
+	/*
+	 * The derivatives of X(t) = exp(y + mu t + sum_j lambda_j W_j(t)), given the
+	 * derivatives of y, mu and lambda_j in coefficients[0], [1], [2 + j].
+	 */
+	private static RandomVariable[] getDerivatives(RandomVariable process, double[][] coefficients, double time,
+			RandomVariable[] brownianMotion) {
+		RandomVariable[] derivatives = new RandomVariable[NUMBER_OF_PARAMETERS];
+		for (int parameterIndex = 0; parameterIndex < NUMBER_OF_PARAMETERS; parameterIndex++) {
+			RandomVariable logDerivative = new Scalar(
+					coefficients[0][parameterIndex] + coefficients[1][parameterIndex] * time);
+			for (int factor = 0; factor < brownianMotion.length; factor++) {
+				double coefficient = coefficients[2 + factor][parameterIndex];
+				if (coefficient != 0.0) {
+					logDerivative = logDerivative.addProduct(brownianMotion[factor], coefficient);
+				}
+			}
+			derivatives[parameterIndex] = process.mult(logDerivative);
+		}
+		return derivatives;
+	}
+
+	/*
+	 * For every component i, the derivatives with respect to the parameters of:
+	 * [0] the logarithm of the initial value, [1] the drift of the logarithm,
+	 * [2 + j] the factor loading lambda_{i,j}.
+	 */
+	private static double[][][] getLogDerivativeCoefficients(SimpleCrossCurrencyModelWithSingleMaturity model) {
+		double volatilityDomestic = model.getVolatilityDomestic();
+		double volatilityForeign = model.getVolatilityForeign();
+		double volatilityFXForward = model.getVolatilityFXForward();
+		double correlationDomFor = model.getCorrelationDomFor();
+		double correlationFXDomestic = model.getCorrelationFXDomestic();
+		double correlationFXForeign = model.getCorrelationFXForeign();
+
+		double[][][] coefficients = new double[3][5][NUMBER_OF_PARAMETERS];
+
+		// L^d: log L^d(0), -sigma^2/2, (sigma^d, 0, 0)
+		coefficients[0][0][0] = 1.0 / model.getInitialValueDomesticForwardRate();
+		coefficients[0][1][3] = -volatilityDomestic;
+		coefficients[0][2][3] = 1.0;
+
+		// L^f: log L^f(0), -sigma^2/2 - quanto adjustment, sigma^f (rho, sqrt(1 - rho^2), 0)
+		double sqrtDomFor = Math.sqrt(Math.max(0.0, 1 - correlationDomFor * correlationDomFor));
+		coefficients[1][0][1] = 1.0 / model.getInitialValueForeignForwardRate();
+		coefficients[1][1][4] = -volatilityForeign - volatilityFXForward * correlationFXForeign;
+		coefficients[1][1][5] = -volatilityForeign * correlationFXForeign;
+		coefficients[1][1][8] = -volatilityForeign * volatilityFXForward;
+		coefficients[1][2][4] = correlationDomFor;
+		coefficients[1][2][6] = volatilityForeign;
+		coefficients[1][3][4] = sqrtDomFor;
+		coefficients[1][3][6] = -volatilityForeign * correlationDomFor / sqrtDomFor;
+
+		// FFX: log(FX(0) P^f / P^d), -sigma^2/2, sigma^FFX (rho, a, b) as in LognormalSimpleCrossCurrencyProcessModel
+		double a = (correlationFXForeign - correlationDomFor * correlationFXDomestic) / sqrtDomFor;
+		// for a positive semi-definite correlation matrix this is >= 0 up to rounding, as in the model
+		double b = Math.sqrt(Math.max(0.0, 1 - correlationFXDomestic * correlationFXDomestic - a * a));
+
+		/*
+		 * The factor loadings are not differentiable in the correlations when the
+		 * correlation matrix is singular: here we would divide by zero.
+		 */
+		if (sqrtDomFor == 0.0 || b == 0.0) {
+			throw new IllegalArgumentException(
+					"Sensitivities not supported for a singular correlation matrix.");
+		}
+
+		double aDerivativeDomFor = -correlationFXDomestic / sqrtDomFor + a * correlationDomFor / (sqrtDomFor * sqrtDomFor);
+		double aDerivativeFXDomestic = -correlationDomFor / sqrtDomFor;
+		double aDerivativeFXForeign = 1.0 / sqrtDomFor;
+
+		coefficients[2][0][2] = 1.0 / model.getInitialValueFX();
+		coefficients[2][0][9] = -1.0 / model.getDomesticZeroBond();
+		coefficients[2][0][10] = 1.0 / model.getForeignZeroBond();
+		coefficients[2][1][5] = -volatilityFXForward;
+		coefficients[2][2][5] = correlationFXDomestic;
+		coefficients[2][2][7] = volatilityFXForward;
+		coefficients[2][3][5] = a;
+		coefficients[2][3][6] = volatilityFXForward * aDerivativeDomFor;
+		coefficients[2][3][7] = volatilityFXForward * aDerivativeFXDomestic;
+		coefficients[2][3][8] = volatilityFXForward * aDerivativeFXForeign;
+		coefficients[2][4][5] = b;
+		coefficients[2][4][6] = volatilityFXForward * (-a * aDerivativeDomFor) / b;
+		coefficients[2][4][7] = volatilityFXForward * (-correlationFXDomestic - a * aDerivativeFXDomestic) / b;
+		coefficients[2][4][8] = volatilityFXForward * (-a * aDerivativeFXForeign) / b;
+
+		return coefficients;
+	}
+
+	// W_j(t), j = 1, 2, 3, as sum of the increments of the Brownian motion of the model
+	private static RandomVariable[] getBrownianMotion(SimpleCrossCurrencyModelWithSingleMaturity model, double time) {
+		BrownianMotion brownianMotion = model.getBrownianMotion();
+		int timeIndex = brownianMotion.getTimeDiscretization().getTimeIndex(time);
+		if (timeIndex < 0) {
+			throw new IllegalArgumentException("Time not supported: " + time);
+		}
+
+		RandomVariable[] values = new RandomVariable[brownianMotion.getNumberOfFactors()];
+		for (int factor = 0; factor < values.length; factor++) {
+			RandomVariable value = new Scalar(0.0);
+			for (int index = 0; index < timeIndex; index++) {
+				value = value.add(brownianMotion.getBrownianIncrement(index, factor));
+			}
+			values[factor] = value;
+		}
+		return values;
+	}
+
+	public GeneralizedCaplet getCaplet() {
+		return caplet;
+	}
+}
@@ -0,0 +1,93 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.stochastic.Scalar;
+
+/**
+ * This class provides the valuation of a generalized caplet (see
+ * {@link GeneralizedCaplet}) for a whole set of strikes. The value of the
+ * caplet with strike K is the average of w max(L - K, 0), where L is the
+ * forward rate and w = FX * N(t) / N(T) does not depend on the strike. So we
+ * sort the realizations of L once and get the values for all the strikes from
+ * the tail sums of w and w*L: this costs O(n log n + k log n) for n paths and k
+ * strikes, instead of O(n k) for k separate valuations.
+ */
+public class GeneralizedCapletStrikeLadder {
+
+	private int currency;
+
+	private double fixingTime;
+	private double periodStart;
+	private double periodEnd;
+
+	private double paymentTime;
+	private double[] strikes;
+
+	private boolean isQuanto;
+
+	/**
+	 * It constructs an object for the valuation of caplets with different strikes.
+	 *
+	 * @param currency,    0 if domestic, 1 if foreign
+	 * @param isQuanto,    true if it is a quanto, false if foreign caplet
+	 * @param fixingTime,  T_1, in our case
+	 * @param periodStart, T_1
+	 * @param periodEnd,   T_2
+	 * @param paymentTime, T_1 (if payed in advance, i.e., if in arrears) or T_2
+	 * @param strikes,     the strikes K_1, ..., K_k
+	 */
+	public GeneralizedCapletStrikeLadder(int currency, boolean isQuanto, double fixingTime, double periodStart,
+			double periodEnd, double paymentTime, double[] strikes) {
+		super();
+		this.currency = currency;
+		this.isQuanto = isQuanto;
+		this.fixingTime = fixingTime;
+		this.periodStart = periodStart;
+		this.periodEnd = periodEnd;
+		this.paymentTime = paymentTime;
+		this.strikes = strikes.clone();
+	}
+
+	/**
+	 * It returns the values of the caplets for all the strikes, i.e., for every
+	 * strike the same value as
+	 * <code>new GeneralizedCaplet(..., strike).getValue(evaluationTime, model).getAverage()</code>.
+	 *
+	 * @param evaluationTime, the evaluation time
+	 * @param model,          the model
+	 * @return the values of the caplets, in the order of the strikes
+	 */
+	public double[] getValues(double evaluationTime, SimpleCrossCurrencyModel model) {
+
+		// If currency 0, it is L^d(T_1,T_2;T_1), if currency=1, L^f(T_1, T_2; T_1)
+		RandomVariable forwardRate = model.getForwardRate(currency, fixingTime, periodStart, periodEnd);
+
+		RandomVariable fxRate = isQuanto ? new Scalar(1.0) : model.getFXRate(currency, paymentTime);
+
+		// the weight does not depend on the strike
+		RandomVariable weight = MonteCarloWeights.applyWeights(
+				fxRate.div(model.getNumeraire(paymentTime)).mult(model.getNumeraire(evaluationTime)), model,
+				evaluationTime, paymentTime);
+
+		return getValues(forwardRate, weight, model.getNumberOfPaths());
+	}
+
+	/**
+	 * It returns the values of the caplets for all the strikes, given the forward
+	 * rate and the weight FX * N(t) / N(T).
+	 */
+	double[] getValues(RandomVariable forwardRate, RandomVariable weight, int numberOfPaths) {
+		SortedWeightedSamples samples = new SortedWeightedSamples(forwardRate, weight, numberOfPaths);
+
+		double[] values = new double[strikes.length];
+		for (int strikeIndex = 0; strikeIndex < strikes.length; strikeIndex++) {
+			values[strikeIndex] = samples.getCallValue(strikes[strikeIndex]);
+		}
+		return values;
+	}
+
+	public double[] getStrikes() {
+		return strikes.clone();
+	}
+}
@@ -0,0 +1,40 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import net.finmath.exception.CalculationException;
+import net.finmath.stochastic.RandomVariable;
+
+/*
+ * The weights of the paths of the model at the payment time, relative to the
+ * ones at the evaluation time. With importance sampling the paths are simulated
+ * under another measure: multiplying the deflated payoff by these weights, its
+ * average is again the expectation under the pricing measure. Without
+ * importance sampling the weights are 1 and nothing is done.
+ */
+final class MonteCarloWeights {
+
+	private MonteCarloWeights() {
+	}
+
+	private static RandomVariable getWeights(SimpleCrossCurrencyModel model, double evaluationTime, double paymentTime) {
+		try {
+			RandomVariable weightsAtPaymentTime = model.getMonteCarloWeights(paymentTime);
+			RandomVariable weightsAtEvaluationTime = model.getMonteCarloWeights(evaluationTime);
+			if (weightsAtEvaluationTime.isDeterministic() && weightsAtEvaluationTime.get(0) == 1.0) {
+				return weightsAtPaymentTime;
+			}
+			return weightsAtPaymentTime.div(weightsAtEvaluationTime);
+		} catch (CalculationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static RandomVariable applyWeights(RandomVariable value, SimpleCrossCurrencyModel model, double evaluationTime,
+			double paymentTime) {
+		RandomVariable weights = getWeights(model, evaluationTime, paymentTime);
+		if (weights.isDeterministic() && weights.get(0) == 1.0) {
+			return value;
+		}
+		return value.mult(weights);
+	}
+}
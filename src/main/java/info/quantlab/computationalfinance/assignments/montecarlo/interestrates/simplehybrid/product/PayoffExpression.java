@@ -0,0 +1,369 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntToDoubleFunction;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class describes a payoff as an expression of the observables of a
+ * {@link SimpleCrossCurrencyModel} (forward rates, FX rates, numeraire) and of
+ * constants. For example, the payoff of a foreign caplet paid in T_2 is
+ *
+ * <pre>
+ * forwardRate(1, T_1, T_1, T_2).sub(strike).floor(0.0).mult(fxRate(1, T_2))
+ * </pre>
+ *
+ * An expression does not compute anything by itself: it is compiled by
+ * {@link #compile()} into a {@link CompiledPayoff}, which evaluates the whole
+ * expression path by path in one loop. In this way no temporary random
+ * variable is allocated for the intermediate results, as it would be when
+ * chaining the operations of RandomVariable.
+ *
+ * Expressions are immutable and can be shared.
+ */
+public abstract class PayoffExpression {
+
+	/*
+	 * An observable of the model. Two observables are equal if they give the same
+	 * random variable, so that it is requested to the model only once.
+	 */
+	static final class Observable {
+
+		enum Type {
+			FORWARD_RATE, FX_RATE, NUMERAIRE
+		}
+
+		private final Type type;
+		private final List<Object> key;
+
+		private Observable(Type type, Object... data) {
+			this.type = type;
+			this.key = List.of(type, List.of(data));
+		}
+
+		RandomVariable getValue(SimpleCrossCurrencyModel model) {
+			List<?> data = (List<?>) key.get(1);
+			switch (type) {
+			case FORWARD_RATE:
+				return model.getForwardRate((Integer) data.get(0), (Double) data.get(1), (Double) data.get(2),
+						(Double) data.get(3));
+			case FX_RATE:
+				return model.getFXRate((Integer) data.get(0), (Double) data.get(1));
+			case NUMERAIRE:
+				return model.getNumeraire((Double) data.get(0));
+			default:
+				throw new IllegalStateException();
+			}
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Observable && key.equals(((Observable) other).key);
+		}
+
+		@Override
+		public int hashCode() {
+			return key.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return type + "" + key.get(1);
+		}
+	}
+
+	private enum Operation {
+		ADD, SUB, MULT, DIV, MAX, MIN
+	}
+
+	/**
+	 * @param currency,    0 if domestic, 1 if foreign
+	 * @param time,        the fixing time
+	 * @param periodStart, the start of the period
+	 * @param periodEnd,   the end of the period
+	 * @return the forward rate of the currency for the period, fixed in the time
+	 */
+	public static PayoffExpression forwardRate(int currency, double time, double periodStart, double periodEnd) {
+		return new ObservableExpression(
+				new Observable(Observable.Type.FORWARD_RATE, currency, time, periodStart, periodEnd));
+	}
+
+	/**
+	 * @param currency, 0 if domestic, 1 if foreign
+	 * @param time,     the time
+	 * @return the FX rate of the currency at the time
+	 */
+	public static PayoffExpression fxRate(int currency, double time) {
+		return new ObservableExpression(new Observable(Observable.Type.FX_RATE, currency, time));
+	}
+
+	/**
+	 * @param time, the time
+	 * @return the numeraire at the time
+	 */
+	public static PayoffExpression numeraire(double time) {
+		return new ObservableExpression(new Observable(Observable.Type.NUMERAIRE, time));
+	}
+
+	/**
+	 * @param value, the value
+	 * @return the constant
+	 */
+	public static PayoffExpression constant(double value) {
+		return new ConstantExpression(value);
+	}
+
+	public PayoffExpression add(PayoffExpression other) {
+		return new OperationExpression(Operation.ADD, this, other);
+	}
+
+	public PayoffExpression add(double value) {
+		return add(constant(value));
+	}
+
+	public PayoffExpression sub(PayoffExpression other) {
+		return new OperationExpression(Operation.SUB, this, other);
+	}
+
+	public PayoffExpression sub(double value) {
+		return sub(constant(value));
+	}
+
+	public PayoffExpression mult(PayoffExpression other) {
+		return new OperationExpression(Operation.MULT, this, other);
+	}
+
+	public PayoffExpression mult(double value) {
+		return mult(constant(value));
+	}
+
+	public PayoffExpression div(PayoffExpression other) {
+		return new OperationExpression(Operation.DIV, this, other);
+	}
+
+	public PayoffExpression div(double value) {
+		return div(constant(value));
+	}
+
+	public PayoffExpression max(PayoffExpression other) {
+		return new OperationExpression(Operation.MAX, this, other);
+	}
+
+	public PayoffExpression min(PayoffExpression other) {
+		return new OperationExpression(Operation.MIN, this, other);
+	}
+
+	/**
+	 * @param floor, the floor
+	 * @return max(this, floor)
+	 */
+	public PayoffExpression floor(double floor) {
+		return max(constant(floor));
+	}
+
+	/**
+	 * @param cap, the cap
+	 * @return min(this, cap)
+	 */
+	public PayoffExpression cap(double cap) {
+		return min(constant(cap));
+	}
+
+	/**
+	 * It compiles the expression for the evaluation on the paths of a model.
+	 *
+	 * @return the compiled expression
+	 */
+	public CompiledPayoff compile() {
+		Set<Observable> observables = new LinkedHashSet<>();
+		addObservables(observables);
+		return new CompiledPayoff(this, observables);
+	}
+
+	abstract void addObservables(Collection<Observable> observables);
+
+	/*
+	 * It returns the function giving the value of the expression on the path,
+	 * given the values of the observables. The realizations of the observables
+	 * which are deterministic are null: their value is then in constants.
+	 */
+	abstract IntToDoubleFunction bind(Map<Observable, double[]> realizations, Map<Observable, Double> constants);
+
+	// the value of the expression if it does not depend on the path, NaN otherwise
+	double getConstantValue(Map<Observable, Double> constants) {
+		return Double.NaN;
+	}
+
+	private static final class ConstantExpression extends PayoffExpression {
+
+		private final double value;
+
+		private ConstantExpression(double value) {
+			this.value = value;
+		}
+
+		@Override
+		void addObservables(Collection<Observable> observables) {
+		}
+
+		@Override
+		IntToDoubleFunction bind(Map<Observable, double[]> realizations, Map<Observable, Double> constants) {
+			return pathIndex -> value;
+		}
+
+		@Override
+		double getConstantValue(Map<Observable, Double> constants) {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			return Double.toString(value);
+		}
+	}
+
+	private static final class ObservableExpression extends PayoffExpression {
+
+		private final Observable observable;
+
+		private ObservableExpression(Observable observable) {
+			this.observable = observable;
+		}
+
+		@Override
+		void addObservables(Collection<Observable> observables) {
+			observables.add(observable);
+		}
+
+		@Override
+		IntToDoubleFunction bind(Map<Observable, double[]> realizations, Map<Observable, Double> constants) {
+			double[] values = realizations.get(observable);
+			if (values == null) {
+				double value = constants.get(observable);
+				return pathIndex -> value;
+			}
+			return pathIndex -> values[pathIndex];
+		}
+
+		@Override
+		double getConstantValue(Map<Observable, Double> constants) {
+			Double value = constants.get(observable);
+			return value != null ? value : Double.NaN;
+		}
+
+		@Override
+		public String toString() {
+			return observable.toString();
+		}
+	}
+
+	private static final class OperationExpression extends PayoffExpression {
+
+		private final Operation operation;
+		private final PayoffExpression left;
+		private final PayoffExpression right;
+
+		private OperationExpression(Operation operation, PayoffExpression left, PayoffExpression right) {
+			this.operation = operation;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		void addObservables(Collection<Observable> observables) {
+			left.addObservables(observables);
+			right.addObservables(observables);
+		}
+
+		/*
+		 * Constants are folded, and an operation with a constant operand on the
+		 * right (the most frequent case, e.g. sub(strike)) gets its own function,
+		 * which uses the constant instead of calling a function for it. The switch
+		 * on the operation is done here, once, and not for every path.
+		 */
+		@Override
+		IntToDoubleFunction bind(Map<Observable, double[]> realizations, Map<Observable, Double> constants) {
+			double constantValue = getConstantValue(constants);
+			if (!Double.isNaN(constantValue)) {
+				return pathIndex -> constantValue;
+			}
+
+			IntToDoubleFunction leftFunction = left.bind(realizations, constants);
+			double rightValue = right.getConstantValue(constants);
+			if (!Double.isNaN(rightValue)) {
+				switch (operation) {
+				case ADD:
+					return pathIndex -> leftFunction.applyAsDouble(pathIndex) + rightValue;
+				case SUB:
+					return pathIndex -> leftFunction.applyAsDouble(pathIndex) - rightValue;
+				case MULT:
+					return pathIndex -> leftFunction.applyAsDouble(pathIndex) * rightValue;
+				case DIV:
+					return pathIndex -> leftFunction.applyAsDouble(pathIndex) / rightValue;
+				case MAX:
+					return pathIndex -> Math.max(leftFunction.applyAsDouble(pathIndex), rightValue);
+				case MIN:
+					return pathIndex -> Math.min(leftFunction.applyAsDouble(pathIndex), rightValue);
+				default:
+					throw new IllegalStateException();
+				}
+			}
+
+			IntToDoubleFunction rightFunction = right.bind(realizations, constants);
+			switch (operation) {
+			case ADD:
+				return pathIndex -> leftFunction.applyAsDouble(pathIndex) + rightFunction.applyAsDouble(pathIndex);
+			case SUB:
+				return pathIndex -> leftFunction.applyAsDouble(pathIndex) - rightFunction.applyAsDouble(pathIndex);
+			case MULT:
+				return pathIndex -> leftFunction.applyAsDouble(pathIndex) * rightFunction.applyAsDouble(pathIndex);
+			case DIV:
+				return pathIndex -> leftFunction.applyAsDouble(pathIndex) / rightFunction.applyAsDouble(pathIndex);
+			case MAX:
+				return pathIndex -> Math.max(leftFunction.applyAsDouble(pathIndex),
+						rightFunction.applyAsDouble(pathIndex));
+			case MIN:
+				return pathIndex -> Math.min(leftFunction.applyAsDouble(pathIndex),
+						rightFunction.applyAsDouble(pathIndex));
+			default:
+				throw new IllegalStateException();
+			}
+		}
+
+		@Override
+		double getConstantValue(Map<Observable, Double> constants) {
+			double leftValue = left.getConstantValue(constants);
+			double rightValue = right.getConstantValue(constants);
+			if (Double.isNaN(leftValue) || Double.isNaN(rightValue)) {
+				return Double.NaN;
+			}
+			switch (operation) {
+			case ADD:
+				return leftValue + rightValue;
+			case SUB:
+				return leftValue - rightValue;
+			case MULT:
+				return leftValue * rightValue;
+			case DIV:
+				return leftValue / rightValue;
+			case MAX:
+				return Math.max(leftValue, rightValue);
+			case MIN:
+				return Math.min(leftValue, rightValue);
+			default:
+				throw new IllegalStateException();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return operation.name().toLowerCase() + "(" + left + ", " + right + ")";
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import java.util.Arrays;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class stores the realizations of a random variable X sorted, together
+ * with the tail sums of some weights w and of w*X. In this way, the Monte-Carlo
+ * approximation of E[w max(X - K, 0)] can be computed for any K by a binary
+ * search, without a further pass over the paths.
+ */
+class SortedWeightedSamples {
+
+	private final double[] sortedValues;
+	private final double[] tailSumOfWeights;
+	private final double[] tailSumOfWeightedValues;
+	private final int numberOfPaths;
+
+	/**
+	 * It sorts the samples and computes the tail sums of the weights.
+	 *
+	 * @param values,        the random variable X
+	 * @param weights,       the random variable w
+	 * @param numberOfPaths, the number of paths
+	 */
+	SortedWeightedSamples(RandomVariable values, RandomVariable weights, int numberOfPaths) {
+		this.numberOfPaths = numberOfPaths;
+
+		double[] realizations = new double[numberOfPaths];
+		for (int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			realizations[pathIndex] = values.get(pathIndex);
+		}
+
+		sortedValues = realizations.clone();
+		Arrays.sort(sortedValues);
+
+		/*
+		 * We do not move the weights together with the values: each weight is added to
+		 * the position of its value in the sorted array. If a value appears more than
+		 * once, its weight may end up at any of its positions: this does not matter,
+		 * since equal values are always either all above or all below a strike.
+		 */
+		tailSumOfWeights = new double[numberOfPaths + 1];
+		tailSumOfWeightedValues = new double[numberOfPaths + 1];
+		for (int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			int position = Arrays.binarySearch(sortedValues, realizations[pathIndex]);
+			double weight = weights.get(pathIndex);
+			tailSumOfWeights[position] += weight;
+			tailSumOfWeightedValues[position] += weight * realizations[pathIndex];
+		}
+		for (int position = numberOfPaths - 1; position >= 0; position--) {
+			tailSumOfWeights[position] += tailSumOfWeights[position + 1];
+			tailSumOfWeightedValues[position] += tailSumOfWeightedValues[position + 1];
+		}
+	}
+
+	/**
+	 * @param strike, K
+	 * @return the Monte-Carlo approximation of E[w max(X - K, 0)]
+	 */
+	double getCallValue(double strike) {
+		int firstPositionAboveStrike = getFirstPositionAbove(strike);
+		return (tailSumOfWeightedValues[firstPositionAboveStrike]
+				- strike * tailSumOfWeights[firstPositionAboveStrike]) / numberOfPaths;
+	}
+
+	// the first position such that sortedValues[position] > strike
+	private int getFirstPositionAbove(double strike) {
+		int low = 0;
+		int high = numberOfPaths;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sortedValues[middle] > strike) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+}
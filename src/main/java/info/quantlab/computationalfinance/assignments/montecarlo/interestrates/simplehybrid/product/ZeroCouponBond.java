@@ -0,0 +1,63 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import net.finmath.montecarlo.AbstractMonteCarloProduct;
+import net.finmath.montecarlo.MonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class provides the valuation of a zero coupon bond paying one unit of
+ * the domestic or of the foreign currency at maturity. The value is given in
+ * domestic currency.
+ */
+public class ZeroCouponBond extends AbstractMonteCarloProduct implements CrossCurrencyProduct {
+
+	private int currency;
+	private double maturity;
+
+	/**
+	 * It constructs an object for the valuation of a zero coupon bond.
+	 *
+	 * @param currency, 0 if domestic, 1 if foreign
+	 * @param maturity, T_1 or T_2
+	 */
+	public ZeroCouponBond(int currency, double maturity) {
+		super();
+		this.currency = currency;
+		this.maturity = maturity;
+	}
+
+	@Override
+	public RandomVariable getValue(double evaluationTime, SimpleCrossCurrencyModel model) {
+
+		// one unit of the currency, converted in domestic currency
+		RandomVariable fxRate = model.getFXRate(currency, maturity);
+
+		RandomVariable numeraireAtPaymentTime = model.getNumeraire(maturity);
+		RandomVariable numeraireAtEvaluationTime = model.getNumeraire(evaluationTime);
+
+		return MonteCarloWeights.applyWeights(fxRate.div(numeraireAtPaymentTime).mult(numeraireAtEvaluationTime),
+				model, evaluationTime, maturity);
+	}
+
+	@Override
+	public RandomVariable getValue(double evaluationTime, MonteCarloSimulationModel model) {
+		if (model instanceof SimpleCrossCurrencyModel) {
+			return getValue(evaluationTime, (SimpleCrossCurrencyModel) model);
+		} else {
+			throw new IllegalArgumentException("Product requires a model implementing SimpleCrossCurrencyModel");
+		}
+	}
+
+	/**
+	 * @return 0 if domestic, 1 if foreign (getCurrency() of the finmath-lib
+	 *         products gives the name of the currency instead)
+	 */
+	public int getCurrencyIndex() {
+		return currency;
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+}
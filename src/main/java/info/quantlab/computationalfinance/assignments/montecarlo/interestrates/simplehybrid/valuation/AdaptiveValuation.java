@@ -0,0 +1,144 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyProduct;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+
+/**
+ * This class provides the Monte-Carlo valuation of a product with a number of
+ * paths which is not fixed in advance, but depends on the standard error
+ * reached. The paths are simulated in blocks (clones of a prototype model with
+ * modified seeds, as in {@link StreamingValuation}) and the number of blocks is
+ * doubled at every batch, until the standard error is below the target
+ * max(absolute target, relative target * |value|) or the maximum number of
+ * paths is reached.
+ *
+ * Products with a small variance, like deep out-of-the-money caplets, then
+ * stop after few paths, while the budget is spent on the ones which need it.
+ * Only the running moments of the values are kept between the blocks.
+ */
+public class AdaptiveValuation {
+
+	/**
+	 * The result of an adaptive valuation: the result of the valuation together
+	 * with the target standard error and the information if it has been reached.
+	 */
+	public static class AdaptiveValuationResult extends MonteCarloValuationResult {
+
+		private final double targetStandardError;
+		private final boolean isTargetReached;
+
+		private AdaptiveValuationResult(RunningMoments moments, double targetStandardError,
+				boolean isTargetReached) {
+			super(moments.getMean(), moments.getStandardError(), moments.getNumberOfSamples());
+			this.targetStandardError = targetStandardError;
+			this.isTargetReached = isTargetReached;
+		}
+
+		/**
+		 * @return the target standard error, computed with the final estimate of the
+		 *         value
+		 */
+		public double getTargetStandardError() {
+			return targetStandardError;
+		}
+
+		/**
+		 * @return false if the maximum number of paths has been reached before the
+		 *         target standard error
+		 */
+		public boolean isTargetReached() {
+			return isTargetReached;
+		}
+
+		@Override
+		public String toString() {
+			return "AdaptiveValuationResult [value=" + getValue() + ", standardError=" + getStandardError()
+					+ ", numberOfPaths=" + getNumberOfPaths() + ", targetStandardError=" + targetStandardError
+					+ ", isTargetReached=" + isTargetReached + "]";
+		}
+	}
+
+	private final ReseededModels blockModels;
+	private final double absoluteStandardError;
+	private final double relativeStandardError;
+
+	/**
+	 * It constructs an object for the adaptive valuation of products.
+	 *
+	 * @param prototypeModel,        the model whose clones (with different seeds)
+	 *                               are the blocks. Its Brownian motion gives the
+	 *                               number of paths per block, i.e., the size of
+	 *                               the first batch
+	 * @param absoluteStandardError, the absolute target of the standard error (0
+	 *                               for none)
+	 * @param relativeStandardError, the target of the standard error relative to
+	 *                               the absolute value of the product (0 for none)
+	 * @param maximumNumberOfPaths,  the maximum number of paths. It is rounded
+	 *                               down to a multiple of the number of paths of a
+	 *                               block (at least one block, at most
+	 *                               Integer.MAX_VALUE blocks)
+	 * @param seed,                  the master seed from which the seeds of the
+	 *                               blocks are derived
+	 */
+	public AdaptiveValuation(SimpleCrossCurrencyModelWithSingleMaturity prototypeModel, double absoluteStandardError,
+			double relativeStandardError, long maximumNumberOfPaths, long seed) {
+		super();
+		if (absoluteStandardError <= 0 && relativeStandardError <= 0) {
+			throw new IllegalArgumentException("At least one of the targets has to be positive.");
+		}
+		this.absoluteStandardError = absoluteStandardError;
+		this.relativeStandardError = relativeStandardError;
+
+		// in long: for a large budget, the number of blocks does not fit in an int
+		long maximumNumberOfBlocks = Math.max(1, maximumNumberOfPaths / prototypeModel.getNumberOfPaths());
+		this.blockModels = new ReseededModels(prototypeModel, (int) Math.min(maximumNumberOfBlocks, Integer.MAX_VALUE),
+				seed);
+	}
+
+	/**
+	 * It values the product, simulating batches of paths until the target
+	 * standard error or the maximum number of paths is reached.
+	 *
+	 * @param evaluationTime, the evaluation time
+	 * @param product,        the product
+	 * @return the result, with the standard error and the number of paths used
+	 */
+	public AdaptiveValuationResult getValue(double evaluationTime, CrossCurrencyProduct product) {
+		RunningMoments moments = new RunningMoments();
+
+		int numberOfBlocksDone = 0;
+		int batchSize = 1;
+		while (true) {
+			int numberOfBlocksInBatch = Math.min(batchSize, blockModels.getNumberOfModels() - numberOfBlocksDone);
+			for (int blockIndex = numberOfBlocksDone; blockIndex < numberOfBlocksDone
+					+ numberOfBlocksInBatch; blockIndex++) {
+				SimpleCrossCurrencyModelWithSingleMaturity model = blockModels.getModel(blockIndex);
+				moments.add(SimulationMetrics.measureValuation(product.getClass().getSimpleName(),
+						() -> RunningMoments.of(product.getValue(evaluationTime, model), model.getNumberOfPaths())));
+			}
+			numberOfBlocksDone += numberOfBlocksInBatch;
+			// the total number of blocks doubles at every batch
+			batchSize = numberOfBlocksDone;
+
+			double targetStandardError = getTargetStandardError(moments.getMean());
+			if (moments.getStandardError() <= targetStandardError) {
+				return new AdaptiveValuationResult(moments, targetStandardError, true);
+			}
+			if (numberOfBlocksDone == blockModels.getNumberOfModels()) {
+				return new AdaptiveValuationResult(moments, targetStandardError, false);
+			}
+		}
+	}
+
+	private double getTargetStandardError(double value) {
+		return Math.max(absoluteStandardError, relativeStandardError * Math.abs(value));
+	}
+
+	/**
+	 * @return the maximum number of paths which may be used for a valuation
+	 */
+	public long getMaximumNumberOfPaths() {
+		return (long) blockModels.getNumberOfModels() * blockModels.getPrototypeModel().getNumberOfPaths();
+	}
+}
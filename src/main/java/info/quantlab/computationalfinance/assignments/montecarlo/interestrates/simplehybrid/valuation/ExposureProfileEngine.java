@@ -0,0 +1,327 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.LognormalSimpleCrossCurrencyProcessModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyAnalyticModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import net.finmath.functions.NormalDistribution;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.randomnumbers.MersenneTwister;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class computes the exposure profile of a portfolio of generalized
+ * caplets on a grid of dates which need not be times of the model.
+ *
+ * The model only gives its state at the times of its Brownian motion (0, T_1,
+ * T_2). At the other dates the Brownian motion is sampled exactly, conditional
+ * on its values at these times, by a Brownian bridge (and by independent
+ * increments after the last time). Since the coefficients of the log-normal
+ * dynamics are constant, the state at any date is then an exact function of
+ * the Brownian motion, and at every date the caplets are valued by the
+ * conditional analytic formulas of {@link SimpleCrossCurrencyAnalyticModel}.
+ * The cash flows paid at or before a date do not count for the exposure at this
+ * date. All the dates are computed path by path in one pass.
+ *
+ * The model does not specify the domestic discount curve between its times, so
+ * the exposures are given discounted to time 0 with the numeraire: the
+ * discounted value at t is D(t) = N(0) V(t) / N(t), which only depends on the
+ * deflated values V(t) / N(t), and its expectation is the value at time 0 of
+ * the cash flows after t. The expected exposure at t is E[max(D(t), 0)] and the
+ * potential future exposure is a quantile of max(D(t), 0), both under the
+ * measure of the numeraire of the model.
+ */
+public class ExposureProfileEngine {
+
+	/**
+	 * The exposure profile of a portfolio.
+	 */
+	public static class ExposureProfile {
+
+		private final double[] exposureDates;
+		private final double[] expectedValues;
+		private final double[] expectedExposures;
+		private final double[] potentialFutureExposures;
+		private final double quantileLevel;
+
+		private ExposureProfile(double[] exposureDates, double[] expectedValues, double[] expectedExposures,
+				double[] potentialFutureExposures, double quantileLevel) {
+			this.exposureDates = exposureDates;
+			this.expectedValues = expectedValues;
+			this.expectedExposures = expectedExposures;
+			this.potentialFutureExposures = potentialFutureExposures;
+			this.quantileLevel = quantileLevel;
+		}
+
+		public double[] getExposureDates() {
+			return exposureDates.clone();
+		}
+
+		/**
+		 * @return the expectations of the discounted values E[D(t)]
+		 */
+		public double[] getExpectedValues() {
+			return expectedValues.clone();
+		}
+
+		/**
+		 * @return the expected exposures E[max(D(t), 0)]
+		 */
+		public double[] getExpectedExposures() {
+			return expectedExposures.clone();
+		}
+
+		/**
+		 * @return the quantiles at the level of the profile of max(D(t), 0)
+		 */
+		public double[] getPotentialFutureExposures() {
+			return potentialFutureExposures.clone();
+		}
+
+		public double getQuantileLevel() {
+			return quantileLevel;
+		}
+	}
+
+	private final SimpleCrossCurrencyModelWithSingleMaturity model;
+	private final double[] exposureDates;
+	private final long seed;
+
+	private final double[] initialValues;
+	private final double[] drift;
+	private final double[][] factorLoadings;
+
+	/**
+	 * It constructs an object for the computation of exposure profiles.
+	 *
+	 * @param model,         the model, whose Brownian motion gives the paths
+	 * @param exposureDates, the dates of the profile, increasing and
+	 *                       non-negative
+	 * @param seed,          the seed of the random numbers of the Brownian bridge
+	 */
+	public ExposureProfileEngine(SimpleCrossCurrencyModelWithSingleMaturity model, double[] exposureDates, long seed) {
+		super();
+		for (int dateIndex = 0; dateIndex < exposureDates.length; dateIndex++) {
+			if (exposureDates[dateIndex] < 0
+					|| dateIndex > 0 && exposureDates[dateIndex] <= exposureDates[dateIndex - 1]) {
+				throw new IllegalArgumentException("Exposure dates must be non-negative and increasing.");
+			}
+		}
+		this.model = model;
+		this.exposureDates = exposureDates.clone();
+		this.seed = seed;
+
+		LognormalSimpleCrossCurrencyProcessModel processModel = new LognormalSimpleCrossCurrencyProcessModel(
+				model.getPeriodStart(), model.getPeriodEnd(), model.getDomesticZeroBond(),
+				model.getInitialValueDomesticForwardRate(), model.getInitialValueForeignForwardRate(),
+				model.getInitialValueFX() * model.getForeignZeroBond() / model.getDomesticZeroBond(),
+				model.getVolatilityDomestic(), model.getVolatilityForeign(), model.getVolatilityFXForward(),
+				model.getCorrelationDomFor(), model.getCorrelationFXDomestic(), model.getCorrelationFXForeign());
+
+		// the coefficients do not depend on time
+		initialValues = processModel.getInitialValuePrimitive();
+		drift = processModel.getDriftPrimitive(0);
+		factorLoadings = new double[processModel.getNumberOfComponents()][];
+		for (int componentIndex = 0; componentIndex < factorLoadings.length; componentIndex++) {
+			factorLoadings[componentIndex] = processModel.getFactorLoadingPrimitive(0, componentIndex);
+		}
+	}
+
+	/**
+	 * It returns the exposure profile of the portfolio. All the caplets must fix
+	 * in T_1 for the period [T_1, T_2] of the model.
+	 *
+	 * @param caplets,       the caplets of the portfolio
+	 * @param notionals,     the notionals of the caplets (negative if sold)
+	 * @param quantileLevel, the level of the potential future exposure, for
+	 *                       example 0.95
+	 * @return the exposure profile
+	 */
+	public ExposureProfile getExposureProfile(List<GeneralizedCaplet> caplets, double[] notionals,
+			double quantileLevel) {
+		if (caplets.size() != notionals.length) {
+			throw new IllegalArgumentException("Number of caplets and of notionals differ.");
+		}
+		double periodStart = model.getPeriodStart();
+		double periodEnd = model.getPeriodEnd();
+		for (GeneralizedCaplet caplet : caplets) {
+			if (caplet.getFixingTime() != periodStart || caplet.getPeriodStart() != periodStart
+					|| caplet.getPeriodEnd() != periodEnd
+					|| caplet.getPaymentTime() != periodStart && caplet.getPaymentTime() != periodEnd) {
+				throw new IllegalArgumentException("Caplet not supported by the model.");
+			}
+		}
+
+		BrownianMotion brownianMotion = model.getBrownianMotion();
+		TimeDiscretization times = brownianMotion.getTimeDiscretization();
+		int numberOfFactors = brownianMotion.getNumberOfFactors();
+		int numberOfPaths = brownianMotion.getNumberOfPaths();
+		int numberOfDates = exposureDates.length;
+		int periodStartIndex = times.getTimeIndex(periodStart);
+
+		double[][][] increments = new double[times.getNumberOfTimeSteps()][numberOfFactors][];
+		for (int timeIndex = 0; timeIndex < increments.length; timeIndex++) {
+			for (int factor = 0; factor < numberOfFactors; factor++) {
+				increments[timeIndex][factor] = brownianMotion.getBrownianIncrement(timeIndex, factor).getRealizations();
+			}
+		}
+
+		// the point on the left and on the right of every date on which the bridge is conditioned
+		double[] leftTimes = new double[numberOfDates];
+		int[] rightTimeIndices = new int[numberOfDates];
+		boolean[] isLeftPreviousDate = new boolean[numberOfDates];
+		int[] leftTimeIndices = new int[numberOfDates];
+		for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex++) {
+			double date = exposureDates[dateIndex];
+			int leftTimeIndex = times.getTimeIndexNearestLessOrEqual(date);
+			leftTimeIndices[dateIndex] = leftTimeIndex;
+			rightTimeIndices[dateIndex] = times.getTime(leftTimeIndex) == date
+					|| leftTimeIndex == times.getNumberOfTimes() - 1 ? -1 : leftTimeIndex + 1;
+			leftTimes[dateIndex] = times.getTime(leftTimeIndex);
+			if (dateIndex > 0 && exposureDates[dateIndex - 1] > leftTimes[dateIndex]) {
+				leftTimes[dateIndex] = exposureDates[dateIndex - 1];
+				isLeftPreviousDate[dateIndex] = true;
+			}
+		}
+
+		double[][] discountedValues = new double[numberOfDates][numberOfPaths];
+
+		MersenneTwister mersenneTwister = new MersenneTwister(seed);
+		double[][] brownianMotionOnGrid = new double[times.getNumberOfTimes()][numberOfFactors];
+		double[] brownianMotionAtDate = new double[numberOfFactors];
+		double[] state = new double[initialValues.length];
+		double[] stateAtPeriodStart = new double[initialValues.length];
+		for (int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+			for (int timeIndex = 0; timeIndex < increments.length; timeIndex++) {
+				for (int factor = 0; factor < numberOfFactors; factor++) {
+					brownianMotionOnGrid[timeIndex + 1][factor] = brownianMotionOnGrid[timeIndex][factor]
+							+ increments[timeIndex][factor][pathIndex];
+				}
+			}
+			getState(periodStart, brownianMotionOnGrid[periodStartIndex], stateAtPeriodStart);
+
+			for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex++) {
+				double date = exposureDates[dateIndex];
+				double leftTime = leftTimes[dateIndex];
+				int rightTimeIndex = rightTimeIndices[dateIndex];
+				for (int factor = 0; factor < numberOfFactors; factor++) {
+					double left = isLeftPreviousDate[dateIndex] ? brownianMotionAtDate[factor]
+							: brownianMotionOnGrid[leftTimeIndices[dateIndex]][factor];
+					if (date == leftTime) {
+						brownianMotionAtDate[factor] = left;
+					} else if (rightTimeIndex < 0) {
+						// after the last time of the model: an independent increment
+						brownianMotionAtDate[factor] = left + Math.sqrt(date - leftTime) * nextNormal(mersenneTwister);
+					} else {
+						double rightTime = times.getTime(rightTimeIndex);
+						double right = brownianMotionOnGrid[rightTimeIndex][factor];
+						brownianMotionAtDate[factor] = ((rightTime - date) * left + (date - leftTime) * right)
+								/ (rightTime - leftTime)
+								+ Math.sqrt((date - leftTime) * (rightTime - date) / (rightTime - leftTime))
+										* nextNormal(mersenneTwister);
+					}
+				}
+				getState(date, brownianMotionAtDate, state);
+
+				double deflatedValue = 0.0;
+				for (int capletIndex = 0; capletIndex < notionals.length; capletIndex++) {
+					deflatedValue += notionals[capletIndex]
+							* getDeflatedValue(caplets.get(capletIndex), date, state, stateAtPeriodStart);
+				}
+				discountedValues[dateIndex][pathIndex] = model.getDomesticZeroBond() * deflatedValue;
+			}
+		}
+
+		double[] expectedValues = new double[numberOfDates];
+		double[] expectedExposures = new double[numberOfDates];
+		double[] potentialFutureExposures = new double[numberOfDates];
+		for (int dateIndex = 0; dateIndex < numberOfDates; dateIndex++) {
+			double[] exposures = discountedValues[dateIndex];
+			double sumOfValues = 0.0;
+			double sumOfExposures = 0.0;
+			for (int pathIndex = 0; pathIndex < numberOfPaths; pathIndex++) {
+				sumOfValues += exposures[pathIndex];
+				exposures[pathIndex] = Math.max(exposures[pathIndex], 0.0);
+				sumOfExposures += exposures[pathIndex];
+			}
+			expectedValues[dateIndex] = sumOfValues / numberOfPaths;
+			expectedExposures[dateIndex] = sumOfExposures / numberOfPaths;
+
+			Arrays.sort(exposures);
+			int quantileIndex = Math.min(Math.max((int) Math.ceil(quantileLevel * numberOfPaths) - 1, 0),
+					numberOfPaths - 1);
+			potentialFutureExposures[dateIndex] = exposures[quantileIndex];
+		}
+
+		return new ExposureProfile(exposureDates.clone(), expectedValues, expectedExposures, potentialFutureExposures,
+				quantileLevel);
+	}
+
+	/**
+	 * It returns the exposure profile of a portfolio of caplets with unit
+	 * notionals.
+	 *
+	 * @param caplets,       the caplets of the portfolio
+	 * @param quantileLevel, the level of the potential future exposure
+	 * @return the exposure profile
+	 */
+	public ExposureProfile getExposureProfile(List<GeneralizedCaplet> caplets, double quantileLevel) {
+		double[] notionals = new double[caplets.size()];
+		Arrays.fill(notionals, 1.0);
+		return getExposureProfile(caplets, notionals, quantileLevel);
+	}
+
+	// the exact solution of the log-normal dynamics with constant coefficients
+	private void getState(double time, double[] brownianMotion, double[] state) {
+		for (int componentIndex = 0; componentIndex < state.length; componentIndex++) {
+			double logarithm = drift[componentIndex] * time;
+			for (int factor = 0; factor < brownianMotion.length; factor++) {
+				logarithm += factorLoadings[componentIndex][factor] * brownianMotion[factor];
+			}
+			state[componentIndex] = initialValues[componentIndex] * Math.exp(logarithm);
+		}
+	}
+
+	/*
+	 * E_t[X / N(T)] for the caplet paying X in T. Before the fixing this is the
+	 * analytic formula. After the fixing the payoff is known up to the FX rate
+	 * FX(T_2) = FFX(T_2;T_2), and FFX is a martingale under the measure of the
+	 * numeraire, which is 1 in T_2.
+	 */
+	private double getDeflatedValue(GeneralizedCaplet caplet, double time, double[] state,
+			double[] stateAtPeriodStart) {
+		double periodStart = model.getPeriodStart();
+		double periodEnd = model.getPeriodEnd();
+		if (caplet.getPaymentTime() <= time) {
+			return 0.0;
+		}
+		if (time < periodStart) {
+			return SimpleCrossCurrencyAnalyticModel.getDeflatedCapletValue(caplet.getCurrencyIndex(), caplet.isQuanto(),
+					caplet.getPaymentTime() == periodStart, caplet.getStrike(), state[0], state[1], state[2],
+					periodStart - time, periodEnd - periodStart, model.getVolatilityDomestic(),
+					model.getVolatilityForeign(), model.getVolatilityFXForward(), model.getCorrelationDomFor(),
+					model.getCorrelationFXForeign());
+		}
+		double payoff = Math.max(stateAtPeriodStart[caplet.getCurrencyIndex()] - caplet.getStrike(), 0.0);
+		return caplet.getCurrencyIndex() == 0 || caplet.isQuanto() ? payoff : payoff * state[2];
+	}
+
+	private static double nextNormal(MersenneTwister mersenneTwister) {
+		double uniform = mersenneTwister.nextDouble();
+		if (uniform <= 0.0) {
+			uniform = 0.5 / (1L << 32);
+		}
+		return NormalDistribution.inverseCumulativeDistribution(uniform);
+	}
+
+	public double[] getExposureDates() {
+		return exposureDates.clone();
+	}
+
+	public SimpleCrossCurrencyModelWithSingleMaturity getModel() {
+		return model;
+	}
+}
@@ -0,0 +1,45 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+/**
+ * This class represents the result of a Monte-Carlo valuation: the estimated
+ * value, its standard error and the number of paths used.
+ */
+public class MonteCarloValuationResult {
+
+	private final double value;
+	private final double standardError;
+	private final long numberOfPaths;
+
+	/**
+	 * It constructs an object representing the result of a Monte-Carlo
+	 * valuation.
+	 *
+	 * @param value,         the Monte-Carlo estimate of the value
+	 * @param standardError, the standard error of the estimate
+	 * @param numberOfPaths, the number of paths used
+	 */
+	public MonteCarloValuationResult(double value, double standardError, long numberOfPaths) {
+		super();
+		this.value = value;
+		this.standardError = standardError;
+		this.numberOfPaths = numberOfPaths;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public double getStandardError() {
+		return standardError;
+	}
+
+	public long getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	@Override
+	public String toString() {
+		return "MonteCarloValuationResult [value=" + value + ", standardError=" + standardError + ", numberOfPaths="
+				+ numberOfPaths + "]";
+	}
+}
@@ -0,0 +1,136 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyProduct;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+
+/**
+ * This class provides the Monte-Carlo valuation of products splitting the paths
+ * into chunks which are simulated and valued in parallel on a fork-join pool.
+ *
+ * Every chunk is a clone of a prototype model, driven by the Brownian motion of
+ * the prototype with a modified seed: the number of paths of a chunk is the one
+ * of the prototype, so the total number of paths is this number times the
+ * number of chunks. The seeds of the chunks are derived in a sequential way
+ * from a master seed by a SplittableRandom, and the results of the chunks are
+ * merged in the order of the chunks. In this way the result does not depend on
+ * the number of threads, not even in the last digit. Only one chunk per thread
+ * is kept in memory at the same time.
+ */
+public class ParallelChunkedValuation {
+
+	private final ReseededModels chunkModels;
+	private final int numberOfThreads;
+
+	/**
+	 * It constructs an object for the parallel valuation of products.
+	 *
+	 * @param prototypeModel,  the model whose clones (with different seeds) are the
+	 *                         chunks. Its Brownian motion gives the number of paths
+	 *                         per chunk
+	 * @param numberOfChunks,  the number of chunks
+	 * @param seed,            the master seed from which the seeds of the chunks
+	 *                         are derived
+	 * @param numberOfThreads, the number of threads of the fork-join pool
+	 */
+	public ParallelChunkedValuation(SimpleCrossCurrencyModelWithSingleMaturity prototypeModel, int numberOfChunks,
+			long seed, int numberOfThreads) {
+		super();
+		this.chunkModels = new ReseededModels(prototypeModel, numberOfChunks, seed);
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * It constructs an object for the parallel valuation of products, using as
+	 * many threads as the available processors.
+	 *
+	 * @param prototypeModel, the model whose clones (with different seeds) are the
+	 *                        chunks
+	 * @param numberOfChunks, the number of chunks
+	 * @param seed,           the master seed
+	 */
+	public ParallelChunkedValuation(SimpleCrossCurrencyModelWithSingleMaturity prototypeModel, int numberOfChunks,
+			long seed) {
+		this(prototypeModel, numberOfChunks, seed, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * It returns the values of the products, valued on the same paths.
+	 *
+	 * @param evaluationTime, the evaluation time
+	 * @param products,       the products to value
+	 * @return the results, in the order of the products
+	 */
+	public List<MonteCarloValuationResult> getValues(double evaluationTime,
+			List<? extends CrossCurrencyProduct> products) {
+		ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+		RunningMoments[][] chunkMoments;
+		try {
+			// the array of a parallel stream is filled in the order of the chunks
+			chunkMoments = pool.submit(() -> IntStream.range(0, getNumberOfChunks()).parallel()
+					.mapToObj(chunkIndex -> getChunkMoments(chunkIndex, evaluationTime, products))
+					.toArray(RunningMoments[][]::new)).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		List<MonteCarloValuationResult> results = new ArrayList<>();
+		for (int productIndex = 0; productIndex < products.size(); productIndex++) {
+			RunningMoments moments = new RunningMoments();
+			for (RunningMoments[] momentsOfChunk : chunkMoments) {
+				moments.add(momentsOfChunk[productIndex]);
+			}
+			results.add(moments.getValuationResult());
+		}
+		return results;
+	}
+
+	/**
+	 * It returns the value of a product.
+	 *
+	 * @param evaluationTime, the evaluation time
+	 * @param product,        the product to value
+	 * @return the result
+	 */
+	public MonteCarloValuationResult getValue(double evaluationTime, CrossCurrencyProduct product) {
+		return getValues(evaluationTime, List.of(product)).get(0);
+	}
+
+	/**
+	 * It returns the model simulating the given chunk.
+	 *
+	 * @param chunkIndex, the index of the chunk
+	 * @return the model
+	 */
+	public SimpleCrossCurrencyModelWithSingleMaturity getChunkModel(int chunkIndex) {
+		return chunkModels.getModel(chunkIndex);
+	}
+
+	public int getNumberOfChunks() {
+		return chunkModels.getNumberOfModels();
+	}
+
+	private RunningMoments[] getChunkMoments(int chunkIndex, double evaluationTime,
+			List<? extends CrossCurrencyProduct> products) {
+		SimpleCrossCurrencyModelWithSingleMaturity model = getChunkModel(chunkIndex);
+
+		RunningMoments[] moments = new RunningMoments[products.size()];
+		for (int productIndex = 0; productIndex < products.size(); productIndex++) {
+			CrossCurrencyProduct product = products.get(productIndex);
+			moments[productIndex] = SimulationMetrics.measureValuation(product.getClass().getSimpleName(),
+					() -> RunningMoments.of(product.getValue(evaluationTime, model), model.getNumberOfPaths()));
+		}
+		return moments;
+	}
+}
@@ -0,0 +1,335 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyPortfolio;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import net.finmath.exception.CalculationException;
+
+/**
+ * This class provides an in-process service for the valuation of generalized
+ * caplets at time 0, to be called concurrently by many clients.
+ *
+ * A request is given by a caplet and by the data of the model, i.e., the
+ * parameters (with the names of
+ * {@link SimpleCrossCurrencyModelWithSingleMaturity#getCloneWithModifiedData(Map)})
+ * which differ from the ones of a prototype model. The requests with the same
+ * data which arrive within a time window, starting from the first one, are put
+ * in a batch and valued together by a {@link CrossCurrencyPortfolio} on the
+ * same model, i.e., on the same simulation. So the work grows with the number
+ * of different models, not with the number of requests. All the models are
+ * clones of the prototype, so they have its Brownian motion.
+ *
+ * The batches are valued on virtual threads when the Java runtime provides
+ * them, and on a pool with as many threads as the available processors
+ * otherwise. The optional HTTP endpoint has its own thread, which never waits
+ * for a valuation: the response is sent when the value is available.
+ */
+public class PricingService implements AutoCloseable {
+
+	/*
+	 * The requests with the same model data waiting for the end of the window.
+	 * Once the batch is taken out of the map no request is added to it anymore.
+	 */
+	private static class Batch {
+
+		private final List<GeneralizedCaplet> caplets = new ArrayList<>();
+		private final List<CompletableFuture<Double>> results = new ArrayList<>();
+	}
+
+	private final SimpleCrossCurrencyModelWithSingleMaturity prototypeModel;
+	private final long batchWindowMillis;
+	private final int maximumBatchSize;
+
+	private final ExecutorService executor;
+	private final ScheduledExecutorService scheduler;
+	private final Map<Map<String, Object>, Batch> pendingBatches = new HashMap<>();
+
+	private final AtomicLong numberOfRequests = new AtomicLong();
+	private final AtomicLong numberOfBatches = new AtomicLong();
+
+	private HttpServer httpServer;
+
+	/**
+	 * It constructs the service.
+	 *
+	 * @param prototypeModel,    the model whose clones value the requests
+	 * @param batchWindowMillis, the time (in milliseconds) a batch waits for
+	 *                           further requests after the first one
+	 * @param maximumBatchSize,  the number of requests after which a batch is
+	 *                           valued without waiting for the end of the window
+	 */
+	public PricingService(SimpleCrossCurrencyModelWithSingleMaturity prototypeModel, long batchWindowMillis,
+			int maximumBatchSize) {
+		super();
+		this.prototypeModel = prototypeModel;
+		this.batchWindowMillis = batchWindowMillis;
+		this.maximumBatchSize = maximumBatchSize;
+		this.executor = createExecutor();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "pricing-service-batching");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * It constructs the service, with a window of 5 milliseconds and no limit on
+	 * the size of the batches.
+	 *
+	 * @param prototypeModel, the model whose clones value the requests
+	 */
+	public PricingService(SimpleCrossCurrencyModelWithSingleMaturity prototypeModel) {
+		this(prototypeModel, 5, Integer.MAX_VALUE);
+	}
+
+	/*
+	 * Executors.newVirtualThreadPerTaskExecutor exists from Java 21 on, while the
+	 * project is compiled for Java 11: it is looked up at run time.
+	 */
+	private static ExecutorService createExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+				Thread thread = new Thread(runnable, "pricing-service-valuation");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * It returns the value at time 0 of the caplet, in the model given by the
+	 * prototype model with the data modified as given.
+	 *
+	 * @param modelData, the parameters of the model which differ from the ones of
+	 *                   the prototype
+	 * @param caplet,    the caplet
+	 * @return the future value. It completes exceptionally, for example, if the
+	 *         model data are not valid
+	 */
+	public CompletableFuture<Double> getValue(Map<String, Object> modelData, GeneralizedCaplet caplet) {
+		numberOfRequests.incrementAndGet();
+		CompletableFuture<Double> result = new CompletableFuture<>();
+		Map<String, Object> key = getBatchKey(modelData);
+
+		Batch fullBatch = null;
+		synchronized (pendingBatches) {
+			Batch batch = pendingBatches.get(key);
+			if (batch == null) {
+				batch = new Batch();
+				pendingBatches.put(key, batch);
+				scheduler.schedule(() -> flush(key), batchWindowMillis, TimeUnit.MILLISECONDS);
+			}
+			batch.caplets.add(caplet);
+			batch.results.add(result);
+			if (batch.caplets.size() >= maximumBatchSize) {
+				pendingBatches.remove(key);
+				fullBatch = batch;
+			}
+		}
+		if (fullBatch != null) {
+			submit(key, fullBatch);
+		}
+		return result;
+	}
+
+	/*
+	 * The numbers are converted to Double, so that, for example, 1 and 1.0 give
+	 * the same model and then the same batch.
+	 */
+	private static Map<String, Object> getBatchKey(Map<String, Object> modelData) {
+		Map<String, Object> key = new HashMap<>();
+		modelData.forEach(
+				(name, value) -> key.put(name, value instanceof Number ? ((Number) value).doubleValue() : value));
+		return Map.copyOf(key);
+	}
+
+	/**
+	 * It returns the value at time 0 of the caplet in the prototype model.
+	 *
+	 * @param caplet, the caplet
+	 * @return the future value
+	 */
+	public CompletableFuture<Double> getValue(GeneralizedCaplet caplet) {
+		return getValue(Map.of(), caplet);
+	}
+
+	private void flush(Map<String, Object> key) {
+		Batch batch;
+		synchronized (pendingBatches) {
+			batch = pendingBatches.remove(key);
+		}
+		// the batch may have been submitted already because it was full
+		if (batch != null) {
+			submit(key, batch);
+		}
+	}
+
+	private void submit(Map<String, Object> modelData, Batch batch) {
+		numberOfBatches.incrementAndGet();
+		executor.execute(() -> value(modelData, batch));
+	}
+
+	private void value(Map<String, Object> modelData, Batch batch) {
+		try {
+			SimpleCrossCurrencyModelWithSingleMaturity model = prototypeModel.getCloneWithModifiedData(modelData);
+			double[] values = new CrossCurrencyPortfolio(batch.caplets).getValues(0.0, model);
+			for (int requestIndex = 0; requestIndex < values.length; requestIndex++) {
+				batch.results.get(requestIndex).complete(values[requestIndex]);
+			}
+		} catch (CalculationException | RuntimeException e) {
+			batch.results.forEach(result -> result.completeExceptionally(e));
+		}
+	}
+
+	/**
+	 * It starts an HTTP endpoint on the loopback interface. A request
+	 * <code>GET /value?currency=1&amp;isQuanto=false&amp;fixingTime=1.0&amp;periodStart=1.0&amp;periodEnd=2.0&amp;paymentTime=2.0&amp;strike=0.02</code>
+	 * returns the value of the caplet as plain text. Further parameters of the
+	 * query are the model data, for example <code>volatilityFXForward=0.2</code>.
+	 *
+	 * @param port, the port, 0 for any free port
+	 * @return the port of the endpoint
+	 * @throws IOException if the server cannot be started
+	 */
+	public synchronized int startHttpEndpoint(int port) throws IOException {
+		if (httpServer != null) {
+			throw new IllegalStateException("HTTP endpoint already started.");
+		}
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		httpServer.createContext("/value", this::handle);
+		// the default executor: a single thread, which only parses the requests
+		httpServer.setExecutor(null);
+		httpServer.start();
+		return httpServer.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) {
+		try {
+			Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			GeneralizedCaplet caplet = new GeneralizedCaplet(Integer.parseInt(query.remove("currency")),
+					Boolean.parseBoolean(query.remove("isQuanto")), Double.parseDouble(query.remove("fixingTime")),
+					Double.parseDouble(query.remove("periodStart")), Double.parseDouble(query.remove("periodEnd")),
+					Double.parseDouble(query.remove("paymentTime")), Double.parseDouble(query.remove("strike")));
+
+			Map<String, Object> modelData = new HashMap<>();
+			query.forEach((name, value) -> modelData.put(name, Double.valueOf(value)));
+
+			// the response is sent by the thread completing the valuation
+			getValue(modelData, caplet).whenComplete((value, exception) -> {
+				if (exception == null) {
+					respond(exchange, 200, Double.toString(value));
+				} else {
+					Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+					respond(exchange, cause instanceof IllegalArgumentException ? 400 : 500,
+							"Valuation failed: " + cause.getMessage());
+				}
+			});
+		} catch (NullPointerException | IllegalArgumentException e) {
+			// a missing or malformed parameter
+			respond(exchange, 400, "Invalid request: " + e.getMessage());
+		} catch (RuntimeException e) {
+			respond(exchange, 500, "Request failed: " + e.getMessage());
+		}
+	}
+
+	/*
+	 * It sends the response and closes the exchange in any case: an exchange left
+	 * open would keep the client waiting.
+	 */
+	private static void respond(HttpExchange exchange, int status, String response) {
+		try {
+			byte[] body = response.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream outputStream = exchange.getResponseBody()) {
+				outputStream.write(body);
+			}
+		} catch (IOException e) {
+			// the client has gone: there is nobody to tell
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null) {
+			return parameters;
+		}
+		for (String parameter : query.split("&")) {
+			int separatorIndex = parameter.indexOf('=');
+			if (separatorIndex > 0) {
+				parameters.put(URLDecoder.decode(parameter.substring(0, separatorIndex), StandardCharsets.UTF_8),
+						URLDecoder.decode(parameter.substring(separatorIndex + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * It values the pending batches, stops the HTTP endpoint and waits for the
+	 * valuations to finish.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (httpServer != null) {
+				httpServer.stop(0);
+				httpServer = null;
+			}
+		}
+		List<Map<String, Object>> keys;
+		synchronized (pendingBatches) {
+			keys = new ArrayList<>(pendingBatches.keySet());
+		}
+		keys.forEach(this::flush);
+		scheduler.shutdownNow();
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the number of requests received so far
+	 */
+	public long getNumberOfRequests() {
+		return numberOfRequests.get();
+	}
+
+	/**
+	 * @return the number of batches valued so far, i.e., of simulations
+	 */
+	public long getNumberOfBatches() {
+		return numberOfBatches.get();
+	}
+
+	public SimpleCrossCurrencyModelWithSingleMaturity getPrototypeModel() {
+		return prototypeModel;
+	}
+}
@@ -0,0 +1,71 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+
+/**
+ * This class gives the blocks of paths of a valuation: clones of a prototype
+ * model whose Brownian motion has a modified seed. The seeds are derived from a
+ * master seed in a sequential way, so the block with a given index is always
+ * the same, whatever the order in which the blocks are requested. They are
+ * only derived when the blocks are requested: a large maximum number of blocks
+ * does not allocate anything.
+ */
+class ReseededModels {
+
+	private final SimpleCrossCurrencyModelWithSingleMaturity prototypeModel;
+	private final int numberOfModels;
+
+	private final SplittableRandom random;
+	private int[] seeds = new int[0];
+	private int numberOfSeeds;
+
+	ReseededModels(SimpleCrossCurrencyModelWithSingleMaturity prototypeModel, int numberOfModels, long seed) {
+		if (numberOfModels < 1) {
+			throw new IllegalArgumentException("The number of models has to be positive.");
+		}
+		this.prototypeModel = prototypeModel;
+		this.numberOfModels = numberOfModels;
+		this.random = new SplittableRandom(seed);
+	}
+
+	SimpleCrossCurrencyModelWithSingleMaturity getModel(int modelIndex) {
+		BrownianMotion brownianMotion = prototypeModel.getBrownianMotion().getCloneWithModifiedSeed(getSeed(modelIndex));
+		try {
+			return prototypeModel.getCloneWithModifiedData(Map.of("brownianMotion", brownianMotion));
+		} catch (CalculationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * The seeds are drawn in the order of the index, whatever the order of the
+	 * requests, so that a block does not depend on the ones requested before.
+	 */
+	private synchronized int getSeed(int modelIndex) {
+		if (modelIndex < 0 || modelIndex >= numberOfModels) {
+			throw new IndexOutOfBoundsException("There is no model with index " + modelIndex + ".");
+		}
+		if (modelIndex >= seeds.length) {
+			int length = (int) Math.min(numberOfModels, Math.max(modelIndex + 1L, 2L * seeds.length));
+			seeds = Arrays.copyOf(seeds, length);
+		}
+		while (numberOfSeeds <= modelIndex) {
+			seeds[numberOfSeeds++] = random.split().nextInt();
+		}
+		return seeds[modelIndex];
+	}
+
+	int getNumberOfModels() {
+		return numberOfModels;
+	}
+
+	SimpleCrossCurrencyModelWithSingleMaturity getPrototypeModel() {
+		return prototypeModel;
+	}
+}
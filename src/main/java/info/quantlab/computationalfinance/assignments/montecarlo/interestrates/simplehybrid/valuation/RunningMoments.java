@@ -0,0 +1,169 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class keeps the number of samples, the mean and the central sums of
+ * order 2, 3 and 4 of a stream of samples, without storing the samples. The
+ * moments of two sets of samples are merged with the formulas by Chan, Golub
+ * and LeVeque (extended to order 3 and 4 by Pébay), which are numerically
+ * stable also for a large number of samples.
+ *
+ * The merge is not commutative in floating point arithmetic: for reproducible
+ * results, the blocks of samples have to be merged always in the same order.
+ */
+public class RunningMoments {
+
+	private long numberOfSamples;
+	private double mean;
+	// the sums of (x_i - mean)^k, k = 2, 3, 4
+	private double centralSum2;
+	private double centralSum3;
+	private double centralSum4;
+
+	/**
+	 * It constructs an object with no samples.
+	 */
+	public RunningMoments() {
+		super();
+	}
+
+	private RunningMoments(long numberOfSamples, double mean, double centralSum2, double centralSum3,
+			double centralSum4) {
+		super();
+		this.numberOfSamples = numberOfSamples;
+		this.mean = mean;
+		this.centralSum2 = centralSum2;
+		this.centralSum3 = centralSum3;
+		this.centralSum4 = centralSum4;
+	}
+
+	/**
+	 * It returns the moments of the realizations of a random variable. A
+	 * deterministic random variable counts as the given number of equal samples.
+	 *
+	 * @param randomVariable, the random variable
+	 * @param numberOfPaths,  the number of paths (used if the random variable is
+	 *                        deterministic)
+	 * @return the moments
+	 */
+	public static RunningMoments of(RandomVariable randomVariable, int numberOfPaths) {
+		if (randomVariable.isDeterministic()) {
+			return new RunningMoments(numberOfPaths, randomVariable.get(0), 0.0, 0.0, 0.0);
+		}
+
+		int size = randomVariable.size();
+		double mean = randomVariable.getAverage();
+
+		double centralSum2 = 0.0;
+		double centralSum3 = 0.0;
+		double centralSum4 = 0.0;
+		for (int pathIndex = 0; pathIndex < size; pathIndex++) {
+			double deviation = randomVariable.get(pathIndex) - mean;
+			double deviationSquared = deviation * deviation;
+			centralSum2 += deviationSquared;
+			centralSum3 += deviationSquared * deviation;
+			centralSum4 += deviationSquared * deviationSquared;
+		}
+		return new RunningMoments(size, mean, centralSum2, centralSum3, centralSum4);
+	}
+
+	/**
+	 * It adds a sample.
+	 *
+	 * @param value, the sample
+	 */
+	public void add(double value) {
+		add(new RunningMoments(1, value, 0.0, 0.0, 0.0));
+	}
+
+	/**
+	 * It adds the samples whose moments are given.
+	 *
+	 * @param other, the moments of the samples to add
+	 */
+	public void add(RunningMoments other) {
+		if (other.numberOfSamples == 0) {
+			return;
+		}
+		if (numberOfSamples == 0) {
+			numberOfSamples = other.numberOfSamples;
+			mean = other.mean;
+			centralSum2 = other.centralSum2;
+			centralSum3 = other.centralSum3;
+			centralSum4 = other.centralSum4;
+			return;
+		}
+
+		double n1 = numberOfSamples;
+		double n2 = other.numberOfSamples;
+		double n = n1 + n2;
+		double delta = other.mean - mean;
+		double deltaOverN = delta / n;
+		double deltaOverNSquared = deltaOverN * deltaOverN;
+
+		double newCentralSum4 = centralSum4 + other.centralSum4
+				+ delta * deltaOverN * deltaOverNSquared * n1 * n2 * (n1 * n1 - n1 * n2 + n2 * n2)
+				+ 6.0 * deltaOverNSquared * (n1 * n1 * other.centralSum2 + n2 * n2 * centralSum2)
+				+ 4.0 * deltaOverN * (n1 * other.centralSum3 - n2 * centralSum3);
+		double newCentralSum3 = centralSum3 + other.centralSum3
+				+ delta * deltaOverNSquared * n1 * n2 * (n1 - n2)
+				+ 3.0 * deltaOverN * (n1 * other.centralSum2 - n2 * centralSum2);
+		double newCentralSum2 = centralSum2 + other.centralSum2 + delta * deltaOverN * n1 * n2;
+
+		numberOfSamples += other.numberOfSamples;
+		mean += deltaOverN * n2;
+		centralSum2 = newCentralSum2;
+		centralSum3 = newCentralSum3;
+		centralSum4 = newCentralSum4;
+	}
+
+	public long getNumberOfSamples() {
+		return numberOfSamples;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return the (biased) sample variance, as RandomVariable.getVariance()
+	 */
+	public double getVariance() {
+		return numberOfSamples > 0 ? centralSum2 / numberOfSamples : 0.0;
+	}
+
+	/**
+	 * @return the standard error of the mean
+	 */
+	public double getStandardError() {
+		return numberOfSamples > 0 ? Math.sqrt(getVariance() / numberOfSamples) : 0.0;
+	}
+
+	/**
+	 * @return the skewness, 0 if the variance is 0
+	 */
+	public double getSkewness() {
+		return centralSum2 > 0 ? Math.sqrt(numberOfSamples) * centralSum3 / Math.pow(centralSum2, 1.5) : 0.0;
+	}
+
+	/**
+	 * @return the excess kurtosis, 0 if the variance is 0
+	 */
+	public double getExcessKurtosis() {
+		return centralSum2 > 0 ? numberOfSamples * centralSum4 / (centralSum2 * centralSum2) - 3.0 : 0.0;
+	}
+
+	/**
+	 * @return the result of the valuation given by these moments
+	 */
+	public MonteCarloValuationResult getValuationResult() {
+		return new MonteCarloValuationResult(getMean(), getStandardError(), getNumberOfSamples());
+	}
+
+	@Override
+	public String toString() {
+		return "RunningMoments [numberOfSamples=" + numberOfSamples + ", mean=" + mean + ", variance=" + getVariance()
+				+ "]";
+	}
+}
@@ -0,0 +1,144 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyPortfolio;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyProduct;
+import net.finmath.exception.CalculationException;
+
+/**
+ * This class provides the revaluation of a book of products under many market
+ * scenarios, with common random numbers.
+ *
+ * A scenario gives new values for some of the parameters of a base model (with
+ * the names of
+ * {@link SimpleCrossCurrencyModelWithSingleMaturity#getCloneWithModifiedData(Map)}).
+ * The model of every scenario is a clone of the base model, so it uses the same
+ * Brownian increments, which are generated only once. Since the log-processes
+ * are affine in the Brownian motion, with the exact scheme the clone only maps
+ * these increments to its own states, and only for the components whose
+ * coefficients are changed by the scenario: for example, a shift of the FX
+ * spot only gives a new forward FX process. The scenarios are valued in
+ * parallel, and the results do not depend on the number of threads.
+ */
+public class ScenarioRevaluationEngine {
+
+	private final SimpleCrossCurrencyModelWithSingleMaturity baseModel;
+	private final CrossCurrencyPortfolio portfolio;
+	private final int numberOfThreads;
+
+	private double[] baseValues;
+
+	/**
+	 * It constructs an object for the revaluation of the products.
+	 *
+	 * @param baseModel,       the model of the current market
+	 * @param products,        the products of the book
+	 * @param numberOfThreads, the number of threads valuing the scenarios
+	 */
+	public ScenarioRevaluationEngine(SimpleCrossCurrencyModelWithSingleMaturity baseModel,
+			List<? extends CrossCurrencyProduct> products, int numberOfThreads) {
+		super();
+		this.baseModel = baseModel;
+		this.portfolio = new CrossCurrencyPortfolio(products);
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * It constructs an object for the revaluation of the products, using as many
+	 * threads as the available processors.
+	 *
+	 * @param baseModel, the model of the current market
+	 * @param products,  the products of the book
+	 */
+	public ScenarioRevaluationEngine(SimpleCrossCurrencyModelWithSingleMaturity baseModel,
+			List<? extends CrossCurrencyProduct> products) {
+		this(baseModel, products, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * It returns the values at time 0 of the products in the base model. Their
+	 * computation also generates the Brownian increments shared by the scenarios.
+	 *
+	 * @return the values, in the order of the products
+	 */
+	public synchronized double[] getBaseValues() {
+		if (baseValues == null) {
+			baseValues = portfolio.getValues(0.0, baseModel);
+		}
+		return baseValues.clone();
+	}
+
+	/**
+	 * It returns the profit and loss of every product in every scenario, i.e., the
+	 * value in the model of the scenario minus the value in the base model. Both
+	 * values are computed on the same paths.
+	 *
+	 * @param parameterNames, the names of the parameters modified by the
+	 *                        scenarios
+	 * @param scenarios,      the scenario matrix: the row i gives the values of
+	 *                        the parameters in the scenario i
+	 * @return the matrix of profits and losses, one row per scenario and one
+	 *         column per product
+	 */
+	public double[][] getProfitAndLoss(String[] parameterNames, double[][] scenarios) {
+		for (double[] scenario : scenarios) {
+			if (scenario.length != parameterNames.length) {
+				throw new IllegalArgumentException("Number of parameters and of values in a scenario differ.");
+			}
+		}
+
+		// here the base model is simulated: the scenarios only read its Brownian increments
+		double[] values = getBaseValues();
+
+		ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+		try {
+			return pool.submit(() -> IntStream.range(0, scenarios.length).parallel()
+					.mapToObj(scenarioIndex -> getProfitAndLoss(parameterNames, scenarios[scenarioIndex], values))
+					.toArray(double[][]::new)).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			// for example an IllegalArgumentException for an unknown parameter
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private double[] getProfitAndLoss(String[] parameterNames, double[] scenario, double[] baseValues) {
+		Map<String, Object> dataModified = new HashMap<>();
+		for (int parameterIndex = 0; parameterIndex < parameterNames.length; parameterIndex++) {
+			dataModified.put(parameterNames[parameterIndex], scenario[parameterIndex]);
+		}
+
+		double[] profitAndLoss;
+		try {
+			profitAndLoss = portfolio.getValues(0.0, baseModel.getCloneWithModifiedData(dataModified));
+		} catch (CalculationException e) {
+			throw new RuntimeException(e);
+		}
+		for (int productIndex = 0; productIndex < profitAndLoss.length; productIndex++) {
+			profitAndLoss[productIndex] -= baseValues[productIndex];
+		}
+		return profitAndLoss;
+	}
+
+	public SimpleCrossCurrencyModelWithSingleMaturity getBaseModel() {
+		return baseModel;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+}
@@ -0,0 +1,121 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import java.util.Map;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyProduct;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariableFromArrayFactory;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class checks if storing the simulated values in single precision is
+ * acceptable for the valuation of a product: the product is valued on the
+ * model with double precision and on its clone with single precision, driven
+ * by the same Brownian increments. The difference of the two values is only
+ * due to the rounding, and has to be small compared to the Monte-Carlo
+ * standard error, which is anyway there.
+ */
+public class SinglePrecisionErrorBudget {
+
+	/**
+	 * The comparison of the values of a product in double and single precision.
+	 */
+	public static class PrecisionComparison {
+
+		private final double doublePrecisionValue;
+		private final double singlePrecisionValue;
+		private final double standardError;
+
+		private PrecisionComparison(double doublePrecisionValue, double singlePrecisionValue, double standardError) {
+			this.doublePrecisionValue = doublePrecisionValue;
+			this.singlePrecisionValue = singlePrecisionValue;
+			this.standardError = standardError;
+		}
+
+		public double getDoublePrecisionValue() {
+			return doublePrecisionValue;
+		}
+
+		public double getSinglePrecisionValue() {
+			return singlePrecisionValue;
+		}
+
+		/**
+		 * @return the Monte-Carlo standard error of the value in double precision
+		 */
+		public double getStandardError() {
+			return standardError;
+		}
+
+		/**
+		 * @return the absolute value of the difference between the two values,
+		 *         divided by the standard error
+		 */
+		public double getErrorRatio() {
+			double difference = Math.abs(singlePrecisionValue - doublePrecisionValue);
+			return standardError > 0 ? difference / standardError
+					: (difference == 0 ? 0.0 : Double.POSITIVE_INFINITY);
+		}
+
+		@Override
+		public String toString() {
+			return "PrecisionComparison [doublePrecisionValue=" + doublePrecisionValue + ", singlePrecisionValue="
+					+ singlePrecisionValue + ", standardError=" + standardError + ", errorRatio=" + getErrorRatio()
+					+ "]";
+		}
+	}
+
+	private final SimpleCrossCurrencyModelWithSingleMaturity doublePrecisionModel;
+	private final SimpleCrossCurrencyModelWithSingleMaturity singlePrecisionModel;
+	private final double maximumErrorRatio;
+
+	/**
+	 * It constructs an object to compare the valuation in double and single
+	 * precision.
+	 *
+	 * @param model,             the model, with double precision
+	 * @param maximumErrorRatio, the maximum accepted ratio between the difference
+	 *                           of the values and the standard error
+	 */
+	public SinglePrecisionErrorBudget(SimpleCrossCurrencyModelWithSingleMaturity model, double maximumErrorRatio) {
+		super();
+		this.doublePrecisionModel = model;
+		this.maximumErrorRatio = maximumErrorRatio;
+		try {
+			this.singlePrecisionModel = model.getCloneWithModifiedData(
+					Map.of("randomVariableFactory", new RandomVariableFromArrayFactory(false)));
+		} catch (CalculationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * It values the product in double and single precision.
+	 *
+	 * @param evaluationTime, the evaluation time
+	 * @param product,        the product
+	 * @return the comparison of the two values
+	 */
+	public PrecisionComparison getComparison(double evaluationTime, CrossCurrencyProduct product) {
+		RandomVariable doublePrecisionValue = product.getValue(evaluationTime, doublePrecisionModel);
+		RandomVariable singlePrecisionValue = product.getValue(evaluationTime, singlePrecisionModel);
+
+		return new PrecisionComparison(doublePrecisionValue.getAverage(), singlePrecisionValue.getAverage(),
+				doublePrecisionValue.getStandardError());
+	}
+
+	/**
+	 * @param evaluationTime, the evaluation time
+	 * @param product,        the product
+	 * @return true if the difference between the value in single and double
+	 *         precision is within the budget
+	 */
+	public boolean isWithinBudget(double evaluationTime, CrossCurrencyProduct product) {
+		return getComparison(evaluationTime, product).getErrorRatio() <= maximumErrorRatio;
+	}
+
+	public SimpleCrossCurrencyModelWithSingleMaturity getSinglePrecisionModel() {
+		return singlePrecisionModel;
+	}
+}
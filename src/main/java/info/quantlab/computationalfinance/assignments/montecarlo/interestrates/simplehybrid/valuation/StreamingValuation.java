@@ -0,0 +1,101 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyProduct;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+
+/**
+ * This class provides the Monte-Carlo valuation of the registered products for
+ * a number of paths that does not fit into memory. The paths are generated in
+ * blocks, one after the other: every block is a clone of a prototype model with
+ * a modified seed (the number of paths of a block is the one of the prototype).
+ * The products are valued on a block, and only the running moments of their
+ * values are kept before going to the next block. The memory needed is then
+ * the one of a single block, whatever the total number of paths.
+ *
+ * The blocks are the same as the chunks of a {@link ParallelChunkedValuation}
+ * with the same prototype model and seed, so the two valuations give the same
+ * results.
+ */
+public class StreamingValuation {
+
+	private final ReseededModels blockModels;
+	private final List<CrossCurrencyProduct> products = new ArrayList<>();
+
+	/**
+	 * It constructs an object for the streaming valuation of products.
+	 *
+	 * @param prototypeModel, the model whose clones (with different seeds) are the
+	 *                        blocks. Its Brownian motion gives the number of paths
+	 *                        per block
+	 * @param numberOfBlocks, the number of blocks
+	 * @param seed,           the master seed from which the seeds of the blocks
+	 *                        are derived
+	 */
+	public StreamingValuation(SimpleCrossCurrencyModelWithSingleMaturity prototypeModel, int numberOfBlocks,
+			long seed) {
+		super();
+		this.blockModels = new ReseededModels(prototypeModel, numberOfBlocks, seed);
+	}
+
+	/**
+	 * It registers a product to value.
+	 *
+	 * @param product, the product
+	 * @return this object
+	 */
+	public StreamingValuation addProduct(CrossCurrencyProduct product) {
+		products.add(product);
+		return this;
+	}
+
+	/**
+	 * It returns the moments (mean, variance, skewness and kurtosis) of the
+	 * values of the registered products over all the paths.
+	 *
+	 * @param evaluationTime, the evaluation time
+	 * @return the moments, in the order in which the products were registered
+	 */
+	public List<RunningMoments> getMoments(double evaluationTime) {
+		List<RunningMoments> moments = new ArrayList<>();
+		for (int productIndex = 0; productIndex < products.size(); productIndex++) {
+			moments.add(new RunningMoments());
+		}
+
+		for (int blockIndex = 0; blockIndex < blockModels.getNumberOfModels(); blockIndex++) {
+			// the model of the block is not referenced anymore after the iteration
+			SimpleCrossCurrencyModelWithSingleMaturity model = blockModels.getModel(blockIndex);
+			for (int productIndex = 0; productIndex < products.size(); productIndex++) {
+				CrossCurrencyProduct product = products.get(productIndex);
+				moments.get(productIndex).add(SimulationMetrics.measureValuation(product.getClass().getSimpleName(),
+						() -> RunningMoments.of(product.getValue(evaluationTime, model), model.getNumberOfPaths())));
+			}
+		}
+		return moments;
+	}
+
+	/**
+	 * It returns the values of the registered products.
+	 *
+	 * @param evaluationTime, the evaluation time
+	 * @return the results, in the order in which the products were registered
+	 */
+	public List<MonteCarloValuationResult> getValues(double evaluationTime) {
+		List<MonteCarloValuationResult> results = new ArrayList<>();
+		for (RunningMoments moments : getMoments(evaluationTime)) {
+			results.add(moments.getValuationResult());
+		}
+		return results;
+	}
+
+	public List<CrossCurrencyProduct> getProducts() {
+		return new ArrayList<>(products);
+	}
+
+	public int getNumberOfBlocks() {
+		return blockModels.getNumberOfModels();
+	}
+}
@@ -0,0 +1,126 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.metrics;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A listener summing up the metrics received, which can be read at any time,
+ * for example to be exported to a collector. It can be used by several threads
+ * at the same time.
+ */
+public class AggregatingSimulationMetricsListener implements SimulationMetricsListener {
+
+	private final Map<Phase, LongAdder> phaseDurations = new EnumMap<>(Phase.class);
+	private final Map<Phase, LongAdder> phaseCounts = new EnumMap<>(Phase.class);
+
+	private final LongAdder numberOfDriftRequests = new LongAdder();
+	private final LongAdder numberOfFactorLoadingRequests = new LongAdder();
+	private final LongAdder numberOfRandomVariableAllocations = new LongAdder();
+	private final LongAdder numberOfValuations = new LongAdder();
+	private final LongAdder valuationAllocatedBytes = new LongAdder();
+
+	public AggregatingSimulationMetricsListener() {
+		super();
+		for (Phase phase : Phase.values()) {
+			phaseDurations.put(phase, new LongAdder());
+			phaseCounts.put(phase, new LongAdder());
+		}
+	}
+
+	@Override
+	public void onPhaseCompleted(Phase phase, long durationNanos) {
+		phaseDurations.get(phase).add(durationNanos);
+		phaseCounts.get(phase).increment();
+	}
+
+	@Override
+	public void onDriftRequest() {
+		numberOfDriftRequests.increment();
+	}
+
+	@Override
+	public void onFactorLoadingRequest() {
+		numberOfFactorLoadingRequests.increment();
+	}
+
+	@Override
+	public void onRandomVariableAllocation(int numberOfRandomVariables) {
+		numberOfRandomVariableAllocations.add(numberOfRandomVariables);
+	}
+
+	@Override
+	public void onValuationCompleted(String name, long durationNanos, long allocatedBytes) {
+		numberOfValuations.increment();
+		if (allocatedBytes > 0) {
+			valuationAllocatedBytes.add(allocatedBytes);
+		}
+	}
+
+	/**
+	 * @param phase, the phase
+	 * @return the total duration of the phase in nanoseconds
+	 */
+	public long getPhaseDuration(Phase phase) {
+		return phaseDurations.get(phase).sum();
+	}
+
+	/**
+	 * @param phase, the phase
+	 * @return the number of times the phase has been completed
+	 */
+	public long getPhaseCount(Phase phase) {
+		return phaseCounts.get(phase).sum();
+	}
+
+	public long getNumberOfDriftRequests() {
+		return numberOfDriftRequests.sum();
+	}
+
+	public long getNumberOfFactorLoadingRequests() {
+		return numberOfFactorLoadingRequests.sum();
+	}
+
+	public long getNumberOfRandomVariableAllocations() {
+		return numberOfRandomVariableAllocations.sum();
+	}
+
+	public long getNumberOfValuations() {
+		return numberOfValuations.sum();
+	}
+
+	public long getValuationAllocatedBytes() {
+		return valuationAllocatedBytes.sum();
+	}
+
+	/**
+	 * @return all the metrics, by name
+	 */
+	public Map<String, Long> getSnapshot() {
+		Map<String, Long> snapshot = new LinkedHashMap<>();
+		for (Phase phase : Phase.values()) {
+			snapshot.put("phase." + phase.name().toLowerCase() + ".nanos", getPhaseDuration(phase));
+			snapshot.put("phase." + phase.name().toLowerCase() + ".count", getPhaseCount(phase));
+		}
+		snapshot.put("drift.requests", getNumberOfDriftRequests());
+		snapshot.put("factorLoading.requests", getNumberOfFactorLoadingRequests());
+		snapshot.put("randomVariable.allocations", getNumberOfRandomVariableAllocations());
+		snapshot.put("valuation.count", getNumberOfValuations());
+		snapshot.put("valuation.allocatedBytes", getValuationAllocatedBytes());
+		return snapshot;
+	}
+
+	/**
+	 * It sets all the metrics to zero.
+	 */
+	public void reset() {
+		phaseDurations.values().forEach(LongAdder::reset);
+		phaseCounts.values().forEach(LongAdder::reset);
+		numberOfDriftRequests.reset();
+		numberOfFactorLoadingRequests.reset();
+		numberOfRandomVariableAllocations.reset();
+		numberOfValuations.reset();
+		valuationAllocatedBytes.reset();
+	}
+}
@@ -0,0 +1,113 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Supplier;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetricsListener.Phase;
+
+/**
+ * This class holds the listener to which the simulation and the valuation
+ * report their metrics. By default the listener does nothing: the only cost of
+ * the instrumentation is then a read of a volatile field and calls to empty
+ * methods, and the timers are not even started.
+ */
+public final class SimulationMetrics {
+
+	/**
+	 * The listener doing nothing.
+	 */
+	public static final SimulationMetricsListener NO_OP = new SimulationMetricsListener() {
+	};
+
+	private static volatile SimulationMetricsListener listener = NO_OP;
+
+	private SimulationMetrics() {
+	}
+
+	/**
+	 * It registers the listener receiving the metrics.
+	 *
+	 * @param newListener, the listener, null to disable the metrics
+	 */
+	public static void setListener(SimulationMetricsListener newListener) {
+		listener = newListener != null ? newListener : NO_OP;
+	}
+
+	public static SimulationMetricsListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @return true if a listener other than the no-op one is registered
+	 */
+	public static boolean isEnabled() {
+		return listener != NO_OP;
+	}
+
+	/**
+	 * It runs the calculation and, if the metrics are enabled, reports its
+	 * duration as a phase.
+	 *
+	 * @param <T>,         the type of the result
+	 * @param phase,       the phase
+	 * @param calculation, the calculation
+	 * @return the result of the calculation
+	 */
+	public static <T> T measurePhase(Phase phase, Supplier<T> calculation) {
+		SimulationMetricsListener currentListener = listener;
+		if (currentListener == NO_OP) {
+			return calculation.get();
+		}
+		long start = System.nanoTime();
+		T result = calculation.get();
+		currentListener.onPhaseCompleted(phase, System.nanoTime() - start);
+		return result;
+	}
+
+	/**
+	 * It runs a valuation and, if the metrics are enabled, reports its duration
+	 * and the bytes allocated by the current thread during it.
+	 *
+	 * @param <T>,       the type of the result
+	 * @param name,      the name of what is valued
+	 * @param valuation, the valuation
+	 * @return the result of the valuation
+	 */
+	public static <T> T measureValuation(String name, Supplier<T> valuation) {
+		SimulationMetricsListener currentListener = listener;
+		if (currentListener == NO_OP) {
+			return valuation.get();
+		}
+		long allocatedBytesAtStart = getAllocatedBytesOfCurrentThread();
+		long start = System.nanoTime();
+
+		T result = valuation.get();
+
+		long duration = System.nanoTime() - start;
+		long allocatedBytesAtEnd = getAllocatedBytesOfCurrentThread();
+		long allocatedBytes = allocatedBytesAtStart >= 0 && allocatedBytesAtEnd >= 0
+				? allocatedBytesAtEnd - allocatedBytesAtStart
+				: -1;
+
+		currentListener.onPhaseCompleted(Phase.VALUATION, duration);
+		currentListener.onValuationCompleted(name, duration, allocatedBytes);
+		return result;
+	}
+
+	/**
+	 * @return the bytes allocated so far by the current thread, -1 if the JVM
+	 *         does not support the measurement
+	 */
+	public static long getAllocatedBytesOfCurrentThread() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+			if (allocationMXBean.isThreadAllocatedMemorySupported()
+					&& allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+				return allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
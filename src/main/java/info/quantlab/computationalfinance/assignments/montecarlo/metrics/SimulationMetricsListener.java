@@ -0,0 +1,77 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.metrics;
+
+/**
+ * A listener receiving the timings and the counters of the simulation and of
+ * the valuation. All the methods do nothing by default, so an implementation
+ * only has to override the ones it is interested in. The methods may be called
+ * by several threads at the same time, and are called in the hot paths of the
+ * simulation: they should return quickly.
+ *
+ * The listener is registered by {@link SimulationMetrics#setListener}.
+ */
+public interface SimulationMetricsListener {
+
+	/**
+	 * The phases whose duration is measured.
+	 */
+	enum Phase {
+		/**
+		 * The generation of the Brownian increments.
+		 */
+		BROWNIAN_MOTION_GENERATION,
+		/**
+		 * The simulation of the processes, i.e., the steps of the scheme, state space
+		 * transform included.
+		 */
+		SIMULATION,
+		/**
+		 * The state space transform of a simulated value (for example the exponential
+		 * of a log-normal model).
+		 */
+		STATE_SPACE_TRANSFORM,
+		/**
+		 * The valuation of a product or a portfolio on simulated paths.
+		 */
+		VALUATION
+	}
+
+	/**
+	 * Called when a phase is completed.
+	 *
+	 * @param phase,         the phase
+	 * @param durationNanos, the duration of the phase in nanoseconds
+	 */
+	default void onPhaseCompleted(Phase phase, long durationNanos) {
+	}
+
+	/**
+	 * Called when the drift is requested to a process model.
+	 */
+	default void onDriftRequest() {
+	}
+
+	/**
+	 * Called when the factor loadings are requested to a process model.
+	 */
+	default void onFactorLoadingRequest() {
+	}
+
+	/**
+	 * Called when random variables are created by the simulation.
+	 *
+	 * @param numberOfRandomVariables, the number of random variables created
+	 */
+	default void onRandomVariableAllocation(int numberOfRandomVariables) {
+	}
+
+	/**
+	 * Called when a valuation is completed.
+	 *
+	 * @param name,           the name of what has been valued
+	 * @param durationNanos,  the duration of the valuation in nanoseconds
+	 * @param allocatedBytes, the bytes allocated by the thread during the
+	 *                        valuation, -1 if not supported by the JVM
+	 */
+	default void onValuationCompleted(String name, long durationNanos, long allocatedBytes) {
+	}
+}
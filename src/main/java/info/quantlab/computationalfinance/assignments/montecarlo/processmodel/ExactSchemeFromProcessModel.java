@@ -0,0 +1,288 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.processmodel;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetricsListener.Phase;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.model.ProcessModel;
+import net.finmath.montecarlo.process.MonteCarloProcess;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * This class provides the simulation of a process model whose drift and factor
+ * loadings are constant in the state space (as it is the case for the
+ * logarithm of the processes of a <code>LognormalProcessModel</code>). In this
+ * case the Euler step is not an approximation: the state at the next time is
+ * given exactly by the drift times the time step plus the factor loadings
+ * times the Brownian increments. For this reason, the process is only
+ * simulated at the times of the time discretization of the Brownian motion
+ * given, which should only contain the times at which the model is actually
+ * evaluated (for example 0, T_1, T_2).
+ *
+ * Note: the coefficients are taken at time index 0 and then used for all the
+ * time steps. Using this class for a model with time dependent or state
+ * dependent coefficients gives wrong results.
+ *
+ * A clone with a modified model uses the same Brownian motion, and shares with
+ * the original process the simulation of the components whose initial value,
+ * drift and factor loadings did not change.
+ *
+ * The components are simulated independently of each other, each one when one
+ * of its values is requested for the first time: a product only depending on
+ * some of the components (for example a domestic caplet, depending on the
+ * domestic Libor) does not pay for the simulation of the others. The
+ * dependencies between the components are the ones of the requests: for
+ * example, the numeraire at T_1 of a cross currency model asks only for the
+ * domestic Libor, and the FX rate at T_1 for all the three components.
+ */
+public class ExactSchemeFromProcessModel implements MonteCarloProcess {
+
+	private final ProcessModel model;
+	private final BrownianMotion brownianMotion;
+
+	// the process sharing some components with this one (may be null)
+	private final ExactSchemeFromProcessModel parentProcess;
+	private final boolean[] isComponentShared;
+
+	// processValues.get(componentIndex)[timeIndex], null if not simulated yet
+	private final transient AtomicReferenceArray<RandomVariable[]> processValues;
+	private final transient Object[] componentLocks;
+
+	/**
+	 * It constructs an object for the exact simulation of a process model with
+	 * constant coefficients.
+	 *
+	 * @param model,          the model to simulate: its coefficients have to be
+	 *                        constant
+	 * @param brownianMotion, the Brownian motion driving the simulation: the
+	 *                        process is simulated exactly at the times of its
+	 *                        time discretization
+	 */
+	public ExactSchemeFromProcessModel(ProcessModel model, BrownianMotion brownianMotion) {
+		this(model, brownianMotion, null, new boolean[model.getNumberOfComponents()]);
+	}
+
+	private ExactSchemeFromProcessModel(ProcessModel model, BrownianMotion brownianMotion,
+			ExactSchemeFromProcessModel parentProcess, boolean[] isComponentShared) {
+		super();
+		this.model = model;
+		this.brownianMotion = brownianMotion;
+		this.parentProcess = parentProcess;
+		this.isComponentShared = isComponentShared;
+
+		int numberOfComponents = model.getNumberOfComponents();
+		processValues = new AtomicReferenceArray<>(numberOfComponents);
+		componentLocks = new Object[numberOfComponents];
+		for (int componentIndex = 0; componentIndex < numberOfComponents; componentIndex++) {
+			componentLocks[componentIndex] = new Object();
+		}
+	}
+
+	@Override
+	public RandomVariable getProcessValue(int timeIndex, int componentIndex) throws CalculationException {
+		RandomVariable[] componentValues = processValues.get(componentIndex);
+		if (componentValues == null) {
+			componentValues = getComponentValues(componentIndex);
+		}
+		return componentValues[timeIndex];
+	}
+
+	/*
+	 * Two threads may simulate different components at the same time, but a
+	 * component is simulated only once.
+	 */
+	private RandomVariable[] getComponentValues(int componentIndex) throws CalculationException {
+		synchronized (componentLocks[componentIndex]) {
+			RandomVariable[] componentValues = processValues.get(componentIndex);
+			if (componentValues == null) {
+				componentValues = isComponentShared[componentIndex] ? getSharedComponentValues(componentIndex)
+						: SimulationMetrics.measurePhase(Phase.SIMULATION, () -> simulateComponent(componentIndex));
+				processValues.set(componentIndex, componentValues);
+			}
+			return componentValues;
+		}
+	}
+
+	private RandomVariable[] getSharedComponentValues(int componentIndex) throws CalculationException {
+		RandomVariable[] componentValues = new RandomVariable[getTimeDiscretization().getNumberOfTimes()];
+		for (int timeIndex = 0; timeIndex < componentValues.length; timeIndex++) {
+			componentValues[timeIndex] = parentProcess.getProcessValue(timeIndex, componentIndex);
+		}
+		return componentValues;
+	}
+
+	private RandomVariable[] simulateComponent(int componentIndex) {
+		TimeDiscretization timeDiscretization = getTimeDiscretization();
+		int numberOfFactors = getNumberOfFactors();
+
+		// The state here is the one of the model (i.e., the logarithm for a log-normal model)
+		RandomVariable[] initialState = model.getInitialState(this);
+		RandomVariable state = initialState[componentIndex];
+
+		// The coefficients are constant: we get them once
+		RandomVariable drift = model.getDrift(this, 0, initialState, null)[componentIndex];
+		RandomVariable[] factorLoadings = model.getFactorLoading(this, 0, componentIndex, initialState);
+
+		RandomVariable[] componentValues = new RandomVariable[timeDiscretization.getNumberOfTimes()];
+		componentValues[0] = model.applyStateSpaceTransform(this, 0, componentIndex, state);
+
+		for (int timeIndex = 1; timeIndex < timeDiscretization.getNumberOfTimes(); timeIndex++) {
+			double timeStep = timeDiscretization.getTimeStep(timeIndex - 1);
+			RandomVariable increment = drift.mult(timeStep);
+			int numberOfFactorsUsed = 0;
+			for (int factorIndex = 0; factorIndex < numberOfFactors; factorIndex++) {
+				RandomVariable factorLoading = factorLoadings[factorIndex];
+				// sparse loadings (e.g., from a Cholesky factorization): zeros add nothing
+				if (factorLoading.isDeterministic() && factorLoading.get(0) == 0.0) {
+					continue;
+				}
+				increment = increment.addProduct(factorLoading,
+						brownianMotion.getBrownianIncrement(timeIndex - 1, factorIndex));
+				numberOfFactorsUsed++;
+			}
+			state = state.add(increment);
+			// the drift term, one random variable per factor used and the new state
+			SimulationMetrics.getListener().onRandomVariableAllocation(numberOfFactorsUsed + 2);
+			componentValues[timeIndex] = model.applyStateSpaceTransform(this, timeIndex, componentIndex, state);
+		}
+		return componentValues;
+	}
+
+	@Override
+	public RandomVariable getMonteCarloWeights(int timeIndex) throws CalculationException {
+		return brownianMotion.getRandomVariableForConstant(1.0 / getNumberOfPaths());
+	}
+
+	@Override
+	public int getNumberOfComponents() {
+		return model.getNumberOfComponents();
+	}
+
+	@Override
+	public TimeDiscretization getTimeDiscretization() {
+		return brownianMotion.getTimeDiscretization();
+	}
+
+	@Override
+	public double getTime(int timeIndex) {
+		return getTimeDiscretization().getTime(timeIndex);
+	}
+
+	@Override
+	public int getTimeIndex(double time) {
+		return getTimeDiscretization().getTimeIndex(time);
+	}
+
+	@Override
+	public int getNumberOfPaths() {
+		return brownianMotion.getNumberOfPaths();
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return brownianMotion.getNumberOfFactors();
+	}
+
+	public BrownianMotion getStochasticDriver() {
+		return brownianMotion;
+	}
+
+	public BrownianMotion getBrownianMotion() {
+		return brownianMotion;
+	}
+
+	@Override
+	public ProcessModel getModel() {
+		return model;
+	}
+
+	/**
+	 * It returns a process for the given model, driven by the same Brownian
+	 * motion. The components whose coefficients are the same in the two models
+	 * are not simulated again: their values are taken from this process.
+	 *
+	 * @param model, the new model
+	 * @return the process for the new model
+	 */
+	@Override
+	public ExactSchemeFromProcessModel getCloneWithModifiedModel(ProcessModel model) {
+		int numberOfComponents = model.getNumberOfComponents();
+		boolean[] isComponentShared = new boolean[numberOfComponents];
+		if (numberOfComponents == getNumberOfComponents() && model.getNumberOfFactors() == this.model.getNumberOfFactors()) {
+			ExactSchemeFromProcessModel process = new ExactSchemeFromProcessModel(model, brownianMotion);
+			RandomVariable[] initialState = this.model.getInitialState(this);
+			RandomVariable[] newInitialState = model.getInitialState(process);
+			RandomVariable[] drift = this.model.getDrift(this, 0, initialState, null);
+			RandomVariable[] newDrift = model.getDrift(process, 0, newInitialState, null);
+			for (int componentIndex = 0; componentIndex < numberOfComponents; componentIndex++) {
+				isComponentShared[componentIndex] = isEqual(initialState[componentIndex], newInitialState[componentIndex])
+						&& isEqual(drift[componentIndex], newDrift[componentIndex])
+						&& isEqual(this.model.getFactorLoading(this, 0, componentIndex, initialState),
+								model.getFactorLoading(process, 0, componentIndex, newInitialState));
+			}
+		}
+		return new ExactSchemeFromProcessModel(model, brownianMotion, this, isComponentShared);
+	}
+
+	/**
+	 * It returns a process for the model cloned with the modified data, driven by
+	 * the same Brownian motion. As for {@link #getCloneWithModifiedModel}, the
+	 * components whose coefficients are not changed are shared.
+	 *
+	 * @param dataModified, the data of the model to modify
+	 * @return the process for the modified model
+	 */
+	@Override
+	public ExactSchemeFromProcessModel getCloneWithModifiedData(Map<String, Object> dataModified) {
+		try {
+			return getCloneWithModifiedModel(model.getCloneWithModifiedData(dataModified));
+		} catch (CalculationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	// the coefficients are deterministic: we compare their values
+	private static boolean isEqual(RandomVariable value, RandomVariable otherValue) {
+		return value.isDeterministic() && otherValue.isDeterministic()
+				&& value.getAverage() == otherValue.getAverage();
+	}
+
+	private static boolean isEqual(RandomVariable[] values, RandomVariable[] otherValues) {
+		if (values.length != otherValues.length) {
+			return false;
+		}
+		for (int i = 0; i < values.length; i++) {
+			if (!isEqual(values[i], otherValues[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param componentIndex, the index of the component
+	 * @return true if the values of the component are taken from the process
+	 *         this one has been cloned from
+	 */
+	public boolean isComponentShared(int componentIndex) {
+		return isComponentShared[componentIndex];
+	}
+
+	/**
+	 * @param componentIndex, the index of the component
+	 * @return true if the values of the component have already been simulated (or
+	 *         taken from the process this one has been cloned from)
+	 */
+	public boolean isComponentSimulated(int componentIndex) {
+		return processValues.get(componentIndex) != null;
+	}
+
+	@Override
+	public ExactSchemeFromProcessModel clone() {
+		return new ExactSchemeFromProcessModel(model, brownianMotion);
+	}
+}
@@ -1,5 +1,7 @@
 package info.quantlab.computationalfinance.assignments.montecarlo.processmodel;
 
+import java.util.Map;
+
 import net.finmath.montecarlo.process.MonteCarloProcess;
 import net.finmath.stochastic.RandomVariable;
 
@@ -16,4 +18,6 @@ public interface LognormalProcessModel {
 	int getNumberOfFactors();
 
 	Double[] getFactorLoading(int timeIndex, int componentIndex);
+
+	LognormalProcessModel getCloneWithModifiedData(Map<String, Object> dataModified);
 }
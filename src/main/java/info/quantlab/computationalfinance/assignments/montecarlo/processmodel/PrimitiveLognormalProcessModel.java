@@ -0,0 +1,52 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.processmodel;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A <code>LognormalProcessModel</code> providing its coefficients as primitive
+ * <code>double[]</code>. The boxed methods of <code>LognormalProcessModel</code>
+ * are derived from the primitive ones, so an implementation only has to provide
+ * the latter.
+ *
+ * Use {@link ProcessModelFromPrimitiveLognormalProcessModel} to wrap it into a
+ * <code>ProcessModel</code> without boxing.
+ */
+public interface PrimitiveLognormalProcessModel extends LognormalProcessModel {
+
+	/**
+	 * @return the initial values X_{i,0}, i = 1,...,n
+	 */
+	double[] getInitialValuePrimitive();
+
+	/**
+	 * @param timeIndex, the time index
+	 * @return the drift parameters mu_i, i = 1,...,n
+	 */
+	double[] getDriftPrimitive(int timeIndex);
+
+	/**
+	 * @param timeIndex,      the time index
+	 * @param componentIndex, the index i of the component
+	 * @return the factor loadings lambda_{i,j}, j = 1,...,m
+	 */
+	double[] getFactorLoadingPrimitive(int timeIndex, int componentIndex);
+
+	@Override
+	default Double[] getInitialValue() {
+		return Arrays.stream(getInitialValuePrimitive()).boxed().toArray(Double[]::new);
+	}
+
+	@Override
+	default Double[] getDrift(int timeIndex) {
+		return Arrays.stream(getDriftPrimitive(timeIndex)).boxed().toArray(Double[]::new);
+	}
+
+	@Override
+	default Double[] getFactorLoading(int timeIndex, int componentIndex) {
+		return Arrays.stream(getFactorLoadingPrimitive(timeIndex, componentIndex)).boxed().toArray(Double[]::new);
+	}
+
+	@Override
+	PrimitiveLognormalProcessModel getCloneWithModifiedData(Map<String, Object> dataModified);
+}
@@ -0,0 +1,282 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.processmodel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.RandomVariableFactory;
+import net.finmath.montecarlo.model.ProcessModel;
+import net.finmath.montecarlo.process.MonteCarloProcess;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class provides the values of a process which has been simulated before
+ * and written to a file by
+ * {@link #write(MonteCarloProcess, TimeDiscretization, Path)}. The file is
+ * memory-mapped, so it is shared by all the processes of the machine reading
+ * it, and only the values which are requested are read from the disk.
+ *
+ * The file has a header (the dimensions and the times) followed by one column
+ * of numberOfPaths doubles for every component and time index, in this order.
+ * Only the times which are written are available: for a process simulated on a
+ * fine grid, these can be just the times needed by the model. The column of a
+ * value is copied from the mapped file into an array (with a single bulk copy)
+ * and then into a random variable of the factory of the model at the first
+ * request: the mapping avoids the simulation, not this copy.
+ */
+public class ProcessFromMappedFile implements MonteCarloProcess {
+
+	private static final int MAGIC_NUMBER = 0x58434350;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+	private final ProcessModel model;
+	private final RandomVariableFactory randomVariableFactory;
+	private final Path file;
+
+	private final int numberOfComponents;
+	private final int numberOfPaths;
+	private final int numberOfFactors;
+	private final TimeDiscretization timeDiscretization;
+
+	// the mapped columns, and the values already copied from them
+	private final MappedByteBuffer[][] columns;
+	private final RandomVariable[][] processValues;
+
+	/**
+	 * It constructs an object giving the values of the process written in the
+	 * file. The file is mapped, but no value is read yet.
+	 *
+	 * @param model,                 the model of the process (it gives, for
+	 *                               example, the numeraire)
+	 * @param randomVariableFactory, the factory of the random variables of the
+	 *                               model, used for the values read
+	 * @param file,                  the file written by
+	 *                               {@link #write(MonteCarloProcess, TimeDiscretization, Path)}
+	 * @throws IOException if the file cannot be read or has not the right format
+	 */
+	public ProcessFromMappedFile(ProcessModel model, RandomVariableFactory randomVariableFactory, Path file)
+			throws IOException {
+		super();
+		this.model = model;
+		this.randomVariableFactory = randomVariableFactory;
+		this.file = file;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt() != MAGIC_NUMBER || header.getInt() != VERSION) {
+				throw new IOException("Not a file of simulated paths: " + file);
+			}
+			numberOfComponents = header.getInt();
+			int numberOfTimes = header.getInt();
+			numberOfPaths = header.getInt();
+			numberOfFactors = header.getInt();
+
+			double[] times = new double[numberOfTimes];
+			channel.map(MapMode.READ_ONLY, HEADER_SIZE, (long) numberOfTimes * Double.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(times);
+			timeDiscretization = new TimeDiscretizationFromArray(times);
+
+			if (channel.size() != getColumnOffset(numberOfComponents, 0)) {
+				throw new IOException("Unexpected size of the file " + file);
+			}
+
+			// the mappings stay valid after the channel is closed
+			columns = new MappedByteBuffer[numberOfTimes][numberOfComponents];
+			for (int componentIndex = 0; componentIndex < numberOfComponents; componentIndex++) {
+				for (int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+					columns[timeIndex][componentIndex] = channel.map(MapMode.READ_ONLY,
+							getColumnOffset(componentIndex, timeIndex), (long) numberOfPaths * Double.BYTES);
+				}
+			}
+		}
+		processValues = new RandomVariable[timeDiscretization.getNumberOfTimes()][numberOfComponents];
+	}
+
+	/**
+	 * It writes the values of the process at the given times to the file. The
+	 * file is first written under a temporary name and then moved, so that a
+	 * process reading it never sees a partially written file.
+	 *
+	 * @param process, the process
+	 * @param times,   the times to write, which must be times of the process
+	 * @param file,    the file
+	 * @throws IOException          if the file cannot be written
+	 * @throws CalculationException if the simulation of the process fails
+	 */
+	public static void write(MonteCarloProcess process, TimeDiscretization times, Path file)
+			throws IOException, CalculationException {
+		int numberOfComponents = process.getNumberOfComponents();
+		int numberOfTimes = times.getNumberOfTimes();
+		int numberOfPaths = process.getNumberOfPaths();
+
+		int[] processTimeIndices = new int[numberOfTimes];
+		for (int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+			processTimeIndices[timeIndex] = process.getTimeIndex(times.getTime(timeIndex));
+			if (processTimeIndices[timeIndex] < 0) {
+				throw new IllegalArgumentException("Time not supported: " + times.getTime(timeIndex));
+			}
+		}
+
+		Path temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+				".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) numberOfTimes * Double.BYTES)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC_NUMBER).putInt(VERSION).putInt(numberOfComponents).putInt(numberOfTimes)
+						.putInt(numberOfPaths).putInt(process.getNumberOfFactors());
+				for (int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+					header.putDouble(times.getTime(timeIndex));
+				}
+
+				long columnsOffset = HEADER_SIZE + (long) numberOfTimes * Double.BYTES;
+				long columnSize = (long) numberOfPaths * Double.BYTES;
+				for (int componentIndex = 0; componentIndex < numberOfComponents; componentIndex++) {
+					for (int timeIndex = 0; timeIndex < numberOfTimes; timeIndex++) {
+						RandomVariable value = process.getProcessValue(processTimeIndices[timeIndex], componentIndex);
+						double[] realizations = new double[numberOfPaths];
+						if (value.isDeterministic()) {
+							Arrays.fill(realizations, value.get(0));
+						} else {
+							realizations = value.getRealizations();
+						}
+						long offset = columnsOffset + (componentIndex * (long) numberOfTimes + timeIndex) * columnSize;
+						channel.map(MapMode.READ_WRITE, offset, columnSize).order(ByteOrder.LITTLE_ENDIAN)
+								.asDoubleBuffer().put(realizations);
+					}
+				}
+				channel.force(true);
+			}
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private long getColumnOffset(int componentIndex, int timeIndex) {
+		long columnsOffset = HEADER_SIZE + (long) timeDiscretization.getNumberOfTimes() * Double.BYTES;
+		return columnsOffset + (componentIndex * (long) timeDiscretization.getNumberOfTimes() + timeIndex)
+				* numberOfPaths * Double.BYTES;
+	}
+
+	@Override
+	public synchronized RandomVariable getProcessValue(int timeIndex, int componentIndex) {
+		if (processValues[timeIndex][componentIndex] == null) {
+			double[] realizations = new double[numberOfPaths];
+			DoubleBuffer column = columns[timeIndex][componentIndex].duplicate().order(ByteOrder.LITTLE_ENDIAN)
+					.asDoubleBuffer();
+			column.get(realizations);
+			processValues[timeIndex][componentIndex] = randomVariableFactory
+					.createRandomVariable(timeDiscretization.getTime(timeIndex), realizations);
+		}
+		return processValues[timeIndex][componentIndex];
+	}
+
+	@Override
+	public RandomVariable getMonteCarloWeights(int timeIndex) {
+		return randomVariableFactory.createRandomVariable(1.0 / numberOfPaths);
+	}
+
+	@Override
+	public int getNumberOfComponents() {
+		return numberOfComponents;
+	}
+
+	@Override
+	public TimeDiscretization getTimeDiscretization() {
+		return timeDiscretization;
+	}
+
+	@Override
+	public double getTime(int timeIndex) {
+		return timeDiscretization.getTime(timeIndex);
+	}
+
+	@Override
+	public int getTimeIndex(double time) {
+		return timeDiscretization.getTimeIndex(time);
+	}
+
+	@Override
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return numberOfFactors;
+	}
+
+	@Override
+	public ProcessModel getModel() {
+		return model;
+	}
+
+	/**
+	 * @return null: the values are read from the file, there is no driver
+	 */
+	public BrownianMotion getStochasticDriver() {
+		return null;
+	}
+
+	/**
+	 * It returns a process reading the same file, for a different model. Note that
+	 * the values are the ones of the file, whatever the model.
+	 *
+	 * @param model, the new model
+	 * @return the process for the new model
+	 */
+	@Override
+	public ProcessFromMappedFile getCloneWithModifiedModel(ProcessModel model) {
+		try {
+			return new ProcessFromMappedFile(model, randomVariableFactory, file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * The values are the ones of the file: they cannot be changed by modifying the
+	 * data of the model. The modified model has to be simulated (and possibly
+	 * written to another file) instead.
+	 *
+	 * @param dataModified, the data of the model to modify
+	 * @return nothing: it always throws
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public ProcessFromMappedFile getCloneWithModifiedData(Map<String, Object> dataModified) {
+		throw new UnsupportedOperationException(
+				"The values of a process read from a file cannot be changed by modifying the data: " + file);
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	@Override
+	public ProcessFromMappedFile clone() {
+		try {
+			return new ProcessFromMappedFile(model, randomVariableFactory, file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package info.quantlab.computationalfinance.assignments.montecarlo.processmodel;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetricsListener.Phase;
 import net.finmath.exception.CalculationException;
 import net.finmath.montecarlo.RandomVariableFactory;
 import net.finmath.montecarlo.RandomVariableFromArrayFactory;
@@ -42,10 +45,19 @@ public class ProcessModelFromLognormalProcessModel implements ProcessModel {
 
 	/*
 	 * The following two methods give the transformation to log-normal coordinates.
+	 * The state is built from the initial state and the coefficients, created by
+	 * the factory, so its exponential is returned as it is, without a copy.
 	 */
 	@Override
 	public RandomVariable applyStateSpaceTransform(MonteCarloProcess process, int timeIndex, int componentIndex, RandomVariable randomVariable) {
-		return randomVariable.exp();
+		if (!SimulationMetrics.isEnabled()) {
+			// called for every time step and component: no lambda is created when nobody listens
+			return randomVariable.exp();
+		}
+		return SimulationMetrics.measurePhase(Phase.STATE_SPACE_TRANSFORM, () -> {
+			SimulationMetrics.getListener().onRandomVariableAllocation(1);
+			return randomVariable.exp();
+		});
 	}
 
 	@Override
@@ -75,6 +87,8 @@ public class ProcessModelFromLognormalProcessModel implements ProcessModel {
 	@Override
 	public RandomVariable[] getDrift(MonteCarloProcess process, int timeIndex, RandomVariable[] realizationAtTimeIndex, RandomVariable[] realizationPredictor) {
 		Double[] drift = lognormalModel.getDrift(timeIndex);
+		SimulationMetrics.getListener().onDriftRequest();
+		SimulationMetrics.getListener().onRandomVariableAllocation(drift.length);
 
 		Function<Double, RandomVariable> randomVariableMapper = x -> randomVariableFactory.createRandomVariable(x);
 		return Stream.of(drift).map(randomVariableMapper).toArray(i -> new RandomVariable[i]);
@@ -88,6 +102,8 @@ public class ProcessModelFromLognormalProcessModel implements ProcessModel {
 	@Override
 	public RandomVariable[] getFactorLoading(MonteCarloProcess process, int timeIndex, int componentIndex, RandomVariable[] realizationAtTimeIndex) {
 		Double[] factorLoadingsForComponent = lognormalModel.getFactorLoading(timeIndex, componentIndex);
+		SimulationMetrics.getListener().onFactorLoadingRequest();
+		SimulationMetrics.getListener().onRandomVariableAllocation(factorLoadingsForComponent.length);
 
 		Function<Double, RandomVariable> randomVariableMapper = x -> randomVariableFactory.createRandomVariable(x);
 		return Stream.of(factorLoadingsForComponent).map(randomVariableMapper).toArray(i -> new RandomVariable[i]);
@@ -98,9 +114,29 @@ public class ProcessModelFromLognormalProcessModel implements ProcessModel {
 		return randomVariableFactory.createRandomVariable(value);
 	}
 
+	/*
+	 * The keys referenceDate, randomVariableFactory and lognormalModel replace the
+	 * corresponding objects. All the other keys are passed to the
+	 * getCloneWithModifiedData of the LognormalProcessModel.
+	 */
 	@Override
-	public ProcessModel getCloneWithModifiedData(Map<String, Object> dataModified) throws CalculationException {
-		throw new UnsupportedOperationException();
+	public ProcessModelFromLognormalProcessModel getCloneWithModifiedData(Map<String, Object> dataModified) throws CalculationException {
+		Map<String, Object> lognormalModelDataModified = new HashMap<>(dataModified);
+
+		LocalDateTime newReferenceDate = (LocalDateTime) lognormalModelDataModified.getOrDefault("referenceDate", referenceDate);
+		lognormalModelDataModified.remove("referenceDate");
+
+		RandomVariableFactory newRandomVariableFactory = (RandomVariableFactory) lognormalModelDataModified.getOrDefault("randomVariableFactory", randomVariableFactory);
+		lognormalModelDataModified.remove("randomVariableFactory");
+
+		LognormalProcessModel newLognormalModel = (LognormalProcessModel) lognormalModelDataModified.getOrDefault("lognormalModel", lognormalModel);
+		lognormalModelDataModified.remove("lognormalModel");
+
+		if(!lognormalModelDataModified.isEmpty()) {
+			newLognormalModel = newLognormalModel.getCloneWithModifiedData(lognormalModelDataModified);
+		}
+
+		return new ProcessModelFromLognormalProcessModel(newReferenceDate, newRandomVariableFactory, newLognormalModel);
 	}
 
 }
@@ -0,0 +1,209 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.processmodel;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetricsListener.Phase;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariableFactory;
+import net.finmath.montecarlo.RandomVariableFromArrayFactory;
+import net.finmath.montecarlo.model.ProcessModel;
+import net.finmath.montecarlo.process.MonteCarloProcess;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Wraps a <code>PrimitiveLognormalProcessModel</code> into a
+ * <code>ProcessModel</code>, simulating the logarithm of the processes (as
+ * <code>ProcessModelFromLognormalProcessModel</code>).
+ *
+ * The coefficients are deterministic, so the corresponding random variables
+ * are created once per time index and then cached: the Euler scheme calls
+ * <code>getDrift</code> and <code>getFactorLoading</code> for every time step
+ * and every component, and gets the same arrays back without any further
+ * allocation. For this reason, the arrays returned must not be modified.
+ */
+public class ProcessModelFromPrimitiveLognormalProcessModel implements ProcessModel {
+
+	private final LocalDateTime referenceDate;
+	private final RandomVariableFactory randomVariableFactory;
+	private final PrimitiveLognormalProcessModel lognormalModel;
+
+	private final RandomVariable[] initialState;
+	private final TimeIndexedCache<RandomVariable[]> driftCache = new TimeIndexedCache<>();
+	private final TimeIndexedCache<RandomVariable[][]> factorLoadingCache = new TimeIndexedCache<>();
+
+	public ProcessModelFromPrimitiveLognormalProcessModel(LocalDateTime referenceDate,
+			RandomVariableFactory randomVariableFactory, PrimitiveLognormalProcessModel lognormalModel) {
+		super();
+		this.referenceDate = referenceDate;
+		this.randomVariableFactory = randomVariableFactory;
+		this.lognormalModel = lognormalModel;
+
+		double[] initialValue = lognormalModel.getInitialValuePrimitive();
+		initialState = new RandomVariable[initialValue.length];
+		for (int componentIndex = 0; componentIndex < initialValue.length; componentIndex++) {
+			initialState[componentIndex] = randomVariableFactory.createRandomVariable(Math.log(initialValue[componentIndex]));
+		}
+	}
+
+	public ProcessModelFromPrimitiveLognormalProcessModel(PrimitiveLognormalProcessModel model) {
+		this(null, new RandomVariableFromArrayFactory(), model);
+	}
+
+	@Override
+	public LocalDateTime getReferenceDate() {
+		return referenceDate;
+	}
+
+	@Override
+	public int getNumberOfComponents() {
+		return lognormalModel.getNumberOfComponents();
+	}
+
+	/*
+	 * The following two methods give the transformation to log-normal coordinates.
+	 * The state is built from the initial state and the coefficients, created by
+	 * the factory, so its exponential is returned as it is, without a copy.
+	 */
+	@Override
+	public RandomVariable applyStateSpaceTransform(MonteCarloProcess process, int timeIndex, int componentIndex, RandomVariable randomVariable) {
+		if (!SimulationMetrics.isEnabled()) {
+			// called for every time step and component: no lambda is created when nobody listens
+			return randomVariable.exp();
+		}
+		return SimulationMetrics.measurePhase(Phase.STATE_SPACE_TRANSFORM, () -> {
+			SimulationMetrics.getListener().onRandomVariableAllocation(1);
+			return randomVariable.exp();
+		});
+	}
+
+	@Override
+	public RandomVariable applyStateSpaceTransformInverse(MonteCarloProcess process, int timeIndex, int componentIndex, RandomVariable randomVariable) {
+		return randomVariable.log();
+	}
+
+	@Override
+	public RandomVariable[] getInitialState(MonteCarloProcess process) {
+		return initialState;
+	}
+
+	@Override
+	public RandomVariable getNumeraire(MonteCarloProcess process, double time) throws CalculationException {
+		return lognormalModel.getNumeraire(process, time);
+	}
+
+	@Override
+	public RandomVariable[] getDrift(MonteCarloProcess process, int timeIndex, RandomVariable[] realizationAtTimeIndex, RandomVariable[] realizationPredictor) {
+		SimulationMetrics.getListener().onDriftRequest();
+		RandomVariable[] drift = driftCache.get(timeIndex);
+		if (drift == null) {
+			drift = driftCache.computeIfAbsent(timeIndex, i -> createRandomVariables(lognormalModel.getDriftPrimitive(i)));
+		}
+		return drift;
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return lognormalModel.getNumberOfFactors();
+	}
+
+	@Override
+	public RandomVariable[] getFactorLoading(MonteCarloProcess process, int timeIndex, int componentIndex, RandomVariable[] realizationAtTimeIndex) {
+		SimulationMetrics.getListener().onFactorLoadingRequest();
+		RandomVariable[][] factorLoadings = factorLoadingCache.get(timeIndex);
+		if (factorLoadings == null) {
+			factorLoadings = factorLoadingCache.computeIfAbsent(timeIndex, this::createFactorLoadings);
+		}
+		return factorLoadings[componentIndex];
+	}
+
+	private RandomVariable[][] createFactorLoadings(int timeIndex) {
+		RandomVariable[][] factorLoadings = new RandomVariable[getNumberOfComponents()][];
+		for (int component = 0; component < factorLoadings.length; component++) {
+			factorLoadings[component] = createRandomVariables(lognormalModel.getFactorLoadingPrimitive(timeIndex, component));
+		}
+		return factorLoadings;
+	}
+
+	private RandomVariable[] createRandomVariables(double[] values) {
+		RandomVariable[] randomVariables = new RandomVariable[values.length];
+		for (int i = 0; i < values.length; i++) {
+			randomVariables[i] = randomVariableFactory.createRandomVariable(values[i]);
+		}
+		SimulationMetrics.getListener().onRandomVariableAllocation(values.length);
+		return randomVariables;
+	}
+
+	@Override
+	public RandomVariable getRandomVariableForConstant(double value) {
+		return randomVariableFactory.createRandomVariable(value);
+	}
+
+	public PrimitiveLognormalProcessModel getLognormalProcessModel() {
+		return lognormalModel;
+	}
+
+	public RandomVariableFactory getRandomVariableFactory() {
+		return randomVariableFactory;
+	}
+
+	/*
+	 * The keys referenceDate, randomVariableFactory and lognormalModel replace the
+	 * corresponding objects. All the other keys are passed to the
+	 * getCloneWithModifiedData of the LognormalProcessModel.
+	 */
+	@Override
+	public ProcessModelFromPrimitiveLognormalProcessModel getCloneWithModifiedData(Map<String, Object> dataModified) throws CalculationException {
+		Map<String, Object> lognormalModelDataModified = new HashMap<>(dataModified);
+
+		LocalDateTime newReferenceDate = (LocalDateTime) lognormalModelDataModified.getOrDefault("referenceDate", referenceDate);
+		lognormalModelDataModified.remove("referenceDate");
+
+		RandomVariableFactory newRandomVariableFactory = (RandomVariableFactory) lognormalModelDataModified.getOrDefault("randomVariableFactory", randomVariableFactory);
+		lognormalModelDataModified.remove("randomVariableFactory");
+
+		PrimitiveLognormalProcessModel newLognormalModel = (PrimitiveLognormalProcessModel) lognormalModelDataModified.getOrDefault("lognormalModel", lognormalModel);
+		lognormalModelDataModified.remove("lognormalModel");
+
+		if(!lognormalModelDataModified.isEmpty()) {
+			newLognormalModel = newLognormalModel.getCloneWithModifiedData(lognormalModelDataModified);
+		}
+
+		return new ProcessModelFromPrimitiveLognormalProcessModel(newReferenceDate, newRandomVariableFactory, newLognormalModel);
+	}
+
+	/*
+	 * The coefficients, indexed by the time index: a lookup neither boxes the index
+	 * nor locks. The array grows with the largest time index requested.
+	 */
+	private static final class TimeIndexedCache<T> {
+
+		private volatile AtomicReferenceArray<T> values = new AtomicReferenceArray<>(0);
+
+		T get(int timeIndex) {
+			AtomicReferenceArray<T> currentValues = values;
+			return timeIndex < currentValues.length() ? currentValues.get(timeIndex) : null;
+		}
+
+		synchronized T computeIfAbsent(int timeIndex, IntFunction<T> calculation) {
+			if (timeIndex >= values.length()) {
+				AtomicReferenceArray<T> newValues = new AtomicReferenceArray<>(
+						Math.max(2 * values.length(), timeIndex + 1));
+				for (int i = 0; i < values.length(); i++) {
+					newValues.set(i, values.get(i));
+				}
+				values = newValues;
+			}
+			T value = values.get(timeIndex);
+			if (value == null) {
+				value = calculation.apply(timeIndex);
+				values.set(timeIndex, value);
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the second half of the paths of the antithetic
+ * Brownian motion is the first half with opposite sign, and that the
+ * increments have the variance of the time steps.
+ */
+public class AntitheticBrownianMotionTest {
+
+	private static final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, 4, 0.5);
+
+	@Test
+	void testAntitheticPaths() {
+		int numberOfPaths = 20000;
+		BrownianMotion brownianMotion = new AntitheticBrownianMotion(timeDiscretization, 2, numberOfPaths, 3141);
+
+		for (int timeIndex = 0; timeIndex < timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
+			for (int factor = 0; factor < 2; factor++) {
+				RandomVariable increment = brownianMotion.getBrownianIncrement(timeIndex, factor);
+				assertEquals(numberOfPaths, increment.size());
+				for (int pathIndex = 0; pathIndex < numberOfPaths / 2; pathIndex++) {
+					assertEquals(-increment.get(pathIndex), increment.get(pathIndex + numberOfPaths / 2), 0.0);
+				}
+				// the average is zero by construction
+				assertEquals(0.0, increment.getAverage(), 1E-15);
+				assertEquals(timeDiscretization.getTimeStep(timeIndex), increment.getVariance(), 0.03);
+			}
+		}
+	}
+
+	@Test
+	void testClones() {
+		BrownianMotion brownianMotion = new AntitheticBrownianMotion(timeDiscretization, 2, 1000, 3141);
+
+		BrownianMotion sameSeed = brownianMotion.getCloneWithModifiedSeed(3141);
+		assertEquals(0.0, brownianMotion.getBrownianIncrement(1, 1).sub(sameSeed.getBrownianIncrement(1, 1)).abs()
+				.getMax(), 0.0);
+
+		BrownianMotion otherSeed = brownianMotion.getCloneWithModifiedSeed(2718);
+		assertTrue(brownianMotion.getBrownianIncrement(1, 1).sub(otherSeed.getBrownianIncrement(1, 1)).abs()
+				.getMax() > 0.0);
+	}
+
+	@Test
+	void testOddNumberOfPaths() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new AntitheticBrownianMotion(timeDiscretization, 2, 1001, 3141));
+	}
+}
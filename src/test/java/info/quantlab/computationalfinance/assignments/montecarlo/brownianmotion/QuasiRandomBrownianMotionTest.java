@@ -0,0 +1,73 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.brownianmotion;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests the Brownian motion generated by the digitally shifted
+ * Sobol sequence with Brownian bridge construction: the increments have to be
+ * independent, with the variance of the time steps, and the quasi Monte-Carlo
+ * estimates have to be much more accurate than pseudo random ones with the
+ * same number of paths.
+ */
+public class QuasiRandomBrownianMotionTest {
+
+	private static final TimeDiscretization timeDiscretization = new TimeDiscretizationFromArray(0.0, 8, 0.25);
+
+	private static final int numberOfPaths = 1 << 14;
+
+	@Test
+	void testMoments() {
+		BrownianMotion brownianMotion = new QuasiRandomBrownianMotion(timeDiscretization, 2, numberOfPaths, 3141);
+
+		for (int timeIndex = 0; timeIndex < timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
+			for (int factor = 0; factor < 2; factor++) {
+				RandomVariable increment = brownianMotion.getBrownianIncrement(timeIndex, factor);
+				assertEquals(0.0, increment.getAverage(), 2E-3);
+				assertEquals(timeDiscretization.getTimeStep(timeIndex), increment.getVariance(), 5E-3);
+			}
+			// independent factors and time steps
+			RandomVariable increment = brownianMotion.getBrownianIncrement(timeIndex, 0);
+			assertEquals(0.0, increment.mult(brownianMotion.getBrownianIncrement(timeIndex, 1)).getAverage(), 5E-3);
+			if (timeIndex > 0) {
+				assertEquals(0.0,
+						increment.mult(brownianMotion.getBrownianIncrement(timeIndex - 1, 0)).getAverage(), 5E-3);
+			}
+		}
+	}
+
+	@Test
+	void testTerminalValue() {
+		BrownianMotion brownianMotion = new QuasiRandomBrownianMotion(timeDiscretization, 1, numberOfPaths, 3141);
+
+		RandomVariable terminalValue = brownianMotion.getRandomVariableForConstant(0.0);
+		for (int timeIndex = 0; timeIndex < timeDiscretization.getNumberOfTimeSteps(); timeIndex++) {
+			terminalValue = terminalValue.add(brownianMotion.getBrownianIncrement(timeIndex, 0));
+		}
+
+		// E[max(W(T), 0)] = sqrt(T / (2 pi)): the error is far below the one of pseudo random numbers
+		double maturity = timeDiscretization.getTime(timeDiscretization.getNumberOfTimeSteps());
+		RandomVariable payoff = terminalValue.floor(0.0);
+		assertEquals(Math.sqrt(maturity / (2 * Math.PI)), payoff.getAverage(), 0.2 * payoff.getStandardError());
+	}
+
+	@Test
+	void testRandomShift() {
+		BrownianMotion brownianMotion = new QuasiRandomBrownianMotion(timeDiscretization, 2, 1024, 3141);
+
+		BrownianMotion sameSeed = brownianMotion.getCloneWithModifiedSeed(3141);
+		assertEquals(0.0, brownianMotion.getBrownianIncrement(2, 1).sub(sameSeed.getBrownianIncrement(2, 1)).abs()
+				.getMax(), 0.0);
+
+		BrownianMotion otherSeed = brownianMotion.getCloneWithModifiedSeed(2718);
+		assertTrue(brownianMotion.getBrownianIncrement(2, 1).sub(otherSeed.getBrownianIncrement(2, 1)).abs()
+				.getMax() > 0.0);
+	}
+}
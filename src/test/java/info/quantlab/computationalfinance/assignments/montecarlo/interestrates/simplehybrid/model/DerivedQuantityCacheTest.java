@@ -0,0 +1,55 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.DerivedQuantityCache.Quantity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.stochastic.Scalar;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the derived quantities of the model are computed only
+ * once, and that the cache evicts the least recently used values.
+ */
+public class DerivedQuantityCacheTest {
+
+	@Test
+	void testModelComputesDerivedQuantitiesOnce() {
+		SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02,
+				1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, 1.0, 2.0, 0.95, 0.97,
+				new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, 1.0, 2.0), 3, 1000,
+						3141),
+				SimulationScheme.EXACT);
+
+		assertSame(model.getNumeraire(1.0), model.getNumeraire(1.0));
+		assertSame(model.getFXRate(1, 1.0), model.getFXRate(1, 1.0));
+
+		DerivedQuantityCache cache = model.getDerivedQuantityCache();
+		assertEquals(2, cache.getNumberOfMisses());
+		assertEquals(2, cache.getNumberOfHits());
+	}
+
+	@Test
+	void testEviction() {
+		DerivedQuantityCache cache = new DerivedQuantityCache(2);
+
+		cache.get(Quantity.NUMERAIRE, 0.0, 0, () -> new Scalar(1.0));
+		cache.get(Quantity.NUMERAIRE, 1.0, 0, () -> new Scalar(2.0));
+		// the value at 0.0 becomes the most recently used one
+		cache.get(Quantity.NUMERAIRE, 0.0, 0, () -> new Scalar(1.0));
+		cache.get(Quantity.NUMERAIRE, 2.0, 0, () -> new Scalar(3.0));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getNumberOfEvictions());
+
+		// the value at 1.0 has been evicted
+		cache.get(Quantity.NUMERAIRE, 0.0, 0, () -> new Scalar(1.0));
+		cache.get(Quantity.NUMERAIRE, 1.0, 0, () -> new Scalar(2.0));
+		assertEquals(2, cache.getNumberOfHits());
+		assertEquals(4, cache.getNumberOfMisses());
+	}
+}
@@ -0,0 +1,113 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.FXOption;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ExactSchemeFromProcessModel;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests the exact simulation scheme: on a fine time discretization
+ * it has to give the analytic values of caplets and FX options within the
+ * Monte-Carlo error, and on the time discretization {0, T_1, T_2} the same
+ * paths as the Euler scheme for the logarithm of the processes, which is exact
+ * for constant coefficients.
+ */
+public class ExactSimulationSchemeTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final SimpleCrossCurrencyAnalyticModel analyticModel = new SimpleCrossCurrencyAnalyticModel(0.03,
+			0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97);
+
+	@Test
+	void testAnalyticValues() {
+		// only 0, T_1 and T_2 are used by the exact scheme
+		SimpleCrossCurrencyModelWithSingleMaturity model = getModel(new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, 40, 0.05), 3, 200000, 3141), SimulationScheme.EXACT);
+
+		for (int currency = 0; currency <= 1; currency++) {
+			for (boolean isQuanto : new boolean[] { false, true }) {
+				for (double paymentTime : new double[] { periodStart, periodEnd }) {
+					for (double strike : new double[] { 0.02, 0.03, 0.04 }) {
+						RandomVariable value = new GeneralizedCaplet(currency, isQuanto, periodStart, periodStart,
+								periodEnd, paymentTime, strike).getValue(0.0, model);
+						assertEquals(analyticModel.getCapletValue(currency, isQuanto, paymentTime, strike),
+								value.getAverage(), 4 * value.getStandardError());
+					}
+				}
+			}
+		}
+
+		for (double strike : new double[] { 1.1, 1.2, 1.3 }) {
+			RandomVariable value = new FXOption(periodEnd, strike).getValue(0.0, model);
+			assertEquals(analyticModel.getFXOptionValue(periodEnd, strike), value.getAverage(),
+					4 * value.getStandardError());
+		}
+	}
+
+	@Test
+	void testEqualityWithEulerScheme() {
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 10000, 3141);
+		SimpleCrossCurrencyModelWithSingleMaturity exactModel = getModel(brownianMotion, SimulationScheme.EXACT);
+		SimpleCrossCurrencyModelWithSingleMaturity eulerModel = getModel(brownianMotion, SimulationScheme.EULER);
+
+		for (double time : new double[] { 0.0, periodStart, periodEnd }) {
+			for (int currency = 0; currency <= 1; currency++) {
+				assertEqualRealizations(eulerModel.getForwardRate(currency, time, periodStart, periodEnd),
+						exactModel.getForwardRate(currency, time, periodStart, periodEnd));
+			}
+			assertEqualRealizations(eulerModel.getFXRate(1, time), exactModel.getFXRate(1, time));
+			assertEqualRealizations(eulerModel.getNumeraire(time), exactModel.getNumeraire(time));
+		}
+	}
+
+	@Test
+	void testCloneWithModifiedData() throws CalculationException {
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 10000, 3141);
+		ExactSchemeFromProcessModel process = (ExactSchemeFromProcessModel) getModel(brownianMotion,
+				SimulationScheme.EXACT).getProcess();
+		ExactSchemeFromProcessModel clonedProcess = process
+				.getCloneWithModifiedData(Map.of("volatilityDomestic", 0.4));
+
+		// only the domestic Libor depends on its volatility
+		assertFalse(clonedProcess.isComponentShared(0));
+		assertTrue(clonedProcess.isComponentShared(1));
+		assertTrue(clonedProcess.isComponentShared(2));
+
+		SimpleCrossCurrencyModelWithSingleMaturity newModel = new SimpleCrossCurrencyModelWithSingleMaturity(0.03,
+				0.02, 1.2, 0.4, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97, brownianMotion,
+				SimulationScheme.EXACT);
+		for (int timeIndex = 0; timeIndex < 3; timeIndex++) {
+			for (int componentIndex = 0; componentIndex < 3; componentIndex++) {
+				assertEqualRealizations(newModel.getProcess().getProcessValue(timeIndex, componentIndex),
+						clonedProcess.getProcessValue(timeIndex, componentIndex));
+			}
+		}
+	}
+
+	private static void assertEqualRealizations(RandomVariable expected, RandomVariable actual) {
+		assertEquals(0.0, expected.sub(actual).abs().getMax(), 1E-12 * Math.max(1.0, expected.abs().getMax()));
+	}
+
+	private static SimpleCrossCurrencyModelWithSingleMaturity getModel(BrownianMotion brownianMotion,
+			SimulationScheme simulationScheme) {
+		return new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3,
+				periodStart, periodEnd, 0.95, 0.97, brownianMotion, simulationScheme);
+	}
+}
@@ -0,0 +1,90 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests the importance sampling of deep out-of-the-money caplets:
+ * the values have to be unbiased, with a standard error much smaller than the
+ * one of the plain simulation with the same number of paths.
+ */
+public class ImportanceSamplingTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+			new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 100000, 3141);
+
+	private static final SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(
+			0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97, brownianMotion,
+			SimulationScheme.EXACT);
+
+	private static final SimpleCrossCurrencyAnalyticModel analyticModel = new SimpleCrossCurrencyAnalyticModel(0.03,
+			0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97);
+
+	@Test
+	void testDeepOutOfTheMoneyCaplets() {
+		assertVarianceReduction(new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.08));
+		assertVarianceReduction(new GeneralizedCaplet(1, false, periodStart, periodStart, periodEnd, periodEnd, 0.05));
+		assertVarianceReduction(new GeneralizedCaplet(1, true, periodStart, periodStart, periodEnd, periodStart, 0.05));
+	}
+
+	private static void assertVarianceReduction(GeneralizedCaplet caplet) {
+		SimpleCrossCurrencyModelWithSingleMaturity importanceSamplingModel = model
+				.getCloneWithImportanceSampling(caplet.getCurrencyIndex(), caplet.getStrike());
+
+		RandomVariable plainValue = caplet.getValue(0.0, model);
+		RandomVariable importanceSamplingValue = caplet.getValue(0.0, importanceSamplingModel);
+
+		double analyticValue = analyticModel.getCapletValue(caplet.getCurrencyIndex(), caplet.isQuanto(),
+				caplet.getPaymentTime(), caplet.getStrike());
+
+		assertEquals(analyticValue, importanceSamplingValue.getAverage(),
+				4 * importanceSamplingValue.getStandardError());
+		assertTrue(importanceSamplingValue.getStandardError() < plainValue.getStandardError() / 3,
+				"standard error " + importanceSamplingValue.getStandardError() + " vs " + plainValue.getStandardError());
+	}
+
+	@Test
+	void testWeights() throws CalculationException {
+		SimpleCrossCurrencyModelWithSingleMaturity importanceSamplingModel = model.getCloneWithImportanceSampling(0,
+				0.08);
+
+		assertEquals(1.0, importanceSamplingModel.getMonteCarloWeights(0.0).getAverage(), 0.0);
+		for (double time : new double[] { periodStart, periodEnd }) {
+			RandomVariable weights = importanceSamplingModel.getMonteCarloWeights(time);
+			assertEquals(1.0, weights.getAverage(), 4 * weights.getStandardError());
+		}
+
+		// no drift after T_1
+		assertEquals(0.0, importanceSamplingModel.getMonteCarloWeights(periodEnd)
+				.sub(importanceSamplingModel.getMonteCarloWeights(periodStart)).abs().getMax(), 0.0);
+	}
+
+	@Test
+	void testNoDrift() throws CalculationException {
+		// the expectation of the Libor is already above the strike
+		assertArrayEquals(new double[3], model.getImportanceSamplingDrift(0, 0.02), 0.0);
+
+		SimpleCrossCurrencyModelWithSingleMaturity clone = model
+				.getCloneWithModifiedData(Map.of("importanceSamplingDrift", new double[3]));
+		GeneralizedCaplet caplet = new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd,
+				0.02);
+		assertEquals(caplet.getValue(0.0, model).getAverage(), caplet.getValue(0.0, clone).getAverage(), 0.0);
+		assertEquals(1.0, clone.getMonteCarloWeights(periodEnd).getAverage(), 0.0);
+	}
+}
@@ -0,0 +1,90 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.AggregatingSimulationMetricsListener;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetrics;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetricsListener.Phase;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ExactSchemeFromProcessModel;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the exact scheme only simulates the components
+ * requested by the products, and that this does not change their values.
+ */
+public class LazySimulationTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+			new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 10000, 3141);
+
+	@Test
+	void testDomesticCaplet() {
+		GeneralizedCaplet caplet = new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd,
+				0.03);
+
+		AggregatingSimulationMetricsListener listener = new AggregatingSimulationMetricsListener();
+		SimulationMetrics.setListener(listener);
+		SimpleCrossCurrencyModelWithSingleMaturity model = getModel();
+		double value;
+		try {
+			value = caplet.getValue(0.0, model).getAverage();
+		} finally {
+			SimulationMetrics.setListener(null);
+		}
+
+		// only the domestic Libor is simulated
+		assertEquals(1, listener.getPhaseCount(Phase.SIMULATION));
+		assertSimulatedComponents(model, true, false, false);
+
+		// the value is the one with all the components simulated
+		SimpleCrossCurrencyModelWithSingleMaturity fullySimulatedModel = getModel();
+		fullySimulatedModel.getFXRate(1, periodStart);
+		assertSimulatedComponents(fullySimulatedModel, true, true, true);
+		assertEquals(caplet.getValue(0.0, fullySimulatedModel).getAverage(), value, 0.0);
+	}
+
+	@Test
+	void testForeignCaplets() {
+		SimpleCrossCurrencyModelWithSingleMaturity model = getModel();
+
+		// the quanto caplet paid in T_2 does not need the FX rate nor the domestic Libor
+		new GeneralizedCaplet(1, true, periodStart, periodStart, periodEnd, periodEnd, 0.02).getValue(0.0, model);
+		assertSimulatedComponents(model, false, true, false);
+
+		// the FX rate at T_2 is the forward FX rate
+		new GeneralizedCaplet(1, false, periodStart, periodStart, periodEnd, periodEnd, 0.02).getValue(0.0, model);
+		assertSimulatedComponents(model, false, true, true);
+
+		// the caplet paid in T_1 needs the numeraire and the FX rate at T_1
+		new GeneralizedCaplet(1, false, periodStart, periodStart, periodEnd, periodStart, 0.02).getValue(0.0, model);
+		assertSimulatedComponents(model, true, true, true);
+	}
+
+	private static void assertSimulatedComponents(SimpleCrossCurrencyModelWithSingleMaturity model,
+			boolean... isComponentSimulated) {
+		ExactSchemeFromProcessModel process = (ExactSchemeFromProcessModel) model.getProcess();
+		for (int componentIndex = 0; componentIndex < isComponentSimulated.length; componentIndex++) {
+			if (isComponentSimulated[componentIndex]) {
+				assertTrue(process.isComponentSimulated(componentIndex), "component " + componentIndex);
+			} else {
+				assertFalse(process.isComponentSimulated(componentIndex), "component " + componentIndex);
+			}
+		}
+	}
+
+	private static SimpleCrossCurrencyModelWithSingleMaturity getModel() {
+		return new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3,
+				periodStart, periodEnd, 0.95, 0.97, brownianMotion, SimulationScheme.EXACT);
+	}
+}
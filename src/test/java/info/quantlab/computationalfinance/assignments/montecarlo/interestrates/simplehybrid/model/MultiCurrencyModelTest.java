@@ -0,0 +1,174 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests the model with N foreign currencies: for N = 1 it has to
+ * give the paths of the model with one foreign currency, and for N = 3 the
+ * forward FX rates and the foreign Libors (in domestic currency) have to be
+ * martingales also with a reduced number of factors.
+ */
+public class MultiCurrencyModelTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	@Test
+	void testOneForeignCurrency() {
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 10000, 3141);
+
+		SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02,
+				1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97, brownianMotion,
+				SimulationScheme.EXACT);
+
+		double[][] correlation = { { 1.0, 0.4, 0.2 }, { 0.4, 1.0, -0.3 }, { 0.2, -0.3, 1.0 } };
+		MultiCurrencyModelWithSingleMaturity multiCurrencyModel = new MultiCurrencyModelWithSingleMaturity(0.03,
+				new double[] { 0.02 }, new double[] { 1.2 }, 0.3, new double[] { 0.25 }, new double[] { 0.15 },
+				correlation, periodStart, periodEnd, 0.95, new double[] { 0.97 }, brownianMotion);
+
+		for (double time : new double[] { 0.0, periodStart, periodEnd }) {
+			for (int currency = 0; currency <= 1; currency++) {
+				assertEqualRealizations(model.getForwardRate(currency, time, periodStart, periodEnd),
+						multiCurrencyModel.getForwardRate(currency, time, periodStart, periodEnd));
+				assertEqualRealizations(model.getFXRate(currency, time), multiCurrencyModel.getFXRate(currency, time));
+			}
+			assertEqualRealizations(model.getNumeraire(time), multiCurrencyModel.getNumeraire(time));
+		}
+	}
+
+	@Test
+	void testReducedNumberOfFactors() {
+		int numberOfForeignCurrencies = 3;
+		int numberOfComponents = 2 * numberOfForeignCurrencies + 1;
+
+		// correlations decaying with the distance of the components
+		double[][] correlation = new double[numberOfComponents][numberOfComponents];
+		for (int i = 0; i < numberOfComponents; i++) {
+			for (int j = 0; j < numberOfComponents; j++) {
+				correlation[i][j] = Math.exp(-0.2 * Math.abs(i - j));
+			}
+		}
+
+		double[][] factorLoadings = CorrelationFactorization.getPrincipalComponentFactorLoadings(correlation, 3);
+		for (int i = 0; i < numberOfComponents; i++) {
+			double squaredLength = 0.0;
+			for (double factorLoading : factorLoadings[i]) {
+				squaredLength += factorLoading * factorLoading;
+			}
+			assertEquals(1.0, squaredLength, 1E-12);
+		}
+
+		// with all the factors the principal components give back the correlation
+		double[][] allFactorLoadings = CorrelationFactorization.getPrincipalComponentFactorLoadings(correlation,
+				numberOfComponents);
+		for (int i = 0; i < numberOfComponents; i++) {
+			for (int j = 0; j < numberOfComponents; j++) {
+				double product = 0.0;
+				for (int factor = 0; factor < numberOfComponents; factor++) {
+					product += allFactorLoadings[i][factor] * allFactorLoadings[j][factor];
+				}
+				assertEquals(correlation[i][j], product, 1E-10);
+			}
+		}
+
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 100000, 3141);
+		MultiCurrencyModelWithSingleMaturity model = new MultiCurrencyModelWithSingleMaturity(0.03,
+				new double[] { 0.02, 0.01, 0.04 }, new double[] { 1.2, 0.9, 150.0 }, 0.3,
+				new double[] { 0.25, 0.2, 0.35 }, new double[] { 0.15, 0.1, 0.2 }, correlation, periodStart, periodEnd,
+				0.95, new double[] { 0.97, 0.99, 0.92 }, brownianMotion);
+
+		for (int currency = 1; currency <= numberOfForeignCurrencies; currency++) {
+			double initialValue = model.getForwardFXRate(currency, 0.0).getAverage();
+			RandomVariable forwardFXRate = model.getForwardFXRate(currency, periodEnd);
+			assertEquals(initialValue, forwardFXRate.getAverage(), 4 * forwardFXRate.getStandardError());
+		}
+	}
+
+	@Test
+	void testForeignForwardRatesWithReducedNumberOfFactors() {
+		int numberOfForeignCurrencies = 3;
+		double[][] correlation = getCorrelation(2 * numberOfForeignCurrencies + 1);
+
+		// two factors only: the correlations of the factors differ from the ones of the matrix
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 2, 200000, 3141);
+		MultiCurrencyModelWithSingleMaturity model = new MultiCurrencyModelWithSingleMaturity(0.03,
+				new double[] { 0.02, 0.01, 0.04 }, new double[] { 1.2, 0.9, 150.0 }, 0.3,
+				new double[] { 0.25, 0.2, 0.35 }, new double[] { 0.15, 0.1, 0.2 }, correlation, periodStart, periodEnd,
+				0.95, new double[] { 0.97, 0.99, 0.92 }, brownianMotion);
+
+		/*
+		 * L^{f_k} FFX_k is the ratio of (P^{f_k}(T_1) - P^{f_k}(T_2)) FX_k / (T_2 -
+		 * T_1) and of the numeraire P^d(T_2): it is a martingale under the domestic
+		 * T_2-forward measure.
+		 */
+		for (int currency = 1; currency <= numberOfForeignCurrencies; currency++) {
+			double initialValue = model.getForwardRate(currency, 0.0, periodStart, periodEnd)
+					.mult(model.getForwardFXRate(currency, 0.0)).getAverage();
+			RandomVariable foreignForwardRateInDomesticCurrency = model
+					.getForwardRate(currency, periodStart, periodStart, periodEnd)
+					.mult(model.getForwardFXRate(currency, periodStart));
+			assertEquals(initialValue, foreignForwardRateInDomesticCurrency.getAverage(),
+					4 * foreignForwardRateInDomesticCurrency.getStandardError(), "currency " + currency);
+		}
+	}
+
+	@Test
+	void testCloneWithModifiedData() throws CalculationException {
+		double[][] correlation = getCorrelation(5);
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 10000, 3141);
+		MultiCurrencyModelWithSingleMaturity model = getModel(new double[] { 0.15, 0.1 }, correlation, brownianMotion);
+		MultiCurrencyModelWithSingleMaturity clonedModel = model
+				.getCloneWithModifiedData(Map.of("volatilitiesFXForward", new double[] { 0.2, 0.1 }));
+		MultiCurrencyModelWithSingleMaturity newModel = getModel(new double[] { 0.2, 0.1 }, correlation,
+				brownianMotion);
+
+		for (double time : new double[] { 0.0, periodStart, periodEnd }) {
+			// the domestic Libor does not depend on the FX volatilities: it is shared
+			assertSame(model.getForwardRate(0, time, periodStart, periodEnd),
+					clonedModel.getForwardRate(0, time, periodStart, periodEnd));
+			for (int currency = 1; currency <= 2; currency++) {
+				assertEqualRealizations(newModel.getForwardRate(currency, time, periodStart, periodEnd),
+						clonedModel.getForwardRate(currency, time, periodStart, periodEnd));
+				assertEqualRealizations(newModel.getFXRate(currency, time), clonedModel.getFXRate(currency, time));
+			}
+		}
+	}
+
+	private static MultiCurrencyModelWithSingleMaturity getModel(double[] volatilitiesFXForward,
+			double[][] correlation, BrownianMotion brownianMotion) {
+		return new MultiCurrencyModelWithSingleMaturity(0.03, new double[] { 0.02, 0.01 }, new double[] { 1.2, 0.9 },
+				0.3, new double[] { 0.25, 0.2 }, volatilitiesFXForward, correlation, periodStart, periodEnd, 0.95,
+				new double[] { 0.97, 0.99 }, brownianMotion);
+	}
+
+	// correlations decaying with the distance of the components
+	private static double[][] getCorrelation(int numberOfComponents) {
+		double[][] correlation = new double[numberOfComponents][numberOfComponents];
+		for (int i = 0; i < numberOfComponents; i++) {
+			for (int j = 0; j < numberOfComponents; j++) {
+				correlation[i][j] = Math.exp(-0.2 * Math.abs(i - j));
+			}
+		}
+		return correlation;
+	}
+
+	private static void assertEqualRealizations(RandomVariable expected, RandomVariable actual) {
+		assertEquals(0.0, expected.sub(actual).abs().getMax(), 1E-14 * Math.max(1.0, expected.abs().getMax()));
+	}
+}
@@ -0,0 +1,60 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyCalibration.CalibrationQuote;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyCalibration.CalibrationResult;
+import net.finmath.optimizer.SolverException;
+
+/**
+ * This class tests that the calibration to the quotes generated by a model
+ * recovers its parameters.
+ */
+public class SimpleCrossCurrencyCalibrationTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	@Test
+	void testCalibrationRecoversParameters() throws SolverException {
+		SimpleCrossCurrencyAnalyticModel marketModel = new SimpleCrossCurrencyAnalyticModel(0.03, 0.02, 1.2, 0.3,
+				0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97);
+
+		List<CalibrationQuote> quotes = new ArrayList<>();
+		for (int currency = 0; currency <= 1; currency++) {
+			for (boolean isQuanto : new boolean[] { false, true }) {
+				if (currency == 0 && isQuanto) {
+					continue;
+				}
+				for (double paymentTime : new double[] { periodStart, periodEnd }) {
+					for (double strike : new double[] { 0.015, 0.025, 0.035 }) {
+						quotes.add(CalibrationQuote.caplet(currency, isQuanto, paymentTime, strike,
+								marketModel.getCapletValue(currency, isQuanto, paymentTime, strike)));
+					}
+				}
+			}
+		}
+		for (double strike : new double[] { 1.1, 1.2, 1.3 }) {
+			quotes.add(CalibrationQuote.fxOption(periodEnd, strike, marketModel.getFXOptionValue(periodEnd, strike)));
+		}
+
+		SimpleCrossCurrencyCalibration calibration = new SimpleCrossCurrencyCalibration(0.03, 0.02, 1.2, 0.2,
+				periodStart, periodEnd, 0.95, 0.97, quotes, 4);
+
+		CalibrationResult result = calibration.calibrate(0.2, 0.2, 0.2, 0.0, 0.0);
+
+		SimpleCrossCurrencyAnalyticModel calibratedModel = result.getModel();
+		assertTrue(result.getRootMeanSquaredError() < 1E-8);
+		assertEquals(0.3, calibratedModel.getVolatilityDomestic(), 1E-4);
+		assertEquals(0.25, calibratedModel.getVolatilityForeign(), 1E-4);
+		assertEquals(0.15, calibratedModel.getVolatilityFXForward(), 1E-4);
+		assertEquals(0.4, calibratedModel.getCorrelationDomFor(), 1E-3);
+		assertEquals(-0.3, calibratedModel.getCorrelationFXForeign(), 1E-3);
+	}
+}
@@ -0,0 +1,59 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.processmodel.ExactSchemeFromProcessModel;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that a clone with modified data gives the same paths as a
+ * model constructed from scratch with the same Brownian motion, and that it
+ * shares the components which are not affected by the modification.
+ */
+public class SimpleCrossCurrencyModelCloneTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+			new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 10000, 3141);
+
+	@Test
+	void testCloneWithModifiedFXVolatility() throws CalculationException {
+		SimpleCrossCurrencyModelWithSingleMaturity model = getModel(0.15);
+		SimpleCrossCurrencyModelWithSingleMaturity clonedModel = model
+				.getCloneWithModifiedData(Map.of("volatilityFXForward", 0.2));
+		SimpleCrossCurrencyModelWithSingleMaturity newModel = getModel(0.2);
+
+		for (double time : new double[] { 0.0, periodStart, periodEnd }) {
+			// the domestic Libor does not depend on the FX volatility: it is shared
+			assertSame(model.getForwardRate(0, time, periodStart, periodEnd),
+					clonedModel.getForwardRate(0, time, periodStart, periodEnd));
+
+			// the foreign Libor does, through the quanto adjustment of its drift
+			RandomVariable foreignDifference = clonedModel.getForwardRate(1, time, periodStart, periodEnd)
+					.sub(newModel.getForwardRate(1, time, periodStart, periodEnd));
+			assertEquals(0.0, foreignDifference.abs().getMax(), 1E-12);
+
+			RandomVariable difference = clonedModel.getFXRate(1, time).sub(newModel.getFXRate(1, time));
+			assertEquals(0.0, difference.abs().getMax(), 1E-12);
+		}
+		assertFalse(((ExactSchemeFromProcessModel) clonedModel.getProcess()).isComponentShared(1));
+	}
+
+	private static SimpleCrossCurrencyModelWithSingleMaturity getModel(double volatilityFXForward) {
+		return new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02, 1.2, 0.3, 0.25, volatilityFXForward, 0.4,
+				0.2, -0.3, periodStart, periodEnd, 0.95, 0.97, brownianMotion, SimulationScheme.EXACT);
+	}
+}
@@ -0,0 +1,104 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the paths read from the store are the ones of the
+ * model which has written them.
+ */
+public class SimulatedPathStoreTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+			new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 10000, 3141);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testWriteAndRead() throws IOException, CalculationException {
+		SimulatedPathStore store = new SimulatedPathStore(directory);
+		SimpleCrossCurrencyModelWithSingleMaturity model = getModel(0.15);
+
+		assertFalse(store.contains(model, "mersenne-3141"));
+		SimpleCrossCurrencyModelWithSingleMaturity writtenModel = store.getModel(model, "mersenne-3141");
+		assertTrue(store.contains(model, "mersenne-3141"));
+
+		// a second store on the same directory, as another process would do
+		SimpleCrossCurrencyModelWithSingleMaturity readModel = new SimulatedPathStore(directory).getModel(model,
+				"mersenne-3141");
+
+		for (SimpleCrossCurrencyModelWithSingleMaturity storedModel : new SimpleCrossCurrencyModelWithSingleMaturity[] {
+				writtenModel, readModel }) {
+			for (double time : new double[] { 0.0, periodStart, periodEnd }) {
+				for (int currency = 0; currency <= 1; currency++) {
+					assertEqualRealizations(model.getForwardRate(currency, time, periodStart, periodEnd),
+							storedModel.getForwardRate(currency, time, periodStart, periodEnd));
+					assertEqualRealizations(model.getFXRate(currency, time), storedModel.getFXRate(currency, time));
+				}
+				assertEqualRealizations(model.getNumeraire(time), storedModel.getNumeraire(time));
+			}
+		}
+	}
+
+	@Test
+	void testEulerSchemeOnFineGrid() throws IOException, CalculationException {
+		SimulatedPathStore store = new SimulatedPathStore(directory);
+		SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02,
+				1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+				new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, 20, 0.1), 3, 1000,
+						3141),
+				SimulationScheme.EULER);
+
+		SimpleCrossCurrencyModelWithSingleMaturity storedModel = store.getModel(model, "mersenne-3141");
+		for (double time : new double[] { 0.0, periodStart, periodEnd }) {
+			for (int currency = 0; currency <= 1; currency++) {
+				assertEqualRealizations(model.getForwardRate(currency, time, periodStart, periodEnd),
+						storedModel.getForwardRate(currency, time, periodStart, periodEnd));
+				assertEqualRealizations(model.getFXRate(currency, time), storedModel.getFXRate(currency, time));
+			}
+		}
+
+		// the header and the three components at the three times 0, T_1, T_2 only
+		long expectedSize = 6 * Integer.BYTES + 3 * Double.BYTES + 3 * 3 * 1000L * Double.BYTES;
+		assertEquals(expectedSize, Files.size(store.getFile(model, "mersenne-3141")));
+	}
+
+	@Test
+	void testKeys() {
+		String key = SimulatedPathStore.getKey(getModel(0.15), "mersenne-3141");
+
+		assertEquals(key, SimulatedPathStore.getKey(getModel(0.15), "mersenne-3141"));
+		assertNotEquals(key, SimulatedPathStore.getKey(getModel(0.15 + 1E-15), "mersenne-3141"));
+		assertNotEquals(key, SimulatedPathStore.getKey(getModel(0.15), "mersenne-3142"));
+	}
+
+	private static void assertEqualRealizations(RandomVariable expected, RandomVariable actual) {
+		// the values at time 0 are deterministic in the model, but stored path by path
+		assertEquals(0.0, expected.sub(actual).abs().getMax(), 0.0);
+	}
+
+	private static SimpleCrossCurrencyModelWithSingleMaturity getModel(double volatilityFXForward) {
+		return new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02, 1.2, 0.3, 0.25, volatilityFXForward, 0.4,
+				0.2, -0.3, periodStart, periodEnd, 0.95, 0.97, brownianMotion, SimulationScheme.EXACT);
+	}
+}
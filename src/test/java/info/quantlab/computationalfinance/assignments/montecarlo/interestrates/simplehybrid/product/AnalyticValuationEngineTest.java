@@ -0,0 +1,68 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyAnalyticModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests the analytic formulas against the Monte-Carlo valuation.
+ */
+public class AnalyticValuationEngineTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final SimpleCrossCurrencyModel model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02,
+			1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+			new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd),
+					3, 200000, 3141),
+			SimulationScheme.EXACT);
+
+	private static final AnalyticValuationEngine engine = new AnalyticValuationEngine(
+			new SimpleCrossCurrencyAnalyticModel(0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart,
+					periodEnd, 0.95, 0.97));
+
+	@Test
+	void testCaplets() {
+		for (int currency = 0; currency <= 1; currency++) {
+			for (boolean isQuanto : new boolean[] { false, true }) {
+				for (double paymentTime : new double[] { periodStart, periodEnd }) {
+					for (double strike : new double[] { 0.01, 0.02, 0.03, 0.05 }) {
+						test(new GeneralizedCaplet(currency, isQuanto, periodStart, periodStart, periodEnd,
+								paymentTime, strike));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testZeroBonds() {
+		for (int currency = 0; currency <= 1; currency++) {
+			for (double maturity : new double[] { periodStart, periodEnd }) {
+				test(new ZeroCouponBond(currency, maturity));
+			}
+		}
+	}
+
+	@Test
+	void testFXOption() {
+		test(new FXOption(periodEnd, 1.2));
+	}
+
+	private void test(CrossCurrencyProduct product) {
+		RandomVariable monteCarloValue = product.getValue(0.0, model);
+		double analyticValue = engine.getValue(product);
+
+		assertEquals(monteCarloValue.getAverage(), analyticValue, 4 * monteCarloValue.getStandardError() + 1E-10,
+				product.toString());
+	}
+}
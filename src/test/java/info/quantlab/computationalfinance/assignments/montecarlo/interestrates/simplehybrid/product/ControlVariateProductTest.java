@@ -0,0 +1,74 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyAnalyticModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.ControlVariateProduct.ControlVariateEstimate;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the valuation with control variates is unbiased with
+ * respect to the analytic values, and that it has a smaller standard error
+ * than the plain valuation on the same paths.
+ */
+public class ControlVariateProductTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final SimpleCrossCurrencyModel model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02,
+			1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+			new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd),
+					3, 20000, 3141),
+			SimulationScheme.EXACT);
+
+	private static final AnalyticValuationEngine engine = new AnalyticValuationEngine(
+			new SimpleCrossCurrencyAnalyticModel(0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart,
+					periodEnd, 0.95, 0.97));
+
+	@Test
+	void testCaplets() {
+		for (int currency = 0; currency <= 1; currency++) {
+			for (boolean isQuanto : new boolean[] { false, true }) {
+				for (double paymentTime : new double[] { periodStart, periodEnd }) {
+					for (double strike : new double[] { 0.01, 0.02, 0.03 }) {
+						test(new GeneralizedCaplet(currency, isQuanto, periodStart, periodStart, periodEnd,
+								paymentTime, strike));
+					}
+				}
+			}
+		}
+	}
+
+	private static void test(GeneralizedCaplet caplet) {
+		ControlVariateProduct product = ControlVariateProduct.of(caplet, engine);
+		ControlVariateEstimate estimate = product.getEstimate(model);
+		RandomVariable plainValue = caplet.getValue(0.0, model);
+
+		double analyticValue = engine.getAnalyticValue(caplet);
+		// the estimated coefficients give a bias of order 1/n, negligible here
+		assertEquals(analyticValue, estimate.getValue(), 4 * estimate.getStandardError() + 1E-7, caplet.toString());
+
+		assertTrue(estimate.getStandardError() < plainValue.getStandardError(), caplet.toString());
+		assertTrue(estimate.getVarianceReductionFactor() > 1.0, caplet.toString());
+
+		// the random variable returned has the same average
+		assertEquals(estimate.getValue(), product.getValue(0.0, model).getAverage(), 1E-14);
+	}
+
+	@Test
+	void testEvaluationTime() {
+		ControlVariateProduct product = ControlVariateProduct
+				.of(new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03), engine);
+		assertThrows(IllegalArgumentException.class, () -> product.getValue(periodStart, model));
+	}
+}
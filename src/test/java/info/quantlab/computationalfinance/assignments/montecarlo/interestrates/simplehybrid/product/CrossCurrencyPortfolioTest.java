@@ -0,0 +1,57 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the grouped valuation of a portfolio gives the values
+ * of the single products, both for groups of caplets with several strikes and
+ * for groups with only one caplet.
+ */
+public class CrossCurrencyPortfolioTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final SimpleCrossCurrencyModel model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02,
+			1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+			new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd),
+					3, 10000, 3141),
+			SimulationScheme.EXACT);
+
+	@Test
+	void testGroupedValuation() {
+		List<CrossCurrencyProduct> products = List.of(
+				// a group with three strikes
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.02),
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03),
+				new ZeroCouponBond(1, periodEnd),
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.04),
+				// groups with one caplet
+				new GeneralizedCaplet(1, true, periodStart, periodStart, periodEnd, periodStart, 0.02),
+				new GeneralizedCaplet(1, false, periodStart, periodStart, periodEnd, periodStart, 0.025),
+				new FXOption(periodEnd, 1.2));
+
+		double[] values = new CrossCurrencyPortfolio(products).getValues(0.0, model);
+
+		double sumOfValues = 0.0;
+		double sumOfSingleValues = 0.0;
+		for (int productIndex = 0; productIndex < products.size(); productIndex++) {
+			double singleValue = products.get(productIndex).getValue(0.0, model).getAverage();
+			assertEquals(singleValue, values[productIndex], 1E-12 * Math.max(1.0, Math.abs(singleValue)),
+					products.get(productIndex).toString());
+			sumOfValues += values[productIndex];
+			sumOfSingleValues += singleValue;
+		}
+		assertEquals(sumOfSingleValues, sumOfValues, 1E-11);
+	}
+}
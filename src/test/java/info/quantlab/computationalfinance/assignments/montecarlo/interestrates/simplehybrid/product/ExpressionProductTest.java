@@ -0,0 +1,90 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import static info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.PayoffExpression.forwardRate;
+import static info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.PayoffExpression.fxRate;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.RandomVariableFromArrayFactory;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the compiled expressions give, path by path, the
+ * values of the products implemented with the operations of RandomVariable.
+ */
+public class ExpressionProductTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private final SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(
+			0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+			new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3,
+					10000, 3141),
+			SimulationScheme.EXACT);
+
+	@Test
+	void testGeneralizedCaplets() {
+		for (int currency = 0; currency <= 1; currency++) {
+			for (boolean isQuanto : new boolean[] { false, true }) {
+				for (double paymentTime : new double[] { periodStart, periodEnd }) {
+					GeneralizedCaplet caplet = new GeneralizedCaplet(currency, isQuanto, periodStart, periodStart,
+							periodEnd, paymentTime, 0.025);
+					for (double evaluationTime : new double[] { 0.0, periodStart }) {
+						RandomVariable expectedValue = caplet.getValue(evaluationTime, model);
+						RandomVariable value = ExpressionProduct.of(caplet).getValue(evaluationTime, model);
+						assertEquals(0.0, value.sub(expectedValue).abs().getMax(), 1E-15);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testParallelEvaluation() {
+		// a capped spread option between the foreign and domestic forward rates, paid in foreign currency
+		PayoffExpression payoff = forwardRate(1, periodStart, periodStart, periodEnd)
+				.sub(forwardRate(0, periodStart, periodStart, periodEnd)).floor(0.0).cap(0.02)
+				.mult(fxRate(1, periodEnd));
+
+		RandomVariable sequentialValue = new ExpressionProduct(payoff, periodEnd, false).getValue(0.0, model);
+		RandomVariable parallelValue = new ExpressionProduct(payoff, periodEnd, true).getValue(0.0, model);
+		assertEquals(0.0, parallelValue.sub(sequentialValue).abs().getMax(), 0.0);
+
+		RandomVariable expectedValue = model.getForwardRate(1, periodStart, periodStart, periodEnd)
+				.sub(model.getForwardRate(0, periodStart, periodStart, periodEnd)).floor(0.0).cap(0.02)
+				.mult(model.getFXRate(1, periodEnd)).div(model.getNumeraire(periodEnd)).mult(model.getNumeraire(0.0));
+		assertEquals(0.0, sequentialValue.sub(expectedValue).abs().getMax(), 1E-15);
+	}
+
+	@Test
+	void testRandomVariableFactory() throws CalculationException {
+		SimpleCrossCurrencyModelWithSingleMaturity singlePrecisionModel = model
+				.getCloneWithModifiedData(Map.of("randomVariableFactory", new RandomVariableFromArrayFactory(false)));
+		PayoffExpression payoff = forwardRate(0, periodStart, periodStart, periodEnd).sub(0.025).floor(0.0);
+
+		RandomVariable value = payoff.compile().getValue(singlePrecisionModel);
+		RandomVariable expectedValue = singlePrecisionModel.getForwardRate(0, periodStart, periodStart, periodEnd)
+				.sub(0.025).floor(0.0);
+		// the result is created by the factory of the model
+		assertEquals(singlePrecisionModel.getRandomVariableFactory().createRandomVariable(0.0, new double[] { 1.0, 2.0 })
+				.getClass(), value.getClass());
+		assertEquals(0.0, value.sub(expectedValue).abs().getMax(), 1E-7);
+	}
+
+	@Test
+	void testObservablesRequestedOnce() {
+		PayoffExpression fx = fxRate(1, periodEnd);
+		PayoffExpression payoff = fxRate(1, periodEnd).mult(fx).sub(fx.mult(1.2));
+
+		assertEquals(1, payoff.compile().getNumberOfObservables());
+	}
+}
@@ -0,0 +1,105 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests the pathwise sensitivities against finite differences on
+ * the same paths.
+ */
+public class GeneralizedCapletSensitivitiesTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final double[] parameters = { 0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, 0.95, 0.97 };
+
+	private static final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+			new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 20000, 3141);
+
+	@Test
+	void testSensitivities() {
+		for (int currency = 0; currency <= 1; currency++) {
+			for (boolean isQuanto : new boolean[] { false, true }) {
+				for (double paymentTime : new double[] { periodStart, periodEnd }) {
+					test(new GeneralizedCaplet(currency, isQuanto, periodStart, periodStart, periodEnd, paymentTime,
+							0.025));
+				}
+			}
+		}
+	}
+
+	private void test(GeneralizedCaplet caplet) {
+		double[] sensitivities = new GeneralizedCapletSensitivities(caplet).getSensitivities(getModel(parameters));
+
+		for (int parameterIndex = 0; parameterIndex < parameters.length; parameterIndex++) {
+			double shift = 1E-6;
+
+			double[] parametersUp = parameters.clone();
+			parametersUp[parameterIndex] += shift;
+			double[] parametersDown = parameters.clone();
+			parametersDown[parameterIndex] -= shift;
+
+			double finiteDifference = (caplet.getValue(0.0, getModel(parametersUp)).getAverage()
+					- caplet.getValue(0.0, getModel(parametersDown)).getAverage()) / (2 * shift);
+
+			assertEquals(finiteDifference, sensitivities[parameterIndex],
+					1E-5 + 1E-3 * Math.abs(finiteDifference),
+					GeneralizedCapletSensitivities.PARAMETER_NAMES[parameterIndex]);
+		}
+	}
+
+	@Test
+	void testImportanceSampling() {
+		SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(
+				parameters[0], parameters[1], parameters[2], parameters[3], parameters[4], parameters[5],
+				parameters[6], parameters[7], parameters[8], periodStart, periodEnd, parameters[9], parameters[10],
+				new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd),
+						3, 200000, 3141),
+				SimulationScheme.EXACT);
+
+		for (GeneralizedCaplet caplet : new GeneralizedCaplet[] {
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.05),
+				new GeneralizedCaplet(1, true, periodStart, periodStart, periodEnd, periodStart, 0.035) }) {
+			GeneralizedCapletSensitivities capletSensitivities = new GeneralizedCapletSensitivities(caplet);
+			double[] sensitivities = capletSensitivities.getSensitivities(model);
+			double[] importanceSamplingSensitivities = capletSensitivities
+					.getSensitivities(model.getCloneWithImportanceSampling(caplet.getCurrencyIndex(), caplet.getStrike()));
+
+			// the paths are different: the two estimates agree up to the Monte-Carlo error
+			double largestSensitivity = 0.0;
+			for (double sensitivity : sensitivities) {
+				largestSensitivity = Math.max(largestSensitivity, Math.abs(sensitivity));
+			}
+			for (int parameterIndex = 0; parameterIndex < parameters.length; parameterIndex++) {
+				assertEquals(sensitivities[parameterIndex], importanceSamplingSensitivities[parameterIndex],
+						0.1 * Math.abs(sensitivities[parameterIndex]) + 0.01 * largestSensitivity,
+						caplet + " " + GeneralizedCapletSensitivities.PARAMETER_NAMES[parameterIndex]);
+			}
+		}
+	}
+
+	@Test
+	void testSingularCorrelation() {
+		// L^f and FFX perfectly correlated: the factor loading of FFX on the third factor is zero
+		double[] singularParameters = { 0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.0, 0.0, 1.0, 0.95, 0.97 };
+		GeneralizedCapletSensitivities sensitivities = new GeneralizedCapletSensitivities(
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.025));
+		assertThrows(IllegalArgumentException.class,
+				() -> sensitivities.getSensitivities(getModel(singularParameters)));
+	}
+
+	private static SimpleCrossCurrencyModelWithSingleMaturity getModel(double[] parameters) {
+		return new SimpleCrossCurrencyModelWithSingleMaturity(parameters[0], parameters[1], parameters[2],
+				parameters[3], parameters[4], parameters[5], parameters[6], parameters[7], parameters[8], periodStart,
+				periodEnd, parameters[9], parameters[10], brownianMotion, SimulationScheme.EXACT);
+	}
+}
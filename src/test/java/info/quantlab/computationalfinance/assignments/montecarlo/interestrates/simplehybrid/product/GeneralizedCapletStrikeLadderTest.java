@@ -0,0 +1,71 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the strike ladder gives the same values as the
+ * valuation of the single caplets.
+ */
+public class GeneralizedCapletStrikeLadderTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final double[] strikes = { 0.0, 0.01, 0.02, 0.03, 0.04, 0.05, 0.08, 0.5 };
+
+	@Test
+	void testCapletDomestic() {
+		test(0, false, periodEnd);
+	}
+
+	@Test
+	void testCapletForeign() {
+		test(1, false, periodEnd);
+	}
+
+	@Test
+	void testCapletQuanto() {
+		test(1, true, periodEnd);
+	}
+
+	@Test
+	void testCapletDomesticInAdvance() {
+		test(0, false, periodStart);
+	}
+
+	@Test
+	void testCapletForeignInAdvance() {
+		test(1, false, periodStart);
+	}
+
+	@Test
+	void testCapletQuantoInAdvance() {
+		test(1, true, periodStart);
+	}
+
+	private void test(int currency, boolean isQuanto, double paymentTime) {
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, 20, 0.1), 3, 10000, 3141);
+
+		SimpleCrossCurrencyModel model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02, 1.2, 0.3, 0.25,
+				0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97, brownianMotion);
+
+		double[] values = new GeneralizedCapletStrikeLadder(currency, isQuanto, periodStart, periodStart, periodEnd,
+				paymentTime, strikes).getValues(0.0, model);
+
+		for (int strikeIndex = 0; strikeIndex < strikes.length; strikeIndex++) {
+			double value = new GeneralizedCaplet(currency, isQuanto, periodStart, periodStart, periodEnd, paymentTime,
+					strikes[strikeIndex]).getValue(0.0, model).getAverage();
+
+			assertEquals(value, values[strikeIndex], 1E-12, "Value for strike " + strikes[strikeIndex]);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation.AdaptiveValuation.AdaptiveValuationResult;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the adaptive valuation stops early for a deep
+ * out-of-the-money caplet and uses more paths for an at-the-money one.
+ */
+public class AdaptiveValuationTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final SimpleCrossCurrencyModelWithSingleMaturity prototypeModel = new SimpleCrossCurrencyModelWithSingleMaturity(
+			0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+			new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd),
+					3, 5000, 3141),
+			SimulationScheme.EXACT);
+
+	@Test
+	void testNumberOfPathsDependsOnProduct() {
+		AdaptiveValuation valuation = new AdaptiveValuation(prototypeModel, 2E-5, 0.0, 640000, 42L);
+
+		AdaptiveValuationResult atTheMoney = valuation.getValue(0.0,
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03));
+		AdaptiveValuationResult deepOutOfTheMoney = valuation.getValue(0.0,
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.2));
+
+		assertTrue(atTheMoney.isTargetReached());
+		assertTrue(atTheMoney.getStandardError() <= 2E-5);
+		assertTrue(deepOutOfTheMoney.isTargetReached());
+		assertEquals(5000, deepOutOfTheMoney.getNumberOfPaths());
+		assertTrue(atTheMoney.getNumberOfPaths() > deepOutOfTheMoney.getNumberOfPaths());
+	}
+
+	@Test
+	void testMaximumNumberOfPaths() {
+		AdaptiveValuation valuation = new AdaptiveValuation(prototypeModel, 1E-9, 0.0, 20000, 42L);
+
+		AdaptiveValuationResult result = valuation.getValue(0.0,
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03));
+
+		assertFalse(result.isTargetReached());
+		assertEquals(20000, result.getNumberOfPaths());
+	}
+
+	@Test
+	void testLargeMaximumNumberOfPaths() {
+		// the number of blocks is capped, and their seeds are only derived when needed
+		AdaptiveValuation valuation = new AdaptiveValuation(prototypeModel, 0.0, 0.5, Long.MAX_VALUE, 42L);
+		assertEquals(5000L * Integer.MAX_VALUE, valuation.getMaximumNumberOfPaths());
+
+		AdaptiveValuationResult result = valuation.getValue(0.0,
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03));
+
+		assertTrue(result.isTargetReached());
+		assertEquals(5000, result.getNumberOfPaths());
+	}
+}
@@ -0,0 +1,82 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyAnalyticModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation.ExposureProfileEngine.ExposureProfile;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the expected discounted values of the exposure
+ * profile are the analytic values at time 0 of the cash flows not yet paid,
+ * as they must be since deflated values are martingales.
+ */
+public class ExposureProfileEngineTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private final SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(
+			0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+			new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3,
+					50000, 3141),
+			SimulationScheme.EXACT);
+
+	private final SimpleCrossCurrencyAnalyticModel analyticModel = new SimpleCrossCurrencyAnalyticModel(0.03, 0.02,
+			1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97);
+
+	@Test
+	void testExpectedValues() {
+		List<GeneralizedCaplet> caplets = List.of(
+				new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03),
+				new GeneralizedCaplet(1, false, periodStart, periodStart, periodEnd, periodStart, 0.02),
+				new GeneralizedCaplet(1, true, periodStart, periodStart, periodEnd, periodEnd, 0.025));
+		double[] notionals = { 1.0, -0.5, 2.0 };
+
+		double[] exposureDates = { 0.0, 0.25, 0.5, 0.75, periodStart, 1.5, periodEnd };
+		ExposureProfile profile = new ExposureProfileEngine(model, exposureDates, 2718).getExposureProfile(caplets,
+				notionals, 0.95);
+
+		double valueOfAllCashFlows = 0.0;
+		double valueAfterPeriodStart = 0.0;
+		for (int capletIndex = 0; capletIndex < caplets.size(); capletIndex++) {
+			GeneralizedCaplet caplet = caplets.get(capletIndex);
+			double value = notionals[capletIndex] * analyticModel.getCapletValue(caplet.getCurrencyIndex(),
+					caplet.isQuanto(), caplet.getPaymentTime(), caplet.getStrike());
+			valueOfAllCashFlows += value;
+			if (caplet.getPaymentTime() > periodStart) {
+				valueAfterPeriodStart += value;
+			}
+		}
+
+		double[] expectedValues = profile.getExpectedValues();
+		double[] expectedExposures = profile.getExpectedExposures();
+		double[] potentialFutureExposures = profile.getPotentialFutureExposures();
+
+		// at time 0 there is no randomness
+		assertEquals(valueOfAllCashFlows, expectedValues[0], 1E-12);
+		assertEquals(Math.max(valueOfAllCashFlows, 0.0), expectedExposures[0], 1E-12);
+
+		for (int dateIndex = 1; dateIndex < exposureDates.length; dateIndex++) {
+			double date = exposureDates[dateIndex];
+			double expectedValue = date < periodStart ? valueOfAllCashFlows
+					: date < periodEnd ? valueAfterPeriodStart : 0.0;
+			assertEquals(expectedValue, expectedValues[dateIndex], 2E-2 * Math.abs(valueOfAllCashFlows), "" + date);
+
+			assertTrue(expectedExposures[dateIndex] >= Math.max(expectedValues[dateIndex], 0.0) - 1E-12);
+			assertTrue(potentialFutureExposures[dateIndex] >= 0.0);
+		}
+
+		// everything is paid in T_2
+		assertEquals(0.0, expectedExposures[exposureDates.length - 1], 0.0);
+	}
+}
@@ -0,0 +1,71 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyAnalyticModel;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.AnalyticValuationEngine;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyProduct;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.ZeroCouponBond;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the parallel valuation does not depend on the number of
+ * threads, and that it is consistent with the analytic values.
+ */
+public class ParallelChunkedValuationTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final SimpleCrossCurrencyModelWithSingleMaturity prototypeModel = new SimpleCrossCurrencyModelWithSingleMaturity(
+			0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+			new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd),
+					3, 20000, 3141),
+			SimulationScheme.EXACT);
+
+	private static final AnalyticValuationEngine engine = new AnalyticValuationEngine(
+			new SimpleCrossCurrencyAnalyticModel(0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart,
+					periodEnd, 0.95, 0.97));
+
+	private static final List<CrossCurrencyProduct> products = List.of(
+			new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03),
+			new GeneralizedCaplet(1, false, periodStart, periodStart, periodEnd, periodStart, 0.02),
+			new GeneralizedCaplet(1, true, periodStart, periodStart, periodEnd, periodEnd, 0.02),
+			new ZeroCouponBond(1, periodEnd));
+
+	@Test
+	void testIndependenceOfNumberOfThreads() {
+		List<MonteCarloValuationResult> resultsSingleThread = new ParallelChunkedValuation(prototypeModel, 8, 42L, 1)
+				.getValues(0.0, products);
+		List<MonteCarloValuationResult> resultsMultiThread = new ParallelChunkedValuation(prototypeModel, 8, 42L, 4)
+				.getValues(0.0, products);
+
+		for (int productIndex = 0; productIndex < products.size(); productIndex++) {
+			assertEquals(resultsSingleThread.get(productIndex).getValue(),
+					resultsMultiThread.get(productIndex).getValue(), 0.0);
+			assertEquals(resultsSingleThread.get(productIndex).getStandardError(),
+					resultsMultiThread.get(productIndex).getStandardError(), 0.0);
+		}
+	}
+
+	@Test
+	void testAgainstAnalyticValues() {
+		List<MonteCarloValuationResult> results = new ParallelChunkedValuation(prototypeModel, 8, 42L)
+				.getValues(0.0, products);
+
+		for (int productIndex = 0; productIndex < products.size(); productIndex++) {
+			MonteCarloValuationResult result = results.get(productIndex);
+			assertEquals(8 * 20000, result.getNumberOfPaths());
+			assertEquals(engine.getAnalyticValue(products.get(productIndex)), result.getValue(),
+					4 * result.getStandardError() + 1E-10);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that concurrent requests sharing the model data are valued
+ * in one batch, with the values of a direct valuation.
+ */
+public class PricingServiceTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private final SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(
+			0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+			new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3,
+					10000, 3141),
+			SimulationScheme.EXACT);
+
+	@Test
+	void testBatching() throws Exception {
+		List<Map<String, Object>> modelData = List.of(Map.of(), Map.of("volatilityFXForward", 0.2));
+
+		List<GeneralizedCaplet> caplets = new ArrayList<>();
+		List<Map<String, Object>> requestData = new ArrayList<>();
+		for (int requestIndex = 0; requestIndex < 40; requestIndex++) {
+			caplets.add(new GeneralizedCaplet(requestIndex % 2, requestIndex % 4 >= 2, periodStart, periodStart,
+					periodEnd, periodEnd, 0.01 + 0.001 * requestIndex));
+			requestData.add(modelData.get(requestIndex % 2));
+		}
+
+		try (PricingService service = new PricingService(model, 1000, Integer.MAX_VALUE)) {
+			ExecutorService clients = Executors.newFixedThreadPool(8);
+			List<Future<CompletableFuture<Double>>> requests = new ArrayList<>();
+			for (int requestIndex = 0; requestIndex < caplets.size(); requestIndex++) {
+				int index = requestIndex;
+				requests.add(clients.submit(() -> service.getValue(requestData.get(index), caplets.get(index))));
+			}
+
+			for (int requestIndex = 0; requestIndex < caplets.size(); requestIndex++) {
+				double value = requests.get(requestIndex).get().get();
+				double expectedValue = caplets.get(requestIndex)
+						.getValue(0.0, model.getCloneWithModifiedData(requestData.get(requestIndex))).getAverage();
+				assertEquals(expectedValue, value, 1E-12);
+			}
+			clients.shutdown();
+
+			assertEquals(40, service.getNumberOfRequests());
+			// one simulation for each model
+			assertEquals(2, service.getNumberOfBatches());
+		}
+	}
+
+	@Test
+	void testBatchKeyOfNumbers() {
+		GeneralizedCaplet caplet = new GeneralizedCaplet(1, false, periodStart, periodStart, periodEnd, periodEnd,
+				0.02);
+		try (PricingService service = new PricingService(model, 1000, 2)) {
+			// an Integer and a Double with the same value give the same model
+			CompletableFuture<Double> value = service.getValue(Map.of("correlationFXDomestic", 0), caplet);
+			CompletableFuture<Double> otherValue = service.getValue(Map.of("correlationFXDomestic", 0.0), caplet);
+
+			assertEquals(value.join(), otherValue.join(), 0.0);
+			assertEquals(1, service.getNumberOfBatches());
+		}
+	}
+
+	@Test
+	void testHttpEndpoint() throws Exception {
+		try (PricingService service = new PricingService(model, 100, Integer.MAX_VALUE)) {
+			int port = service.startHttpEndpoint(0);
+			HttpClient client = HttpClient.newHttpClient();
+
+			// more concurrent requests than processors: the endpoint must not wait for the valuations
+			int numberOfRequests = 4 * Runtime.getRuntime().availableProcessors() + 1;
+			List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+			for (int requestIndex = 0; requestIndex < numberOfRequests; requestIndex++) {
+				double strike = 0.01 + 0.001 * requestIndex;
+				URI uri = URI.create("http://127.0.0.1:" + port + "/value?currency=0&isQuanto=false&fixingTime=1.0"
+						+ "&periodStart=1.0&periodEnd=2.0&paymentTime=2.0&strike=" + strike);
+				responses.add(client.sendAsync(HttpRequest.newBuilder(uri).build(), BodyHandlers.ofString()));
+			}
+			for (int requestIndex = 0; requestIndex < numberOfRequests; requestIndex++) {
+				HttpResponse<String> response = responses.get(requestIndex).get(1, TimeUnit.MINUTES);
+				double expectedValue = new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd,
+						0.01 + 0.001 * requestIndex).getValue(0.0, model).getAverage();
+				assertEquals(200, response.statusCode());
+				assertEquals(expectedValue, Double.parseDouble(response.body()), 1E-12);
+			}
+
+			// a missing parameter and an unknown model parameter
+			URI missingParameter = URI.create("http://127.0.0.1:" + port + "/value?currency=0");
+			assertEquals(400, client.send(HttpRequest.newBuilder(missingParameter).build(), BodyHandlers.ofString())
+					.statusCode());
+			URI unknownParameter = URI.create("http://127.0.0.1:" + port + "/value?currency=0&isQuanto=false"
+					+ "&fixingTime=1.0&periodStart=1.0&periodEnd=2.0&paymentTime=2.0&strike=0.02&volatility=0.2");
+			assertEquals(400, client.send(HttpRequest.newBuilder(unknownParameter).build(), BodyHandlers.ofString())
+					.statusCode());
+		}
+	}
+
+	@Test
+	void testInvalidModelData() {
+		try (PricingService service = new PricingService(model)) {
+			CompletableFuture<Double> value = service.getValue(Map.of("volatility", 0.2),
+					new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03));
+			assertThrows(CompletionException.class, value::join);
+		}
+	}
+}
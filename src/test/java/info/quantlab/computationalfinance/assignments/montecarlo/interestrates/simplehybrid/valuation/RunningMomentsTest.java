@@ -0,0 +1,52 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class tests that the moments merged block by block are the ones of all
+ * the samples together.
+ */
+public class RunningMomentsTest {
+
+	@Test
+	void testMergeOfBlocks() {
+		Random random = new Random(3141);
+		double[] samples = new double[10000];
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = 100.0 + Math.exp(random.nextGaussian());
+		}
+
+		RunningMoments momentsOfBlocks = new RunningMoments();
+		for (int blockStart = 0; blockStart < samples.length; blockStart += 700) {
+			double[] block = new double[Math.min(700, samples.length - blockStart)];
+			System.arraycopy(samples, blockStart, block, 0, block.length);
+			momentsOfBlocks.add(RunningMoments.of(new RandomVariableFromDoubleArray(0.0, block), block.length));
+		}
+
+		RunningMoments momentsOfSamples = new RunningMoments();
+		for (double sample : samples) {
+			momentsOfSamples.add(sample);
+		}
+
+		RandomVariable allSamples = new RandomVariableFromDoubleArray(0.0, samples);
+		double mean = allSamples.getAverage();
+		double variance = allSamples.getVariance();
+		double skewness = allSamples.sub(mean).pow(3).getAverage() / Math.pow(variance, 1.5);
+		double kurtosis = allSamples.sub(mean).pow(4).getAverage() / (variance * variance) - 3.0;
+
+		for (RunningMoments moments : new RunningMoments[] { momentsOfBlocks, momentsOfSamples }) {
+			assertEquals(samples.length, moments.getNumberOfSamples());
+			assertEquals(mean, moments.getMean(), 1E-10);
+			assertEquals(variance, moments.getVariance(), 1E-10);
+			assertEquals(skewness, moments.getSkewness(), 1E-8);
+			assertEquals(kurtosis, moments.getExcessKurtosis(), 1E-8);
+		}
+	}
+}
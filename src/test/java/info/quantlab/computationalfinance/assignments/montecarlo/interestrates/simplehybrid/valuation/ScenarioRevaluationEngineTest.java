@@ -0,0 +1,91 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the profits and losses of the scenarios are the ones
+ * of models constructed from scratch with the same Brownian motion, and that
+ * they do not depend on the number of threads.
+ */
+public class ScenarioRevaluationEngineTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	private static final BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+			new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 10000, 3141);
+
+	private static final List<GeneralizedCaplet> caplets = List.of(
+			new GeneralizedCaplet(0, false, periodStart, periodStart, periodEnd, periodEnd, 0.03),
+			new GeneralizedCaplet(1, false, periodStart, periodStart, periodEnd, periodStart, 0.02),
+			new GeneralizedCaplet(1, true, periodStart, periodStart, periodEnd, periodEnd, 0.025));
+
+	@Test
+	void testProfitAndLoss() throws CalculationException {
+		String[] parameterNames = { "initialValueFX", "volatilityFXForward", "domesticZeroBond" };
+		double[][] scenarios = { { 1.2, 0.15, 0.95 }, { 1.3, 0.15, 0.95 }, { 1.2, 0.2, 0.94 }, { 1.1, 0.1, 0.96 } };
+
+		double[][] profitAndLoss = new ScenarioRevaluationEngine(getModel(1.2, 0.15, 0.95), caplets, 3)
+				.getProfitAndLoss(parameterNames, scenarios);
+
+		for (int scenarioIndex = 0; scenarioIndex < scenarios.length; scenarioIndex++) {
+			double[] scenario = scenarios[scenarioIndex];
+			SimpleCrossCurrencyModelWithSingleMaturity scenarioModel = getModel(scenario[0], scenario[1], scenario[2]);
+			for (int productIndex = 0; productIndex < caplets.size(); productIndex++) {
+				GeneralizedCaplet caplet = caplets.get(productIndex);
+				double expectedProfitAndLoss = caplet.getValue(0.0, scenarioModel).getAverage()
+						- caplet.getValue(0.0, getModel(1.2, 0.15, 0.95)).getAverage();
+				assertEquals(expectedProfitAndLoss, profitAndLoss[scenarioIndex][productIndex], 1E-12);
+			}
+		}
+
+		// the base scenario has no profit and loss
+		assertArrayEquals(new double[caplets.size()], profitAndLoss[0], 0.0);
+	}
+
+	@Test
+	void testIndependenceOfNumberOfThreads() {
+		String[] parameterNames = { "volatilityDomestic", "correlationDomFor" };
+		double[][] scenarios = new double[16][];
+		for (int scenarioIndex = 0; scenarioIndex < scenarios.length; scenarioIndex++) {
+			scenarios[scenarioIndex] = new double[] { 0.25 + 0.01 * scenarioIndex, 0.4 - 0.02 * scenarioIndex };
+		}
+
+		double[][] sequentialProfitAndLoss = new ScenarioRevaluationEngine(getModel(1.2, 0.15, 0.95), caplets, 1)
+				.getProfitAndLoss(parameterNames, scenarios);
+		double[][] parallelProfitAndLoss = new ScenarioRevaluationEngine(getModel(1.2, 0.15, 0.95), caplets, 4)
+				.getProfitAndLoss(parameterNames, scenarios);
+
+		for (int scenarioIndex = 0; scenarioIndex < scenarios.length; scenarioIndex++) {
+			assertArrayEquals(sequentialProfitAndLoss[scenarioIndex], parallelProfitAndLoss[scenarioIndex], 0.0);
+		}
+	}
+
+	@Test
+	void testUnknownParameter() {
+		ScenarioRevaluationEngine engine = new ScenarioRevaluationEngine(getModel(1.2, 0.15, 0.95), caplets);
+		assertThrows(IllegalArgumentException.class,
+				() -> engine.getProfitAndLoss(new String[] { "volatility" }, new double[][] { { 0.2 } }));
+	}
+
+	private static SimpleCrossCurrencyModelWithSingleMaturity getModel(double initialValueFX,
+			double volatilityFXForward, double domesticZeroBond) {
+		return new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02, initialValueFX, 0.3, 0.25,
+				volatilityFXForward, 0.4, 0.2, -0.3, periodStart, periodEnd, domesticZeroBond, 0.97, brownianMotion,
+				SimulationScheme.EXACT);
+	}
+}
@@ -0,0 +1,45 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.valuation.SinglePrecisionErrorBudget.PrecisionComparison;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the prices of the caplets with the simulated values
+ * stored in single precision differ from the ones in double precision by much
+ * less than the Monte-Carlo standard error.
+ */
+public class SinglePrecisionErrorBudgetTest {
+
+	private static final double periodStart = 1.0;
+	private static final double periodEnd = 2.0;
+
+	@Test
+	void testCaplets() {
+		SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03, 0.02,
+				1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, periodStart, periodEnd, 0.95, 0.97,
+				new BrownianMotionFromMersenneRandomNumbers(
+						new TimeDiscretizationFromArray(0.0, periodStart, periodEnd), 3, 100000, 3141),
+				SimulationScheme.EXACT);
+
+		SinglePrecisionErrorBudget errorBudget = new SinglePrecisionErrorBudget(model, 0.01);
+
+		for (int currency = 0; currency <= 1; currency++) {
+			for (boolean isQuanto : new boolean[] { false, true }) {
+				for (double paymentTime : new double[] { periodStart, periodEnd }) {
+					GeneralizedCaplet caplet = new GeneralizedCaplet(currency, isQuanto, periodStart, periodStart,
+							periodEnd, paymentTime, 0.025);
+					PrecisionComparison comparison = errorBudget.getComparison(0.0, caplet);
+					assertTrue(errorBudget.isWithinBudget(0.0, caplet), comparison.toString());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.SimpleCrossCurrencyModelWithSingleMaturity.SimulationScheme;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.CrossCurrencyPortfolio;
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.product.GeneralizedCaplet;
+import info.quantlab.computationalfinance.assignments.montecarlo.metrics.SimulationMetricsListener.Phase;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * This class tests that the simulation and the valuation report their metrics
+ * to the registered listener.
+ */
+public class SimulationMetricsTest {
+
+	@Test
+	void testMetricsOfEulerSimulation() {
+		AggregatingSimulationMetricsListener listener = new AggregatingSimulationMetricsListener();
+		SimulationMetrics.setListener(listener);
+		try {
+			SimpleCrossCurrencyModelWithSingleMaturity model = new SimpleCrossCurrencyModelWithSingleMaturity(0.03,
+					0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3, 1.0, 2.0, 0.95, 0.97,
+					new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, 10, 0.2), 3,
+							1000, 3141),
+					SimulationScheme.EULER);
+
+			CrossCurrencyPortfolio portfolio = new CrossCurrencyPortfolio(
+					List.of(new GeneralizedCaplet(1, true, 1.0, 1.0, 2.0, 2.0, 0.02)));
+			portfolio.getValues(0.0, model);
+
+			assertEquals(1, listener.getPhaseCount(Phase.BROWNIAN_MOTION_GENERATION));
+			assertEquals(1, listener.getPhaseCount(Phase.SIMULATION));
+			assertEquals(1, listener.getPhaseCount(Phase.VALUATION));
+			assertEquals(1, listener.getNumberOfValuations());
+			assertTrue(listener.getPhaseCount(Phase.STATE_SPACE_TRANSFORM) > 0);
+			assertTrue(listener.getNumberOfDriftRequests() > 0);
+			assertTrue(listener.getNumberOfFactorLoadingRequests() > 0);
+			assertTrue(listener.getNumberOfRandomVariableAllocations() > 0);
+		} finally {
+			SimulationMetrics.setListener(null);
+		}
+		assertTrue(!SimulationMetrics.isEnabled());
+	}
+}
@@ -0,0 +1,84 @@
+package info.quantlab.computationalfinance.assignments.montecarlo.processmodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import info.quantlab.computationalfinance.assignments.montecarlo.interestrates.simplehybrid.model.LognormalSimpleCrossCurrencyProcessModel;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * This class tests that the wrapper of a primitive log-normal process model
+ * gives the coefficients of the wrapped model, in log-normal coordinates, and
+ * that it creates them only once per time index.
+ */
+public class ProcessModelFromPrimitiveLognormalProcessModelTest {
+
+	private static final PrimitiveLognormalProcessModel lognormalModel = new LognormalSimpleCrossCurrencyProcessModel(
+			1.0, 2.0, 0.95, 0.03, 0.02, 1.2, 0.3, 0.25, 0.15, 0.4, 0.2, -0.3);
+
+	@Test
+	void testCoefficients() {
+		ProcessModelFromPrimitiveLognormalProcessModel processModel = new ProcessModelFromPrimitiveLognormalProcessModel(
+				lognormalModel);
+
+		double[] initialValue = lognormalModel.getInitialValuePrimitive();
+		RandomVariable[] initialState = processModel.getInitialState(null);
+		for (int componentIndex = 0; componentIndex < initialValue.length; componentIndex++) {
+			assertEquals(Math.log(initialValue[componentIndex]), initialState[componentIndex].getAverage(), 0.0);
+		}
+
+		// the time indices do not have to be requested in order
+		for (int timeIndex : new int[] { 5, 0, 1, 17 }) {
+			RandomVariable[] drift = processModel.getDrift(null, timeIndex, initialState, null);
+			assertValues(lognormalModel.getDriftPrimitive(timeIndex), drift);
+			assertSame(drift, processModel.getDrift(null, timeIndex, initialState, null));
+
+			for (int componentIndex = 0; componentIndex < initialValue.length; componentIndex++) {
+				RandomVariable[] factorLoadings = processModel.getFactorLoading(null, timeIndex, componentIndex,
+						initialState);
+				assertValues(lognormalModel.getFactorLoadingPrimitive(timeIndex, componentIndex), factorLoadings);
+				assertSame(factorLoadings, processModel.getFactorLoading(null, timeIndex, componentIndex, initialState));
+			}
+		}
+	}
+
+	@Test
+	void testStateSpaceTransform() {
+		ProcessModelFromPrimitiveLognormalProcessModel processModel = new ProcessModelFromPrimitiveLognormalProcessModel(
+				lognormalModel);
+
+		RandomVariable logValue = new RandomVariableFromDoubleArray(1.0, new double[] { -1.0, 0.0, 0.5 });
+		RandomVariable value = processModel.applyStateSpaceTransform(null, 1, 0, logValue);
+		for (int pathIndex = 0; pathIndex < logValue.size(); pathIndex++) {
+			assertEquals(Math.exp(logValue.get(pathIndex)), value.get(pathIndex), 1E-15);
+		}
+		assertEquals(0.0, processModel.applyStateSpaceTransformInverse(null, 1, 0, value).sub(logValue).abs().getMax(),
+				1E-15);
+	}
+
+	@Test
+	void testCloneWithModifiedData() throws CalculationException {
+		ProcessModelFromPrimitiveLognormalProcessModel processModel = new ProcessModelFromPrimitiveLognormalProcessModel(
+				lognormalModel);
+		ProcessModelFromPrimitiveLognormalProcessModel clone = processModel
+				.getCloneWithModifiedData(Map.of("volatilityDomestic", 0.4));
+
+		assertEquals(0.4, clone.getFactorLoading(null, 0, 0, null)[0].getAverage(), 0.0);
+		assertEquals(-0.5 * 0.4 * 0.4, clone.getDrift(null, 0, null, null)[0].getAverage(), 1E-15);
+		// the other components are not changed
+		assertValues(lognormalModel.getFactorLoadingPrimitive(0, 2), clone.getFactorLoading(null, 0, 2, null));
+	}
+
+	private static void assertValues(double[] expected, RandomVariable[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i].getAverage(), 0.0);
+		}
+	}
+}